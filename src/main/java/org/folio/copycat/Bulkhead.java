@@ -0,0 +1,113 @@
+package org.folio.copycat;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of concurrent tasks per key, such as a Z39.50 target.
+ *
+ * <p>Tasks beyond the limit wait in a bounded queue. When the queue is full the task is
+ * rejected at once, so that one slow target can not hold up everything else.
+ */
+public class Bulkhead {
+  private final int maxConcurrent;
+  private final int maxQueued;
+  private final Map<String, State> states = new HashMap<>();
+
+  private static final class State {
+    private int active;
+    private final Deque<Runnable> queue = new ArrayDeque<>();
+  }
+
+  /**
+   * Create bulkhead.
+   *
+   * @param maxConcurrent maximum number of running tasks per key; 0 for no limit
+   * @param maxQueued maximum number of waiting tasks per key
+   */
+  public Bulkhead(int maxConcurrent, int maxQueued) {
+    this.maxConcurrent = maxConcurrent;
+    this.maxQueued = maxQueued;
+  }
+
+  /**
+   * Run task when there is room for it.
+   *
+   * @param key key that the limits are applied for
+   * @param task starts the task
+   * @return async result of task; failed with {@link RecordRetrieverException} if rejected
+   */
+  public <T> Future<T> submit(String key, Supplier<Future<T>> task) {
+    if (maxConcurrent <= 0) {
+      return task.get();
+    }
+    Promise<T> promise = Promise.promise();
+    Runnable start = () -> {
+      Future<T> future;
+      try {
+        future = task.get();
+      } catch (Exception e) {
+        future = Future.failedFuture(e);
+      }
+      future.onComplete(ar -> {
+        release(key);
+        promise.handle(ar);
+      });
+    };
+    synchronized (this) {
+      State state = states.computeIfAbsent(key, k -> new State());
+      if (state.active >= maxConcurrent) {
+        if (state.queue.size() >= maxQueued) {
+          return Future.failedFuture(new RecordRetrieverException(
+              "Too many concurrent requests for " + key + ". Try again later"));
+        }
+        state.queue.add(start);
+        return promise.future();
+      }
+      state.active++;
+    }
+    start.run();
+    return promise.future();
+  }
+
+  private void release(String key) {
+    Runnable next;
+    synchronized (this) {
+      State state = states.get(key);
+      next = state.queue.poll();
+      if (next == null && --state.active == 0) {
+        states.remove(key);
+      }
+    }
+    if (next != null) {
+      next.run();
+    }
+  }
+
+  /**
+   * Get number of running tasks.
+   *
+   * @param key key that the limits are applied for
+   * @return number of tasks
+   */
+  public synchronized int getActive(String key) {
+    State state = states.get(key);
+    return state == null ? 0 : state.active;
+  }
+
+  /**
+   * Get number of waiting tasks.
+   *
+   * @param key key that the limits are applied for
+   * @return number of tasks
+   */
+  public synchronized int getQueued(String key) {
+    State state = states.get(key);
+    return state == null ? 0 : state.queue.size();
+  }
+}
@@ -0,0 +1,207 @@
+package org.folio.copycat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Circuit breaker per key, such as a Z39.50 target URL.
+ *
+ * <p>After a number of consecutive failures the circuit opens and calls are
+ * refused at once. When the open time has passed, the circuit is half-open and
+ * lets one probe call through: if it succeeds the circuit closes, otherwise it
+ * opens again.
+ */
+public class CircuitBreaker {
+  private static final Logger log = LogManager.getLogger(CircuitBreaker.class);
+
+  /**
+   * State of circuit.
+   */
+  public enum State {
+    /** Calls are made. */
+    CLOSED,
+    /** Calls are refused. */
+    OPEN,
+    /** One probe call is made. */
+    HALF_OPEN
+  }
+
+  private final int failureThreshold;
+  private final long openTime;
+  private final Map<String, Circuit> circuits = new HashMap<>();
+
+  private static final class Circuit {
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private long probeStarted = -1;
+  }
+
+  /**
+   * Status of one circuit.
+   */
+  public static final class Status {
+    private final String key;
+    private final State state;
+    private final int failures;
+    private final long retryAfter;
+
+    Status(String key, State state, int failures, long retryAfter) {
+      this.key = key;
+      this.state = state;
+      this.failures = failures;
+      this.retryAfter = retryAfter;
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    public State getState() {
+      return state;
+    }
+
+    public int getFailures() {
+      return failures;
+    }
+
+    public long getRetryAfter() {
+      return retryAfter;
+    }
+  }
+
+  /**
+   * Create circuit breaker.
+   *
+   * @param failureThreshold consecutive failures that open the circuit; 0 disables
+   * @param openTime milliseconds the circuit stays open before a probe is made
+   */
+  public CircuitBreaker(int failureThreshold, long openTime) {
+    this.failureThreshold = failureThreshold;
+    this.openTime = openTime;
+  }
+
+  /**
+   * Check whether a call may be made; must be followed by {@link #onSuccess} or
+   * {@link #onFailure} if allowed.
+   *
+   * @param key key of circuit
+   * @return true if call may be made; false if circuit is open
+   */
+  public synchronized boolean tryAcquire(String key) {
+    Circuit circuit = circuits.get(key);
+    if (failureThreshold <= 0 || circuit == null || circuit.state == State.CLOSED) {
+      return true;
+    }
+    long now = System.currentTimeMillis();
+    if (circuit.state == State.OPEN) {
+      if (now - circuit.openedAt < openTime) {
+        return false;
+      }
+      log.info("Circuit for {} half-open; probing", key);
+      circuit.state = State.HALF_OPEN;
+    } else if (circuit.probeStarted >= 0 && now - circuit.probeStarted < openTime) {
+      return false; // probe in progress
+    }
+    circuit.probeStarted = now;
+    return true;
+  }
+
+  /**
+   * Check whether calls are refused, without making a probe.
+   *
+   * @param key key of circuit
+   * @return true if {@link #tryAcquire} would return false
+   */
+  public synchronized boolean isOpen(String key) {
+    Circuit circuit = circuits.get(key);
+    if (failureThreshold <= 0 || circuit == null) {
+      return false;
+    }
+    long now = System.currentTimeMillis();
+    return circuit.state == State.OPEN && now - circuit.openedAt < openTime
+        || circuit.state == State.HALF_OPEN && now - circuit.probeStarted < openTime;
+  }
+
+  /**
+   * Report successful call.
+   *
+   * @param key key of circuit
+   */
+  public synchronized void onSuccess(String key) {
+    Circuit circuit = circuits.computeIfAbsent(key, k -> new Circuit());
+    if (circuit.state != State.CLOSED) {
+      log.info("Circuit for {} closed", key);
+    }
+    circuit.state = State.CLOSED;
+    circuit.failures = 0;
+    circuit.probeStarted = -1;
+  }
+
+  /**
+   * Report failed call.
+   *
+   * @param key key of circuit
+   */
+  public synchronized void onFailure(String key) {
+    Circuit circuit = circuits.computeIfAbsent(key, k -> new Circuit());
+    circuit.failures++;
+    circuit.probeStarted = -1;
+    if (circuit.state == State.HALF_OPEN
+        || circuit.state == State.CLOSED && circuit.failures >= failureThreshold) {
+      log.warn("Circuit for {} open after {} failures", key, circuit.failures);
+      circuit.state = State.OPEN;
+      circuit.openedAt = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Get time until a probe is made.
+   *
+   * @param key key of circuit
+   * @return milliseconds; 0 if circuit is not open
+   */
+  public synchronized long getRetryAfter(String key) {
+    Circuit circuit = circuits.get(key);
+    if (circuit == null || circuit.state != State.OPEN) {
+      return 0;
+    }
+    return Math.max(0, circuit.openedAt + openTime - System.currentTimeMillis());
+  }
+
+  /**
+   * Get status of circuit.
+   *
+   * @param key key of circuit
+   * @return status; closed with no failures for unknown key
+   */
+  public Status getStatus(String key) {
+    long retryAfter = getRetryAfter(key);
+    synchronized (this) {
+      Circuit circuit = circuits.get(key);
+      if (circuit == null) {
+        return new Status(key, State.CLOSED, 0, 0);
+      }
+      return new Status(key, circuit.state, circuit.failures, retryAfter);
+    }
+  }
+
+  /**
+   * Get status of all circuits that have been used.
+   *
+   * @return status of each circuit
+   */
+  public List<Status> getStatus() {
+    List<String> keys;
+    synchronized (this) {
+      keys = new ArrayList<>(circuits.keySet());
+    }
+    List<Status> list = new ArrayList<>();
+    keys.forEach(key -> list.add(getStatus(key)));
+    return list;
+  }
+}
@@ -0,0 +1,53 @@
+package org.folio.copycat;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Module wide settings.
+ *
+ * <p>A setting is looked up as a system property first and then as an environment
+ * variable of the same name, such as {@code COPYCAT_POOL_MAX_IDLE}.
+ */
+public final class Config {
+  private static final Logger log = LogManager.getLogger(Config.class);
+
+  private Config() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Get string setting.
+   *
+   * @param name name of setting
+   * @param defaultValue value to return if setting is not present
+   * @return value of setting
+   */
+  public static String getString(String name, String defaultValue) {
+    String value = System.getProperty(name);
+    if (value == null) {
+      value = System.getenv(name);
+    }
+    return value == null || value.isBlank() ? defaultValue : value.trim();
+  }
+
+  /**
+   * Get integer setting.
+   *
+   * @param name name of setting
+   * @param defaultValue value to return if setting is not present or invalid
+   * @return value of setting
+   */
+  public static int getInt(String name, int defaultValue) {
+    String value = getString(name, null);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      log.warn("Ignoring bad value for {}: {}", name, value);
+      return defaultValue;
+    }
+  }
+}
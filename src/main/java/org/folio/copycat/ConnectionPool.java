@@ -0,0 +1,281 @@
+package org.folio.copycat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.yaz4j.Connection;
+
+/**
+ * Pool of established Z39.50 connections.
+ *
+ * <p>Connections are grouped by target key; a key is made up from everything that
+ * is given to the Init request (URL, authentication and target options), so a
+ * connection is never reused with other credentials. Connections that have been idle
+ * for longer than the idle timeout are closed rather than reused, because most
+ * targets drop idle sessions. Only idle connections are kept here, but all open
+ * connections of a key are counted, including those held by result sets and hedged
+ * searches that the bulkhead of the target URL does not see, and a new connection
+ * is only made while there are fewer than the maximum.
+ *
+ * <p>Connections are not checked before they are reused: yaz4j does not tell the state
+ * of the socket, and Z39.50 has no request cheaper than a search. A session that the
+ * target dropped shows as a search that fails at once, which is then made again on a
+ * new connection.
+ */
+public class ConnectionPool {
+  private static final Logger log = LogManager.getLogger(ConnectionPool.class);
+
+  private final int maxIdle;
+  private final long idleTimeout;
+  private final int maxTotal;
+  private final Map<String, Deque<PooledConnection>> idle = new HashMap<>();
+  private final Map<String, Integer> open = new HashMap<>();
+
+  /**
+   * Connection that is either idle in the pool or borrowed by a caller.
+   */
+  public static final class PooledConnection {
+    private final String key;
+    private final Connection connection;
+    private long lastUsed;
+
+    PooledConnection(String key, Connection connection) {
+      this.key = key;
+      this.connection = connection;
+      this.lastUsed = System.currentTimeMillis();
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    public Connection getConnection() {
+      return connection;
+    }
+  }
+
+  /**
+   * Create pool.
+   *
+   * @param maxIdle maximum number of idle connections per target; 0 disables pooling
+   * @param idleTimeout milliseconds an idle connection may be kept
+   */
+  public ConnectionPool(int maxIdle, long idleTimeout) {
+    this(maxIdle, idleTimeout, 0);
+  }
+
+  /**
+   * Create pool with a limit of open connections.
+   *
+   * @param maxIdle maximum number of idle connections per target; 0 disables pooling
+   * @param idleTimeout milliseconds an idle connection may be kept
+   * @param maxTotal maximum number of open connections per target, idle or not; 0 for
+   *     no limit
+   */
+  public ConnectionPool(int maxIdle, long idleTimeout, int maxTotal) {
+    this.maxIdle = maxIdle;
+    this.idleTimeout = idleTimeout;
+    this.maxTotal = maxTotal;
+  }
+
+  /**
+   * Take idle connection for target.
+   *
+   * @param key target key
+   * @return connection; null if no usable connection is idle
+   */
+  public PooledConnection borrow(String key) {
+    List<PooledConnection> expired = new ArrayList<>();
+    PooledConnection found = null;
+    long now = System.currentTimeMillis();
+    synchronized (this) {
+      Deque<PooledConnection> deque = idle.get(key);
+      while (deque != null && !deque.isEmpty()) {
+        PooledConnection pooled = deque.pollFirst();
+        if (now - pooled.lastUsed < idleTimeout) {
+          found = pooled;
+          break;
+        }
+        expired.add(pooled);
+      }
+      if (deque != null && deque.isEmpty()) {
+        idle.remove(key);
+      }
+    }
+    expired.forEach(this::closeOpen);
+    return found;
+  }
+
+  /**
+   * Reserve room for a new connection, waiting for one to be closed if the target has
+   * the maximum number open. Must be followed by {@link #wrap} or {@link #cancel}.
+   *
+   * @param key target key
+   * @param waitMillis longest time to wait
+   * @throws RecordRetrieverException if there is no room after waiting
+   */
+  public void reserve(String key, long waitMillis) {
+    long deadline = System.currentTimeMillis() + waitMillis;
+    synchronized (this) {
+      while (maxTotal > 0 && open.getOrDefault(key, 0) >= maxTotal) {
+        // a connection released meanwhile is idle; closing it makes room
+        Deque<PooledConnection> deque = idle.get(key);
+        if (deque != null && !deque.isEmpty()) {
+          closeOpen(deque.pollLast());
+          continue;
+        }
+        long left = deadline - System.currentTimeMillis();
+        if (left <= 0) {
+          throw new RecordRetrieverException("All " + maxTotal
+              + " connections to the target are in use");
+        }
+        try {
+          wait(left);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RecordRetrieverException("Interrupted waiting for connection");
+        }
+      }
+      open.merge(key, 1, Integer::sum);
+    }
+  }
+
+  /**
+   * Cancel reservation, such as when connecting failed.
+   *
+   * @param key target key
+   */
+  public synchronized void cancel(String key) {
+    closed(key);
+  }
+
+  /**
+   * Wrap a new connection, made after {@link #reserve}, so that it can be returned to
+   * the pool later.
+   *
+   * @param key target key
+   * @param connection connection that is connected to the target
+   * @return connection which is borrowed
+   */
+  public PooledConnection wrap(String key, Connection connection) {
+    return new PooledConnection(key, connection);
+  }
+
+  /**
+   * Return healthy connection to the pool. The connection is closed if the pool
+   * for the target is full.
+   *
+   * @param pooled connection that was borrowed or wrapped
+   */
+  public void release(PooledConnection pooled) {
+    pooled.lastUsed = System.currentTimeMillis();
+    synchronized (this) {
+      Deque<PooledConnection> deque = idle.computeIfAbsent(pooled.key, k -> new ArrayDeque<>());
+      if (deque.size() < maxIdle) {
+        deque.addFirst(pooled);
+        return;
+      }
+      if (deque.isEmpty()) {
+        idle.remove(pooled.key);
+      }
+    }
+    closeOpen(pooled);
+  }
+
+  /**
+   * Close connection that is no longer usable, such as after a network error.
+   *
+   * @param pooled connection that was borrowed or wrapped
+   */
+  public void discard(PooledConnection pooled) {
+    closeOpen(pooled);
+  }
+
+  /**
+   * Close all connections that have been idle for too long.
+   *
+   * @return number of connections closed
+   */
+  public int evictIdle() {
+    List<PooledConnection> expired = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    synchronized (this) {
+      Iterator<Deque<PooledConnection>> it = idle.values().iterator();
+      while (it.hasNext()) {
+        Deque<PooledConnection> deque = it.next();
+        deque.removeIf(pooled -> {
+          if (now - pooled.lastUsed >= idleTimeout) {
+            expired.add(pooled);
+            return true;
+          }
+          return false;
+        });
+        if (deque.isEmpty()) {
+          it.remove();
+        }
+      }
+    }
+    expired.forEach(this::closeOpen);
+    if (!expired.isEmpty()) {
+      log.info("Closed {} idle Z39.50 connections", expired.size());
+    }
+    return expired.size();
+  }
+
+  /**
+   * Close all idle connections.
+   */
+  public void clear() {
+    List<PooledConnection> all = new ArrayList<>();
+    synchronized (this) {
+      idle.values().forEach(all::addAll);
+      idle.clear();
+    }
+    all.forEach(this::closeOpen);
+  }
+
+  /**
+   * Get number of idle connections for target.
+   *
+   * @param key target key
+   * @return number of idle connections
+   */
+  public synchronized int getIdleCount(String key) {
+    Deque<PooledConnection> deque = idle.get(key);
+    return deque == null ? 0 : deque.size();
+  }
+
+  /**
+   * Get number of open connections for target, idle or not.
+   *
+   * @param key target key
+   * @return number of connections reserved and not closed
+   */
+  public synchronized int getOpenCount(String key) {
+    return open.getOrDefault(key, 0);
+  }
+
+  private synchronized void closed(String key) {
+    open.computeIfPresent(key, (k, n) -> n > 1 ? n - 1 : null);
+    notifyAll();
+  }
+
+  private void closeOpen(PooledConnection pooled) {
+    closed(pooled.key);
+    close(pooled);
+  }
+
+  private static void close(PooledConnection pooled) {
+    try {
+      pooled.connection.close();
+    } catch (Exception e) {
+      log.warn("Closing Z39.50 connection failed: {}", e.getMessage(), e);
+    }
+  }
+}
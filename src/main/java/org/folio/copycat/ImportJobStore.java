@@ -0,0 +1,69 @@
+package org.folio.copycat;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Tuple;
+import org.folio.rest.jaxrs.model.CopyCatImportJob;
+import org.folio.rest.persist.PostgresClient;
+
+/**
+ * Status of asynchronous imports in a table of the tenant schema, so that any
+ * instance of the module can report it.
+ *
+ * <p>Besides the job, a row holds the time after which it may be removed, which is
+ * renewed whenever the job is saved.
+ */
+public class ImportJobStore {
+  public static final String TABLE = "import_job";
+  private static final String EXPIRES = "expires";
+  private static final long TTL = Config.getInt("COPYCAT_IMPORT_JOB_TTL", 86400) * 1000L;
+
+  private final PostgresClient postgresClient;
+
+  public ImportJobStore(PostgresClient postgresClient) {
+    this.postgresClient = postgresClient;
+  }
+
+  /**
+   * Insert or update job.
+   *
+   * @param job import job with id
+   * @return async result
+   */
+  public Future<Void> save(CopyCatImportJob job) {
+    JsonObject row = JsonObject.mapFrom(job)
+        .put(EXPIRES, System.currentTimeMillis() + TTL);
+    return postgresClient.upsert(TABLE, job.getId(), row).mapEmpty();
+  }
+
+  /**
+   * Get job.
+   *
+   * @param id job identifier
+   * @return async result with job; null if not found
+   */
+  public Future<CopyCatImportJob> get(String id) {
+    return postgresClient.getById(TABLE, id)
+        .map(row -> {
+          if (row == null) {
+            return null;
+          }
+          row.remove(EXPIRES);
+          return row.mapTo(CopyCatImportJob.class);
+        });
+  }
+
+  /**
+   * Remove jobs that expired.
+   *
+   * @param postgresClient client for module
+   * @param schema schema of tenant
+   * @return async result with number of jobs removed
+   */
+  public static Future<Integer> purge(PostgresClient postgresClient, String schema) {
+    return postgresClient.execute("DELETE FROM " + schema + "." + TABLE
+            + " WHERE (jsonb->>'" + EXPIRES + "')::bigint < $1",
+            Tuple.of(System.currentTimeMillis()))
+        .map(rows -> rows.rowCount());
+  }
+}
@@ -0,0 +1,169 @@
+package org.folio.copycat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Job executions created ahead of demand, so that an import can post its record at
+ * once.
+ *
+ * <p>Jobs are kept per key, which must tell everything a job depends on: tenant,
+ * user and job profile. Up to size jobs are ready or being created per key. A job that
+ * has been ready for longer than the time to live, or past the time it was added
+ * with, is not handed out, but given to the expire handler, which is expected to
+ * delete it.
+ *
+ * @param <T> job execution
+ */
+public class JobExecutionPool<T> {
+  private final int size;
+  private final long ttl;
+  private final Consumer<T> expireHandler;
+  private final Map<String, Deque<Entry<T>>> ready = new HashMap<>();
+  private final Map<String, Integer> pending = new HashMap<>();
+
+  private record Entry<T>(T job, long expires) {
+  }
+
+  /**
+   * Create pool.
+   *
+   * @param size jobs kept per key; 0 disables the pool
+   * @param ttl milliseconds a job may be kept
+   * @param expireHandler called, outside any lock, for jobs that expired
+   */
+  public JobExecutionPool(int size, long ttl, Consumer<T> expireHandler) {
+    this.size = size;
+    this.ttl = ttl;
+    this.expireHandler = expireHandler;
+  }
+
+  public boolean isEnabled() {
+    return size > 0;
+  }
+
+  /**
+   * Take ready job.
+   *
+   * @param key tenant, user and job profile
+   * @return job; null if none is ready
+   */
+  public T take(String key) {
+    List<T> expired = new ArrayList<>();
+    T job = null;
+    synchronized (this) {
+      Deque<Entry<T>> entries = ready.get(key);
+      long now = System.currentTimeMillis();
+      while (job == null && entries != null && !entries.isEmpty()) {
+        Entry<T> entry = entries.poll();
+        if (entry.expires > now) {
+          job = entry.job;
+        } else {
+          expired.add(entry.job);
+        }
+      }
+    }
+    expired.forEach(expireHandler);
+    return job;
+  }
+
+  /**
+   * Reserve room for jobs to create; each must be followed by {@link #add} or
+   * {@link #cancel}.
+   *
+   * @param key tenant, user and job profile
+   * @return number of jobs to create so that the pool is full
+   */
+  public synchronized int reserve(String key) {
+    Deque<Entry<T>> entries = ready.get(key);
+    int have = (entries == null ? 0 : entries.size()) + pending.getOrDefault(key, 0);
+    int missing = Math.max(0, size - have);
+    if (missing > 0) {
+      pending.merge(key, missing, Integer::sum);
+    }
+    return missing;
+  }
+
+  /**
+   * Add job that has been created for a reservation.
+   *
+   * @param key tenant, user and job profile
+   * @param job ready job
+   */
+  public void add(String key, T job) {
+    add(key, job, Long.MAX_VALUE);
+  }
+
+  /**
+   * Add job that has been created for a reservation and that must not be kept past a
+   * given time, such as when the token it was created with expires.
+   *
+   * @param key tenant, user and job profile
+   * @param job ready job
+   * @param notAfter time, in milliseconds since the epoch, at which the job expires at
+   *     the latest
+   */
+  public synchronized void add(String key, T job, long notAfter) {
+    release(key);
+    ready.computeIfAbsent(key, k -> new ArrayDeque<>())
+        .add(new Entry<>(job, Math.min(notAfter, System.currentTimeMillis() + ttl)));
+  }
+
+  /**
+   * Cancel reservation, such as when creating the job failed.
+   *
+   * @param key tenant, user and job profile
+   */
+  public synchronized void cancel(String key) {
+    release(key);
+  }
+
+  private void release(String key) {
+    pending.computeIfPresent(key, (k, n) -> n > 1 ? n - 1 : null);
+  }
+
+  /**
+   * Give expired jobs to the expire handler.
+   *
+   * @return number of jobs expired
+   */
+  public int evictExpired() {
+    List<T> expired = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    synchronized (this) {
+      Iterator<Deque<Entry<T>>> it = ready.values().iterator();
+      while (it.hasNext()) {
+        Deque<Entry<T>> entries = it.next();
+        entries.removeIf(entry -> {
+          if (entry.expires <= now) {
+            expired.add(entry.job);
+            return true;
+          }
+          return false;
+        });
+        if (entries.isEmpty()) {
+          it.remove();
+        }
+      }
+    }
+    expired.forEach(expireHandler);
+    return expired.size();
+  }
+
+  /**
+   * Number of ready jobs.
+   *
+   * @param key tenant, user and job profile
+   * @return number of jobs, including expired ones not yet evicted
+   */
+  public synchronized int size(String key) {
+    Deque<Entry<T>> entries = ready.get(key);
+    return entries == null ? 0 : entries.size();
+  }
+}
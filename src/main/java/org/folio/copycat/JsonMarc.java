@@ -2,6 +2,8 @@ package org.folio.copycat;
 
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.List;
 
 public final class JsonMarc {
   private JsonMarc() {
@@ -17,72 +19,152 @@ public final class JsonMarc {
    * @throws IllegalArgumentException for bad syntax of marcPath or if marc does not have fields/subfields
    */
   public static void embedPath(JsonObject marc, String marcPath, String value) {
-    if (marcPath.length() != 7) {
-      throw new IllegalArgumentException("pattern must be exactly 7 characters (3+2+$+subfield)");
-    }
-    if (marcPath.charAt(5) != '$') {
-      throw new IllegalArgumentException("Missing $ in marcPath");
-    }
-    final String tagPattern = marcPath.substring(0, 3);
-    String indicatorPattern = marcPath.substring(3, 5);
-    indicatorPattern = indicatorPattern.replace('_', ' ');
-    final String subFieldPattern = marcPath.substring(6);
-    JsonArray ar = marc.getJsonArray("fields");
-    if (ar == null) {
-      throw new IllegalArgumentException("No fields in marc");
+    EmbedPath.compile(marcPath).embed(marc, value);
+  }
+
+  /**
+   * Location in MARC record that a value is embedded in, checked and split up once.
+   */
+  public static final class EmbedPath {
+    private final String tagPattern;
+    private final String indicatorPattern;
+    private final String subFieldPattern;
+
+    private EmbedPath(String tagPattern, String indicatorPattern, String subFieldPattern) {
+      this.tagPattern = tagPattern;
+      this.indicatorPattern = indicatorPattern;
+      this.subFieldPattern = subFieldPattern;
     }
-    int i;
-    for (i = 0; i < ar.size(); i++) {
-      JsonObject entry = ar.getJsonObject(i);
-      // see if we have reached a tag after where we're going to insert..
-      int cmp = 0;
-      for (String tag : entry.fieldNames()) {
-        cmp = tag.compareTo(tagPattern);
-      }
-      if (cmp > 0) {
-        break;
+
+    /**
+     * Parse embed path.
+     *
+     * @param marcPath tag, two indicators ("_" for blank), "$" and subfield code
+     * @return embed path
+     * @throws IllegalArgumentException for bad syntax of marcPath
+     */
+    public static EmbedPath compile(String marcPath) {
+      if (marcPath.length() != 7) {
+        throw new IllegalArgumentException("pattern must be exactly 7 characters (3+2+$+subfield)");
       }
-      Object fieldValue = entry.getValue(tagPattern);
-      if (!(fieldValue instanceof JsonObject)) {
-        continue;
+      if (marcPath.charAt(5) != '$') {
+        throw new IllegalArgumentException("Missing $ in marcPath");
       }
-      JsonObject jsonField = (JsonObject) fieldValue;
-      JsonArray subAr = jsonField.getJsonArray("subfields");
-      if (subAr == null) {
-        throw new IllegalArgumentException("No subfields in marc");
+      return new EmbedPath(marcPath.substring(0, 3), marcPath.substring(3, 5).replace('_', ' '),
+          marcPath.substring(6));
+    }
+
+    /**
+     * Embed value in MARC record.
+     *
+     * @param marc JSON MARC
+     * @param value string to embed.
+     * @throws IllegalArgumentException if marc does not have fields/subfields
+     */
+    public void embed(JsonObject marc, String value) {
+      JsonArray ar = marc.getJsonArray("fields");
+      if (ar == null) {
+        throw new IllegalArgumentException("No fields in marc");
       }
-      boolean found = true;
-      for (int j = 0; j < indicatorPattern.length(); j++) {
-        if (!indicatorPattern.substring(j, j + 1).equals(jsonField.getString("ind" + (j + 1)))) {
-          found = false;
+      int i;
+      for (i = 0; i < ar.size(); i++) {
+        JsonObject entry = ar.getJsonObject(i);
+        // see if we have reached a tag after where we're going to insert..
+        int cmp = 0;
+        for (String tag : entry.fieldNames()) {
+          cmp = tag.compareTo(tagPattern);
+        }
+        if (cmp > 0) {
+          break;
+        }
+        Object fieldValue = entry.getValue(tagPattern);
+        if (!(fieldValue instanceof JsonObject)) {
+          continue;
+        }
+        JsonObject jsonField = (JsonObject) fieldValue;
+        JsonArray subAr = jsonField.getJsonArray("subfields");
+        if (subAr == null) {
+          throw new IllegalArgumentException("No subfields in marc");
         }
+        boolean found = true;
+        for (int j = 0; j < indicatorPattern.length(); j++) {
+          if (!indicatorPattern.substring(j, j + 1).equals(jsonField.getString("ind" + (j + 1)))) {
+            found = false;
+          }
+        }
+        if (!found) {
+          continue;
+        }
+        for (int k = 0; k < subAr.size(); k++) {
+          JsonObject subField = subAr.getJsonObject(k);
+          if (subField.getString(subFieldPattern) != null) {
+            subAr.set(k, new JsonObject().put(subFieldPattern, value));
+            return;
+          }
+        }
+        // add new subfield
+        subAr.add(new JsonObject().put(subFieldPattern, value));
+        return;
       }
-      if (!found) {
-        continue;
+      // inserting at position i
+      ar.add(new JsonObject()); // expand by one dummy
+      for (int k = ar.size(); --k != i; ) {
+        ar.set(k, ar.getJsonObject(k - 1));
       }
-      for (int k = 0; k < subAr.size(); k++) {
-        JsonObject subField = subAr.getJsonObject(k);
-        if (subField.getString(subFieldPattern) != null) {
-          subAr.set(k, new JsonObject().put(subFieldPattern, value));
-          return;
-        }
+      JsonObject jsonField = new JsonObject();
+      for (int j = 0; j < indicatorPattern.length(); j++) {
+        jsonField.put("ind" + (j + 1), indicatorPattern.substring(j, j + 1));
       }
-      // add new subfield
+      JsonArray subAr = new JsonArray();
+      jsonField.put("subfields", subAr);
       subAr.add(new JsonObject().put(subFieldPattern, value));
-      return;
+      ar.set(i, new JsonObject().put(tagPattern, jsonField));
     }
-    // inserting at position i
-    ar.add(new JsonObject()); // expand by one dummy
-    for (int k = ar.size(); --k != i; ) {
-      ar.set(k, ar.getJsonObject(k - 1));
+  }
+
+  /**
+   * Get values of MARC field.
+   *
+   * @param marc JSON MARC
+   * @param fieldSpec tag for control field or tag followed by subfield code for data field
+   *     (such as "001" or "020a"); null for values of all control fields and subfields.
+   * @return values; empty if there are none
+   * @throws IllegalArgumentException for bad syntax of fieldSpec
+   */
+  public static List<String> getValues(JsonObject marc, String fieldSpec) {
+    if (fieldSpec != null && fieldSpec.length() != 3 && fieldSpec.length() != 4) {
+      throw new IllegalArgumentException("fieldSpec must be 3 or 4 characters (3+subfield)");
     }
-    JsonObject jsonField = new JsonObject();
-    for (int j = 0; j < indicatorPattern.length(); j++) {
-      jsonField.put("ind" + (j + 1), indicatorPattern.substring(j, j + 1));
+    List<String> values = new ArrayList<>();
+    JsonArray ar = marc.getJsonArray("fields");
+    if (ar == null) {
+      return values;
+    }
+    final String tagPattern = fieldSpec == null ? null : fieldSpec.substring(0, 3);
+    final String subFieldPattern = fieldSpec == null || fieldSpec.length() == 3
+        ? null : fieldSpec.substring(3);
+    for (int i = 0; i < ar.size(); i++) {
+      JsonObject entry = ar.getJsonObject(i);
+      for (String tag : entry.fieldNames()) {
+        if (tagPattern != null && !tagPattern.equals(tag)) {
+          continue;
+        }
+        Object fieldValue = entry.getValue(tag);
+        if (fieldValue instanceof String) {
+          values.add((String) fieldValue);
+        } else if (fieldValue instanceof JsonObject) {
+          JsonArray subAr = ((JsonObject) fieldValue).getJsonArray("subfields");
+          for (int k = 0; subAr != null && k < subAr.size(); k++) {
+            JsonObject subField = subAr.getJsonObject(k);
+            for (String code : subField.fieldNames()) {
+              if (subFieldPattern == null || subFieldPattern.equals(code)) {
+                values.add(subField.getString(code));
+              }
+            }
+          }
+        }
+      }
     }
-    JsonArray subAr = new JsonArray();
-    jsonField.put("subfields", subAr);
-    subAr.add(new JsonObject().put(subFieldPattern, value));
-    ar.set(i, new JsonObject().put(tagPattern, jsonField));
+    return values;
   }
 }
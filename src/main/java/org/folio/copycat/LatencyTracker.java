@@ -0,0 +1,96 @@
+package org.folio.copycat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the most recent response times for each target, so that timeouts and
+ * hedging delays can follow how fast a target normally answers.
+ */
+public class LatencyTracker {
+  private final int window;
+  private final int minSamples;
+  private final Map<String, Samples> samples = new HashMap<>();
+
+  private static final class Samples {
+    private final long[] values;
+    private int count;
+    private int next;
+
+    Samples(int window) {
+      values = new long[window];
+    }
+  }
+
+  /**
+   * Create tracker.
+   *
+   * @param window number of most recent response times kept per target
+   * @param minSamples number of response times needed before percentiles are given
+   */
+  public LatencyTracker(int window, int minSamples) {
+    this.window = window;
+    this.minSamples = minSamples;
+  }
+
+  /**
+   * Record response time.
+   *
+   * @param key target
+   * @param millis response time in milliseconds
+   */
+  public synchronized void record(String key, long millis) {
+    Samples s = samples.computeIfAbsent(key, k -> new Samples(window));
+    s.values[s.next] = millis;
+    s.next = (s.next + 1) % window;
+    if (s.count < window) {
+      s.count++;
+    }
+  }
+
+  /**
+   * Get percentile of recent response times.
+   *
+   * @param key target
+   * @param percentile such as 95 or 99
+   * @return response time in milliseconds; -1 if there are too few response times
+   */
+  public long percentile(String key, int percentile) {
+    long[] sorted;
+    synchronized (this) {
+      Samples s = samples.get(key);
+      if (s == null || s.count < minSamples) {
+        return -1;
+      }
+      sorted = Arrays.copyOf(s.values, s.count);
+    }
+    Arrays.sort(sorted);
+    int idx = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+  }
+
+  /**
+   * Get timeout for target: three times the 99th percentile, within limits.
+   *
+   * @param key target
+   * @param minSeconds lowest timeout
+   * @param maxSeconds highest timeout; also used when there are too few response times
+   * @return timeout in seconds
+   */
+  public int timeout(String key, int minSeconds, int maxSeconds) {
+    long p99 = percentile(key, 99);
+    if (p99 < 0) {
+      return maxSeconds;
+    }
+    long seconds = (3 * p99 + 999) / 1000;
+    return (int) Math.max(minSeconds, Math.min(maxSeconds, seconds));
+  }
+
+  /**
+   * Forget response times for all targets.
+   */
+  public synchronized void clear() {
+    samples.clear();
+  }
+}
@@ -0,0 +1,73 @@
+package org.folio.copycat;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Converts MARCXML to JSON MARC (MARC-in-JSON), as produced by YAZ for Z39.50 retrieval.
+ */
+public final class MarcXml {
+  static final String NAMESPACE = "http://www.loc.gov/MARC21/slim";
+
+  private MarcXml() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Convert MARCXML record element to JSON MARC.
+   *
+   * @param reader positioned at the start of the record element; on return positioned at
+   *     the end of the record element
+   * @return JSON MARC record
+   * @throws XMLStreamException if the XML is malformed
+   */
+  public static JsonObject toJson(XMLStreamReader reader) throws XMLStreamException {
+    JsonObject marc = new JsonObject();
+    JsonArray fields = new JsonArray();
+    marc.put("leader", "");
+    marc.put("fields", fields);
+    JsonArray subfields = null;
+    int depth = 1;
+    while (depth > 0 && reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+        continue;
+      }
+      if (event != XMLStreamConstants.START_ELEMENT) {
+        continue;
+      }
+      switch (reader.getLocalName()) {
+        case "leader" -> marc.put("leader", reader.getElementText());
+        case "controlfield" -> {
+          String tag = reader.getAttributeValue(null, "tag");
+          fields.add(new JsonObject().put(tag, reader.getElementText()));
+        }
+        case "datafield" -> {
+          depth++;
+          subfields = new JsonArray();
+          fields.add(new JsonObject().put(reader.getAttributeValue(null, "tag"), new JsonObject()
+              .put("ind1", indicator(reader.getAttributeValue(null, "ind1")))
+              .put("ind2", indicator(reader.getAttributeValue(null, "ind2")))
+              .put("subfields", subfields)));
+        }
+        case "subfield" -> {
+          String code = reader.getAttributeValue(null, "code");
+          String value = reader.getElementText();
+          if (subfields != null) {
+            subfields.add(new JsonObject().put(code, value));
+          }
+        }
+        default -> depth++;
+      }
+    }
+    return marc;
+  }
+
+  private static String indicator(String value) {
+    return value == null || value.isEmpty() ? " " : value;
+  }
+}
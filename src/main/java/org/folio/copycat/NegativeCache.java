@@ -0,0 +1,92 @@
+package org.folio.copycat;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers failed retrievals for a short while, so that repeated requests for a
+ * missing record fail at once without contacting the target.
+ */
+public class NegativeCache {
+  private final int maxEntries;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private static final class Entry {
+    private final String profileId;
+    private final RecordRetrieverException failure;
+    private final long expires;
+
+    Entry(String profileId, RecordRetrieverException failure, long expires) {
+      this.profileId = profileId;
+      this.failure = failure;
+      this.expires = expires;
+    }
+  }
+
+  /**
+   * Create cache.
+   *
+   * @param maxEntries maximum number of failures remembered
+   */
+  public NegativeCache(int maxEntries) {
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Get failure.
+   *
+   * @param key cache key
+   * @return failure; null if there is none or it has expired
+   */
+  public synchronized RecordRetrieverException get(String key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.expires <= System.currentTimeMillis()) {
+      entries.remove(key);
+      return null;
+    }
+    return entry.failure;
+  }
+
+  /**
+   * Remember failure.
+   *
+   * @param key cache key
+   * @param profileId profile that the failure happened with
+   * @param failure the failure
+   * @param ttl time to live in milliseconds
+   */
+  public synchronized void put(String key, String profileId, RecordRetrieverException failure,
+      long ttl) {
+    if (ttl <= 0 || maxEntries <= 0) {
+      return;
+    }
+    entries.put(key, new Entry(profileId, failure, System.currentTimeMillis() + ttl));
+    Iterator<Entry> it = entries.values().iterator();
+    while (entries.size() > maxEntries && it.hasNext()) {
+      it.next();
+      it.remove();
+    }
+  }
+
+  /**
+   * Forget all failures for a profile.
+   *
+   * @param profileId profile identifier
+   */
+  public synchronized void invalidate(String profileId) {
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      if (it.next().getValue().profileId.equals(profileId)) {
+        it.remove();
+      }
+    }
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+}
@@ -0,0 +1,114 @@
+package org.folio.copycat;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Plans polling for the outcome of imports from how long recent imports of the
+ * tenant took to complete.
+ *
+ * <p>The first check is made at half the median of recent completion times; after
+ * that the wait doubles, with jitter, up to a maximum wait. A check only tells that
+ * the import completed since the previous check, so a completion is recorded as the
+ * midpoint between the two; were it recorded as the time of the check that found it,
+ * the first wait could never go down. Polling stops at a
+ * deadline of three times the 99th percentile of recent completion times, within
+ * limits. Polling that reaches the deadline records the time it polled, so that the
+ * deadline grows when imports get slower. Until a tenant has enough completions, the
+ * first check is made after the default first wait and the deadline is the maximum.
+ *
+ * <p>A null tenant stands for imports that are not planned from, nor recorded in,
+ * completion times, such as imports of many records.
+ */
+public class PollPlanner {
+  private static final long MIN_WAIT = 20;
+  /** Not less than the 20 checks 300 ms apart that polling made before it was planned. */
+  private static final long MIN_DEADLINE = 6000;
+
+  private final LatencyTracker completions;
+  private final long firstWait;
+  private final long maxWait;
+  private final long maxDeadline;
+
+  /**
+   * Create planner.
+   *
+   * @param window number of most recent completion times kept per tenant
+   * @param minSamples number of completion times needed before they are used
+   * @param firstWait milliseconds before first check when there are too few completions
+   * @param maxWait longest wait between checks in milliseconds
+   * @param maxDeadline longest time to poll in milliseconds
+   */
+  public PollPlanner(int window, int minSamples, long firstWait, long maxWait,
+      long maxDeadline) {
+    this.completions = new LatencyTracker(window, minSamples);
+    this.firstWait = firstWait;
+    this.maxWait = maxWait;
+    this.maxDeadline = maxDeadline;
+  }
+
+  /**
+   * Record time it took for an import to complete.
+   *
+   * @param tenant tenant identifier; null for none
+   * @param millis milliseconds from posting the last record until complete
+   */
+  public void record(String tenant, long millis) {
+    if (tenant != null) {
+      completions.record(tenant, millis);
+    }
+  }
+
+  /**
+   * Record completion of an import found by a check.
+   *
+   * @param tenant tenant identifier; null for none
+   * @param missedMillis milliseconds from posting the last record until the last check
+   *     that found the import not complete; 0 if there was no such check
+   * @param foundMillis milliseconds from posting the last record until the check that
+   *     found the import complete
+   */
+  public void record(String tenant, long missedMillis, long foundMillis) {
+    record(tenant, (missedMillis + foundMillis) / 2);
+  }
+
+  /**
+   * Get wait before first check.
+   *
+   * @param tenant tenant identifier; null for none
+   * @return milliseconds
+   */
+  public long firstWait(String tenant) {
+    long median = tenant == null ? -1 : completions.percentile(tenant, 50);
+    if (median < 0) {
+      return firstWait;
+    }
+    return Math.max(MIN_WAIT, Math.min(maxWait, median / 2));
+  }
+
+  /**
+   * Get wait before next check: twice the previous wait with jitter, so that imports
+   * that completed at the same time do not poll at the same time.
+   *
+   * @param previous previous wait in milliseconds
+   * @return milliseconds, between previous wait and twice of it, at most maximum wait
+   */
+  public long nextWait(long previous) {
+    long wait = Math.min(maxWait, 2 * previous);
+    long jitter = wait / 2;
+    return wait - jitter + ThreadLocalRandom.current().nextLong(jitter + 1);
+  }
+
+  /**
+   * Get time to give up polling.
+   *
+   * @param tenant tenant identifier; null for none
+   * @return milliseconds after the last record was posted
+   */
+  public long deadline(String tenant) {
+    long p99 = tenant == null ? -1 : completions.percentile(tenant, 99);
+    if (p99 < 0) {
+      return maxDeadline;
+    }
+    return Math.max(Math.min(MIN_DEADLINE, maxDeadline), Math.min(maxDeadline, 3 * p99));
+  }
+}
@@ -0,0 +1,326 @@
+package org.folio.copycat;
+
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.rest.jaxrs.model.CopyCatProfile;
+import org.folio.rest.jaxrs.model.TargetOptions;
+import org.yaz4j.Connection;
+
+/**
+ * What retrieval and import need from a profile, derived once: ZOOM options as
+ * strings, authentication, target key, query mapping split at {@code $identifier},
+ * MARC encoding and embed path.
+ *
+ * <p>Plans are immutable and cached by profile identifier. A cached plan is only used
+ * while the profile has the same values it was made from, so a modified profile gets
+ * a new plan even when it was modified by another instance of the module.
+ *
+ * <p>Problems with options and embed path are kept in the plan and reported when the
+ * option or path is used, so that profiles saved before {@link #validate} was
+ * introduced behave as before.
+ */
+public final class ProfilePlan {
+  private static final Logger log = LogManager.getLogger(ProfilePlan.class);
+  private static final Pattern ATTRSET_PATTERN = Pattern.compile("@attrset\\s+\\S+\\s+");
+  private static final String IDENTIFIER = "$identifier";
+  private static final Map<String, ProfilePlan> plans = new ConcurrentHashMap<>();
+  /** Target options used by the module only; not given to ZOOM, not part of target key. */
+  private static final Set<String> MODULE_OPTIONS =
+      Set.of(RecordRetriever.CACHE_TTL_PROPERTY, RecordRetriever.HEDGE_PROPERTY);
+
+  // values plan is made from
+  private final String url;
+  private final String authentication;
+  private final String externalIdQueryMap;
+  private final String internalIdEmbedPath;
+  private final Map<String, Object> targetOptions;
+
+  private final Map<String, String> options;
+  private final String optionsError;
+  private final Map<String, Integer> intOptions;
+  private final List<String> badIntOptions;
+  private final String user;
+  private final String group;
+  private final String password;
+  private final String targetKey;
+  private final List<String> queryParts;
+  private final String batchPrefix;
+  private final List<String> batchQueryParts;
+  private final String marcEncoding;
+  private final JsonMarc.EmbedPath embedPath;
+  private final String embedPathError;
+
+  private ProfilePlan(CopyCatProfile profile) {
+    url = profile.getUrl();
+    authentication = profile.getAuthentication();
+    externalIdQueryMap = profile.getExternalIdQueryMap();
+    internalIdEmbedPath = profile.getInternalIdEmbedPath();
+    TargetOptions source = profile.getTargetOptions();
+    targetOptions = source == null ? Collections.emptyMap()
+        : Collections.unmodifiableMap(new LinkedHashMap<>(source.getAdditionalProperties()));
+
+    Map<String, String> stringOptions = new LinkedHashMap<>();
+    Map<String, Integer> ints = new HashMap<>();
+    List<String> badInts = new ArrayList<>();
+    String error = null;
+    for (Map.Entry<String, Object> entry : targetOptions.entrySet()) {
+      Object value = entry.getValue();
+      boolean zoomOption = !MODULE_OPTIONS.contains(entry.getKey());
+      if (value instanceof String) {
+        if (zoomOption) {
+          stringOptions.put(entry.getKey(), (String) value);
+        }
+        try {
+          ints.put(entry.getKey(), Integer.parseInt(((String) value).trim()));
+        } catch (NumberFormatException e) {
+          badInts.add(entry.getKey());
+        }
+      } else if (value instanceof Integer) {
+        if (zoomOption) {
+          stringOptions.put(entry.getKey(), Integer.toString((Integer) value));
+        }
+        ints.put(entry.getKey(), (Integer) value);
+      } else if (error == null) {
+        error = "Illegal options type for key " + entry.getKey() + ": "
+            + (value == null ? null : value.getClass());
+      }
+    }
+    options = Collections.unmodifiableMap(stringOptions);
+    optionsError = error;
+    intOptions = Collections.unmodifiableMap(ints);
+    badIntOptions = List.copyOf(badInts);
+
+    String[] auth = authentication == null ? new String[0] : authentication.trim().split("\\s+");
+    user = auth.length > 0 ? auth[0] : null;
+    group = auth.length == 3 ? auth[1] : null;
+    password = auth.length == 2 ? auth[1] : auth.length == 3 ? auth[2] : null;
+
+    StringBuilder key = new StringBuilder();
+    key.append(url).append('\u0001').append(authentication);
+    new TreeMap<>(stringOptions).forEach((k, v) ->
+        key.append('\u0001').append(k).append('=').append(v));
+    targetKey = key.toString();
+
+    if (externalIdQueryMap == null) {
+      queryParts = null;
+      batchPrefix = null;
+      batchQueryParts = null;
+    } else {
+      queryParts = split(externalIdQueryMap);
+      String queryMap = externalIdQueryMap.trim();
+      // attribute set may only be given once, at the start of the query
+      Matcher matcher = ATTRSET_PATTERN.matcher(queryMap);
+      if (matcher.lookingAt()) {
+        batchPrefix = matcher.group();
+        queryMap = queryMap.substring(matcher.end());
+      } else {
+        batchPrefix = "";
+      }
+      batchQueryParts = split(queryMap);
+    }
+
+    Object encoding = targetOptions.get(RecordRetriever.MARCENCODING_PROPERTY);
+    // for YAZ, specifying marc8 here really means that it will use either UTF-8 or MARC-8
+    // depending on the leader of the MARC record.
+    marcEncoding = encoding == null ? "marc-8" : encoding.toString();
+
+    JsonMarc.EmbedPath path = null;
+    String pathError = null;
+    if (internalIdEmbedPath != null) {
+      try {
+        path = JsonMarc.EmbedPath.compile(internalIdEmbedPath);
+      } catch (IllegalArgumentException e) {
+        pathError = e.getMessage();
+      }
+    }
+    embedPath = path;
+    embedPathError = pathError;
+  }
+
+  private static List<String> split(String queryMap) {
+    List<String> parts = new ArrayList<>();
+    int start = 0;
+    int pos;
+    while ((pos = queryMap.indexOf(IDENTIFIER, start)) != -1) {
+      parts.add(queryMap.substring(start, pos));
+      start = pos + IDENTIFIER.length();
+    }
+    parts.add(queryMap.substring(start));
+    return List.copyOf(parts);
+  }
+
+  /**
+   * Get plan for profile, making it if the profile is new or has been modified.
+   *
+   * @param profile target profile
+   * @return plan
+   */
+  public static ProfilePlan of(CopyCatProfile profile) {
+    String id = profile.getId();
+    if (id == null) {
+      return new ProfilePlan(profile);
+    }
+    ProfilePlan plan = plans.get(id);
+    if (plan == null || !plan.matches(profile)) {
+      plan = new ProfilePlan(profile);
+      plans.put(id, plan);
+    }
+    return plan;
+  }
+
+  /**
+   * Forget plan of profile.
+   *
+   * @param profileId profile identifier
+   */
+  public static void remove(String profileId) {
+    plans.remove(profileId);
+  }
+
+  /**
+   * Check target options and embed path of profile; to be called when a profile is
+   * saved.
+   *
+   * @param profile target profile
+   * @throws IllegalArgumentException with a message about the first problem found
+   */
+  public static void validate(CopyCatProfile profile) {
+    ProfilePlan plan = new ProfilePlan(profile);
+    if (plan.optionsError != null) {
+      throw new IllegalArgumentException(plan.optionsError);
+    }
+    for (String name : List.of(RecordRetriever.CACHE_TTL_PROPERTY,
+        RecordRetriever.HEDGE_PROPERTY, RecordRetriever.TIMEOUT_PROPERTY)) {
+      if (plan.badIntOptions.contains(name)) {
+        throw new IllegalArgumentException("Target option " + name + " must be an integer: "
+            + plan.targetOptions.get(name));
+      }
+    }
+    if (plan.embedPathError != null) {
+      throw new IllegalArgumentException("Bad internalIdEmbedPath " + plan.internalIdEmbedPath
+          + ": " + plan.embedPathError);
+    }
+  }
+
+  boolean matches(CopyCatProfile profile) {
+    TargetOptions source = profile.getTargetOptions();
+    Map<String, Object> current = source == null ? Collections.emptyMap()
+        : source.getAdditionalProperties();
+    return Objects.equals(url, profile.getUrl())
+        && Objects.equals(authentication, profile.getAuthentication())
+        && Objects.equals(externalIdQueryMap, profile.getExternalIdQueryMap())
+        && Objects.equals(internalIdEmbedPath, profile.getInternalIdEmbedPath())
+        && targetOptions.equals(current);
+  }
+
+  /**
+   * Apply authentication and target options to connection.
+   *
+   * @param conn connection that is not yet connected
+   * @throws RecordRetrieverException if a target option is neither string nor integer
+   */
+  public void configure(Connection conn) {
+    if (optionsError != null) {
+      throw new RecordRetrieverException(optionsError);
+    }
+    if (user != null) {
+      conn.option("user", user);
+    }
+    if (group != null) {
+      conn.option("group", group);
+    }
+    if (password != null) {
+      conn.option("password", password);
+    }
+    options.forEach(conn::option);
+  }
+
+  Map<String, String> getZoomOptions() {
+    return options;
+  }
+
+  public String getTargetKey() {
+    return targetKey;
+  }
+
+  public boolean hasOption(String name) {
+    return targetOptions.containsKey(name);
+  }
+
+  /**
+   * Get integer target option.
+   *
+   * @param name name of option
+   * @param defaultValue value if option is not given or is invalid
+   * @return value of option
+   */
+  public int getIntOption(String name, int defaultValue) {
+    Integer value = intOptions.get(name);
+    if (value == null && badIntOptions.contains(name)) {
+      log.warn("Ignoring bad value for target option {}: {}", name, targetOptions.get(name));
+    }
+    return value == null ? defaultValue : value;
+  }
+
+  public String getMarcEncoding() {
+    return marcEncoding;
+  }
+
+  /**
+   * Make query for identifier from query mapping.
+   *
+   * @param externalId identifier
+   * @return query with {@code $identifier} replaced by identifier
+   */
+  public String query(String externalId) {
+    return String.join(externalId, queryParts);
+  }
+
+  /**
+   * Make query that finds any of the identifiers.
+   *
+   * @param externalIds identifiers
+   * @return query mapping applied for each identifier and OR'ed together
+   */
+  public String batchQuery(List<String> externalIds) {
+    StringBuilder pqf = new StringBuilder(batchPrefix);
+    for (int i = 1; i < externalIds.size(); i++) {
+      pqf.append("@or ");
+    }
+    for (int i = 0; i < externalIds.size(); i++) {
+      if (i > 0) {
+        pqf.append(' ');
+      }
+      pqf.append(String.join(externalIds.get(i), batchQueryParts));
+    }
+    return pqf.toString();
+  }
+
+  /**
+   * Embed value at internalIdEmbedPath of profile.
+   *
+   * @param marc JSON MARC
+   * @param value string to embed
+   * @throws IllegalArgumentException for bad syntax of embed path or if marc does not
+   *     have fields/subfields
+   */
+  public void embed(JsonObject marc, String value) {
+    if (embedPathError != null) {
+      throw new IllegalArgumentException(embedPathError);
+    }
+    embedPath.embed(marc, value);
+  }
+}
@@ -0,0 +1,127 @@
+package org.folio.copycat;
+
+import io.vertx.core.json.JsonObject;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of retrieved records with a time to live for each entry.
+ *
+ * <p>The cache is bounded by the encoded size of the records. Records are copied on the
+ * way in and on the way out, so callers may modify what they get.
+ */
+public class RecordCache {
+  private final long maxBytes;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long bytes;
+
+  private static final class Entry {
+    private final String profileId;
+    private final JsonObject record;
+    private final long size;
+    private final long expires;
+
+    Entry(String profileId, JsonObject record, long size, long expires) {
+      this.profileId = profileId;
+      this.record = record;
+      this.size = size;
+      this.expires = expires;
+    }
+  }
+
+  /**
+   * Create cache.
+   *
+   * @param maxBytes maximum total size of records in cache
+   */
+  public RecordCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Get record.
+   *
+   * @param key cache key
+   * @return copy of record; null if not in cache or expired
+   */
+  public JsonObject get(String key) {
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (entry.expires <= System.currentTimeMillis()) {
+        remove(key);
+        return null;
+      }
+    }
+    return entry.record.copy();
+  }
+
+  /**
+   * Put record in cache.
+   *
+   * @param key cache key
+   * @param profileId profile that the record was retrieved with
+   * @param record record; a copy is stored
+   * @param size encoded size of record in bytes
+   * @param ttl time to live in milliseconds
+   */
+  public void put(String key, String profileId, JsonObject record, long size, long ttl) {
+    if (size > maxBytes || ttl <= 0) {
+      return;
+    }
+    Entry entry = new Entry(profileId, record.copy(), size, System.currentTimeMillis() + ttl);
+    synchronized (this) {
+      remove(key);
+      entries.put(key, entry);
+      bytes += size;
+      Iterator<Entry> it = entries.values().iterator();
+      while (bytes > maxBytes && it.hasNext()) {
+        bytes -= it.next().size;
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Remove all records that were retrieved with a profile.
+   *
+   * @param profileId profile identifier
+   */
+  public synchronized void invalidate(String profileId) {
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Entry entry = it.next().getValue();
+      if (entry.profileId.equals(profileId)) {
+        bytes -= entry.size;
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Remove all records.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  private void remove(String key) {
+    Entry old = entries.remove(key);
+    if (old != null) {
+      bytes -= old.size;
+    }
+  }
+}
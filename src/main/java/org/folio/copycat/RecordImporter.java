@@ -5,15 +5,20 @@ import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.http.PoolOptions;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.HttpRequest;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.client.WebClientOptions;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -29,43 +34,70 @@ import org.folio.okapi.common.XOkapiHeaders;
  * <li><a href="https://github.com/folio-org/data-import-raml-storage/blob/master/schemas/dto/">schemas</a></li>
  * <li><a href="https://github.com/folio-org/mod-source-record-manager/blob/master/README.md#data-import-workflow">workflow</a></li>
  * </ul>
+ *
+ * <p>Importers of a Vert.x instance share one WebClient, so that connections to Okapi
+ * are kept alive and reused between imports. Okapi headers are set on each request.
  */
 public class RecordImporter {
 
-  private static final int WEBCLIENT_CONNECT_TIMEOUT = 10;
+  private static final int WEBCLIENT_CONNECT_TIMEOUT = 10000;
   private static final int WEBCLIENT_IDLE_TIMEOUT = 20;
-  private static final int SOURCE_STORAGE_POLL_WAIT = 300;
   private static final int SOURCE_STORAGE_POLL_ITERATIONS = 20;
-  private static final int UPDATE_POLL = 5000;
+  private static final int UPDATE_MAX_WAIT = Config.getInt("COPYCAT_UPDATE_MAX_WAIT", 30) * 1000;
+  private static final int JOB_POLL_WAIT = Config.getInt("COPYCAT_JOB_POLL_WAIT", 250);
+  private static final Set<String> JOB_FAILED = Set.of("ERROR", "DISCARDED", "CANCELLED");
+  private static final int CHUNK_SIZE =
+      Math.max(1, Config.getInt("COPYCAT_IMPORT_CHUNK_SIZE", 50));
+  private static final int POOL_SIZE = Config.getInt("COPYCAT_IMPORT_POOL_SIZE", 20);
+  private static final boolean PIPELINING = Config.getInt("COPYCAT_IMPORT_PIPELINING", 0) > 0;
+  private static final boolean HTTP2 = Config.getInt("COPYCAT_IMPORT_HTTP2", 0) > 0;
+
+  /** Ready job executions are deleted this long before the token they were made with expires. */
+  private static final long TOKEN_EXPIRY_MARGIN = 60000;
 
   private static final Logger log = LogManager.getLogger(RecordImporter.class);
+  private static final JobExecutionPool<RecordImporter> jobPool = new JobExecutionPool<>(
+      Config.getInt("COPYCAT_JOB_POOL_SIZE", 0),
+      Config.getInt("COPYCAT_JOB_POOL_TTL", 300) * 1000L,
+      RecordImporter::discard);
+  private static final PollPlanner pollPlanner = new PollPlanner(
+      Config.getInt("COPYCAT_SRS_POLL_WINDOW", 50), 10,
+      Config.getInt("COPYCAT_SRS_POLL_FIRST_WAIT", 200),
+      Config.getInt("COPYCAT_SRS_POLL_MAX_WAIT", 2000),
+      Config.getInt("COPYCAT_SRS_POLL_DEADLINE", 15) * 1000L);
   private final WebClient client;
+  private final boolean ownClient;
   private final Map<String, String> okapiHeaders;
   private final String okapiUrl;
   private final String userId;
   private String jobId;
   private final Vertx vertx;
-  private int storagePollWait;
+  private final Context context;
+  private final String tenant;
+  private Integer storagePollWait;
   private int storagePollIterations;
+  private int jobPollWait = JOB_POLL_WAIT;
   private Boolean pollingSucceeded;
+  private int chunkSize = CHUNK_SIZE;
+  private int counter;
+  private int total;
+  private boolean lastPosted;
 
   /**
    * Constructor for importing (can NOT be shared between users/tenants).
    *
    * @param okapiHeaders Okapi headers
    * @param context Vert.x. context
-   * @param options Options for WebClient used for logic
+   * @param options Options for a WebClient of this importer only, which is closed by
+   *     {@link #end(List)}; null for the WebClient shared by importers
    */
   public RecordImporter(Map<String, String> okapiHeaders, Context context,
                         WebClientOptions options) {
 
-    if (options == null) {
-      options = new WebClientOptions();
-      options.setConnectTimeout(WEBCLIENT_CONNECT_TIMEOUT);
-      options.setIdleTimeout(WEBCLIENT_IDLE_TIMEOUT);
-    }
     vertx = context.owner();
-    client = WebClient.create(vertx, options);
+    this.context = context;
+    ownClient = options != null;
+    client = ownClient ? WebClient.create(vertx, options) : getWebClient(vertx);
     this.okapiUrl = okapiHeaders.get(XOkapiHeaders.URL);
     if (this.okapiUrl == null) {
       throw new IllegalArgumentException("Missing " + XOkapiHeaders.URL + " header");
@@ -75,7 +107,7 @@ public class RecordImporter {
       throw new IllegalArgumentException("Missing " + XOkapiHeaders.USER_ID + " header");
     }
     this.okapiHeaders = okapiHeaders;
-    storagePollWait = SOURCE_STORAGE_POLL_WAIT;
+    this.tenant = okapiHeaders.get(XOkapiHeaders.TENANT);
     storagePollIterations = SOURCE_STORAGE_POLL_ITERATIONS;
   }
 
@@ -90,6 +122,51 @@ public class RecordImporter {
     this(okapiHeaders, context, null);
   }
 
+  static WebClientOptions sharedClientOptions() {
+    WebClientOptions options = new WebClientOptions()
+        .setConnectTimeout(WEBCLIENT_CONNECT_TIMEOUT)
+        .setIdleTimeout(WEBCLIENT_IDLE_TIMEOUT)
+        .setKeepAlive(true)
+        .setPipelining(PIPELINING);
+    if (HTTP2) {
+      // upgrade from HTTP/1.1, so that an Okapi without HTTP/2 still works
+      options.setProtocolVersion(HttpVersion.HTTP_2)
+          .setHttp2ClearTextUpgrade(true);
+    }
+    return options;
+  }
+
+  static WebClient getWebClient(Vertx vertx) {
+    return WebClients.get(vertx, RecordImporter.class.getName(),
+        v -> WebClient.create(v, sharedClientOptions(), new PoolOptions()
+            .setHttp1MaxSize(POOL_SIZE)
+            .setHttp2MaxSize(Math.max(1, POOL_SIZE / 10))));
+  }
+
+  WebClient getClient() {
+    return client;
+  }
+
+  void setChunkSize(int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Set number of records that will be posted for the job, which is reported to
+   * source-record-manager as total; by default the number of records posted so far.
+   *
+   * @param total number of records
+   */
+  public void setTotal(int total) {
+    this.total = total;
+  }
+
+  /**
+   * Poll source-record-storage at a fixed wait instead of one planned from recent
+   * imports of the tenant.
+   *
+   * @param ms milliseconds between polls
+   */
   void setStoragePollWait(int ms) {
     storagePollWait = ms;
   }
@@ -98,6 +175,10 @@ public class RecordImporter {
     storagePollIterations = cnt;
   }
 
+  void setJobPollWait(int ms) {
+    jobPollWait = ms;
+  }
+
   Future<String> createJob() {
     final String context = "Create job execution";
     String abs = okapiUrl + "/change-manager/jobExecutions";
@@ -128,12 +209,128 @@ public class RecordImporter {
    * @return async result.
    */
   public Future<Void> begin(String jobProfileId) {
+    if (!jobPool.isEnabled()) {
+      return setUp(jobProfileId);
+    }
+    String key = okapiUrl + "\u0001" + tenant + "\u0001" + userId + "\u0001" + jobProfileId;
+    RecordImporter ready = jobPool.take(key);
+    refill(key, jobProfileId);
+    if (ready != null) {
+      jobId = ready.jobId;
+      log.info("Using ready job execution {}", jobId);
+      return Future.succeededFuture();
+    }
+    return setUp(jobProfileId);
+  }
+
+  private Future<Void> setUp(String jobProfileId) {
     return createJob().compose(id -> {
       jobId = id;
       return putJobProfile(jobProfileId);
     });
   }
 
+  /**
+   * Get expiry time of token, from the exp claim of the JWT.
+   *
+   * @param token X-Okapi-Token value; null for none
+   * @return milliseconds since the epoch; Long.MAX_VALUE if no expiry is known
+   */
+  static long tokenExpiry(String token) {
+    if (token == null) {
+      return Long.MAX_VALUE;
+    }
+    String[] parts = token.split("\\.");
+    if (parts.length < 2) {
+      return Long.MAX_VALUE;
+    }
+    try {
+      JsonObject payload = new JsonObject(
+          new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8));
+      Long exp = payload.getLong("exp");
+      return exp == null ? Long.MAX_VALUE : exp * 1000;
+    } catch (RuntimeException e) {
+      log.warn("Could not get expiry of token: {}", e.getMessage());
+      return Long.MAX_VALUE;
+    }
+  }
+
+  /**
+   * Create job executions in the background until the pool has enough for key.
+   *
+   * <p>Ready job executions are deleted with the token of the request that made them, so
+   * they are not kept until that token has expired.
+   */
+  private void refill(String key, String jobProfileId) {
+    long expiry = tokenExpiry(okapiHeaders.get(XOkapiHeaders.TOKEN));
+    long notAfter = expiry == Long.MAX_VALUE ? expiry : expiry - TOKEN_EXPIRY_MARGIN;
+    if (notAfter <= System.currentTimeMillis()) {
+      return;
+    }
+    int missing = jobPool.reserve(key);
+    for (int i = 0; i < missing; i++) {
+      // headers of this request are used, so jobs belong to the same user
+      RecordImporter spare = new RecordImporter(okapiHeaders, context);
+      spare.setUp(jobProfileId)
+          .onSuccess(x -> jobPool.add(key, spare, notAfter))
+          .onFailure(e -> {
+            log.warn("Creating job execution for pool failed: {}", e.getMessage());
+            jobPool.cancel(key);
+            if (spare.jobId != null) {
+              spare.discard();
+            }
+          });
+    }
+  }
+
+  /**
+   * Delete job executions that have been ready for too long.
+   *
+   * @return number of job executions deleted
+   */
+  public static int evictJobExecutions() {
+    return jobPool.evictExpired();
+  }
+
+  /**
+   * Whether a job execution was created or taken from the pool by {@link #begin}, even
+   * if assigning its job profile failed.
+   *
+   * @return true if there is a job execution to post to or to discard
+   */
+  public boolean hasJob() {
+    return jobId != null;
+  }
+
+  /**
+   * Delete job execution created by {@link #begin}, such as when there turned out to be
+   * no record to import.
+   *
+   * @return async result; always succeeds, failures are logged
+   */
+  public Future<Void> discard() {
+    final String context = "Delete job execution";
+    String abs = okapiUrl + "/change-manager/jobExecutions/" + jobId + "/records";
+    HttpRequest<Buffer> request = client.deleteAbs(abs);
+    request.headers().addAll(okapiHeaders);
+    request.putHeader("Accept", "*/*");
+    log.info("{} DELETE {}", context, abs);
+    return request.send().<Void>compose(result -> {
+      if (result.statusCode() != 204) {
+        log.warn("{} DELETE {} returned {}: {}", context, abs, result.statusCode(),
+            result.bodyAsString());
+      }
+      return Future.succeededFuture();
+    }, e -> {
+      log.warn("{} failed: DELETE {}: {}", context, abs, e.getMessage());
+      return Future.succeededFuture();
+    }).onComplete(x -> {
+      if (ownClient) {
+        client.close();
+      }
+    });
+  }
+
   Future<Void> putJobProfile(String jobProfileId) {
     final String context = "Assign job profile for job execution";
     String abs = okapiUrl + "/change-manager/jobExecutions/" + jobId + "/jobProfile";
@@ -158,7 +355,7 @@ public class RecordImporter {
     }, e -> Future.failedFuture(context + " failed: " + "PUT " + abs + ": " + e.getMessage()));
   }
 
-  Future<Void> post(JsonObject record, boolean last) {
+  Future<Void> postChunk(List<JsonObject> records, boolean last) {
     final String context = "Add record for job execution";
     String abs = okapiUrl + "/change-manager/jobExecutions/" + jobId + "/records";
     HttpRequest<Buffer> request = client.postAbs(abs);
@@ -166,14 +363,15 @@ public class RecordImporter {
     request.putHeader("Accept", "*/*");
     request.putHeader("Content-Type", "application/json");
 
+    int chunkCounter = counter + records.size();
     JsonObject recordsMetadata = new JsonObject();
     recordsMetadata.put("last", last);
     recordsMetadata.put("contentType", "MARC_JSON");
-    recordsMetadata.put("counter", 1);
-    recordsMetadata.put("total", 1);
+    recordsMetadata.put("counter", chunkCounter);
+    recordsMetadata.put("total", Math.max(total, chunkCounter));
 
     JsonArray initialRecords = new JsonArray();
-    if (record != null) {
+    for (JsonObject record : records) {
       initialRecords.add(new JsonObject().put("record", record.encodePrettily()));
     }
     JsonObject rawRecordsDto = new JsonObject();
@@ -188,10 +386,16 @@ public class RecordImporter {
         return Future.failedFuture(context + " failed: POST " + abs
           + " returned " + result.statusCode() + " (expected 204):" + result.bodyAsString());
       }
+      counter = chunkCounter;
+      lastPosted = last;
       return Future.succeededFuture();
     }, e -> Future.failedFuture(context + " failed: POST " + abs + ": " + e.getMessage()));
   }
 
+  Future<Void> post(JsonObject record, boolean last) {
+    return postChunk(record == null ? Collections.emptyList() : List.of(record), last);
+  }
+
   /**
    * post record for importing.
    *
@@ -202,8 +406,38 @@ public class RecordImporter {
     return post(record, false);
   }
 
-  Future<List<String>> getSourceRecords1() {
-    String abs = okapiUrl + "/source-storage/source-records?limit=1&snapshotId=" + jobId;
+  /**
+   * post records for importing in chunks; may be called more than once per job.
+   *
+   * <p>The chunks are posted one after the other. With last, the final chunk is marked
+   * as the last one, so that {@link #end(List)} need not post an empty chunk.
+   *
+   * @param records records to be imported
+   * @param last whether these are the last records of the job
+   * @return async result.
+   */
+  public Future<Void> post(List<JsonObject> records, boolean last) {
+    if (records.isEmpty()) {
+      return last ? postChunk(records, true) : Future.succeededFuture();
+    }
+    Future<Void> future = Future.succeededFuture();
+    for (int i = 0; i < records.size(); i += chunkSize) {
+      List<JsonObject> chunk = records.subList(i, Math.min(records.size(), i + chunkSize));
+      boolean lastChunk = last && i + chunkSize >= records.size();
+      future = future.compose(x -> postChunk(chunk, lastChunk));
+    }
+    return future;
+  }
+
+  /**
+   * Get instances of the records of the job.
+   *
+   * @param expected number of records posted
+   * @return async result with instance identifiers; null if not all records have one yet
+   */
+  Future<List<String>> getSourceRecords1(int expected) {
+    String abs = okapiUrl + "/source-storage/source-records?limit=" + expected
+        + "&snapshotId=" + jobId;
     HttpRequest<Buffer> request = client.getAbs(abs);
     request.headers().addAll(okapiHeaders);
     request.putHeader("Accept", "*/*");
@@ -233,7 +467,7 @@ public class RecordImporter {
             instances.add(instanceId);
           }
         }
-        return Future.succeededFuture(instances.isEmpty() ? null : instances);
+        return Future.succeededFuture(instances.size() < expected ? null : instances);
       } catch (Exception e) {
         log.error(e.getMessage(), e);
         return Future.failedFuture(e);
@@ -241,20 +475,91 @@ public class RecordImporter {
     }, e -> Future.failedFuture("GET " + abs + ": " + e.getMessage()));
   }
 
-  Future<List<String>> getSourceRecords(int it) {
-    log.info("get source records, iteration {}", it);
-    return getSourceRecords1().compose(res -> {
-      if (res != null) {
-        return Future.succeededFuture(res);
+  Future<List<String>> getSourceRecords(int it, long wait, long start, long missed,
+      long deadline) {
+    Promise<List<String>> promise = Promise.promise();
+    vertx.setTimer(wait, x -> {
+      log.info("get source records, iteration {}", it);
+      int expected = Math.max(1, counter);
+      getSourceRecords1(expected).compose(res -> {
+        if (res != null) {
+          pollPlanner.record(pollKey(), missed - start, System.currentTimeMillis() - start);
+          return Future.succeededFuture(res);
+        }
+        // didn't get the instance identifiers
+        long now = System.currentTimeMillis();
+        if (it >= storagePollIterations || now >= deadline) {
+          // completion takes at least this long; recorded so that the deadline can grow
+          pollPlanner.record(pollKey(), now - start);
+          return Future.failedFuture("Did not get instances of " + expected + " records after "
+              + it + " retries in " + (now - start) + " milliseconds");
+        }
+        long next = storagePollWait != null ? storagePollWait : pollPlanner.nextWait(wait);
+        return getSourceRecords(it + 1, Math.max(1, Math.min(next, deadline - now)), start,
+            now, deadline);
+      }).onComplete(promise);
+    });
+    return promise.future();
+  }
+
+  /**
+   * Key of completion times that polling for this job is planned from.
+   *
+   * @return tenant for a job of one record; null for jobs of more records, such as batch
+   *     imports, which take longer and would make polling for single records wait longer
+   */
+  private String pollKey() {
+    return counter > 1 ? null : tenant;
+  }
+
+  Future<List<String>> getSourceRecords() {
+    long start = System.currentTimeMillis();
+    long first = storagePollWait != null ? storagePollWait : pollPlanner.firstWait(pollKey());
+    return getSourceRecords(1, Math.max(1, first), start, start,
+        start + pollPlanner.deadline(pollKey()));
+  }
+
+  Future<JsonObject> getJobExecution() {
+    final String context = "Get job execution";
+    String abs = okapiUrl + "/change-manager/jobExecutions/" + jobId;
+    HttpRequest<Buffer> request = client.getAbs(abs);
+    request.headers().addAll(okapiHeaders);
+    request.putHeader("Accept", "*/*");
+    return request.send().compose(result -> {
+      log.info("{} RES {}: {}", context, abs, result.bodyAsString());
+      if (result.statusCode() != 200) {
+        log.error("{} GET {} returned {}", context, abs, result.statusCode());
+        return Future.failedFuture(context + " failed: GET " + abs
+          + " returned " + result.statusCode() + " (expected 200):" + result.bodyAsString());
       }
-      // didn't get the instance identifiers
-      if (it >= storagePollIterations) {
-        return Future.failedFuture("Did not get any instances after "
-            + storagePollIterations + " retries");
+      return Future.succeededFuture(result.bodyAsJsonObject());
+    }, e -> Future.failedFuture(context + " failed: GET " + abs + ": " + e.getMessage()));
+  }
+
+  /**
+   * Wait for job execution to be committed.
+   *
+   * @param deadline time after which to stop waiting, in milliseconds since the epoch
+   * @return async result; failed if the job execution failed or could not be read; succeeds
+   *     if still not committed at deadline, as data import may just be slow
+   */
+  Future<Void> waitForJob(long deadline) {
+    return getJobExecution().compose(jobExecution -> {
+      String status = jobExecution.getString("status");
+      if ("COMMITTED".equals(status)) {
+        return Future.succeededFuture();
+      }
+      if (JOB_FAILED.contains(status)) {
+        String errorStatus = jobExecution.getString("errorStatus");
+        return Future.failedFuture("Import job " + jobId + " ended with status " + status
+            + (errorStatus == null ? "" : " (" + errorStatus + ")"));
       }
-      Promise<List<String>> promise = Promise.promise();
-      vertx.setTimer(storagePollWait, x -> getSourceRecords(it + 1)
-          .onComplete(promise));
+      if (System.currentTimeMillis() >= deadline) {
+        log.warn("Import job {} still has status {}; not waiting any longer", jobId, status);
+        return Future.succeededFuture();
+      }
+      Promise<Void> promise = Promise.promise();
+      vertx.setTimer(jobPollWait, x -> waitForJob(deadline).onComplete(promise));
       return promise.future();
     });
   }
@@ -263,16 +568,15 @@ public class RecordImporter {
     return pollingSucceeded;
   }
 
-  Future<List<String>> end(List<String> instances, long updatePoll) {
-    return post(null, true)
+  Future<List<String>> end(List<String> instances, long updateMaxWait) {
+    Future<Void> last = lastPosted ? Future.succeededFuture() : post((JsonObject) null, true);
+    return last
       .compose(
         x -> {
           if (!instances.isEmpty()) {
-            Promise<List<String>> promise = Promise.promise();
-            vertx.setTimer(updatePoll, w -> promise.complete(instances));
-            return promise.future();
+            return waitForJob(System.currentTimeMillis() + updateMaxWait).map(instances);
           }
-          return getSourceRecords(1)
+          return getSourceRecords()
             .compose(
               ok -> {
                 pollingSucceeded = true;
@@ -284,17 +588,24 @@ public class RecordImporter {
                 return Future.succeededFuture(Collections.emptyList());
               });
         }
-      ).onComplete(x -> client.close());
+      ).onComplete(x -> {
+        if (ownClient) {
+          client.close();
+        }
+      });
   }
 
   /**
    * end importing.
    *
+   * <p>For overlays, waits until source-record-manager reports the job execution as
+   * committed, failed, or until COPYCAT_UPDATE_MAX_WAIT seconds have passed.
+   *
    * @param instances known instances (empty for import, non-empty for overlay)
    * @return list updated/imported instances.
    */
   public Future<List<String>> end(List<String> instances) {
-    return end(instances, UPDATE_POLL);
+    return end(instances, UPDATE_MAX_WAIT);
   }
 
   Future<List<String>> end() {
@@ -0,0 +1,10 @@
+package org.folio.copycat;
+
+/**
+ * Search in remote target found no record.
+ */
+public class RecordNotFoundException extends RecordRetrieverException {
+  public RecordNotFoundException(String message) {
+    super(message);
+  }
+}
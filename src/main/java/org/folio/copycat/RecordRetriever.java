@@ -2,12 +2,25 @@ package org.folio.copycat;
 
 import io.vertx.core.Context;
 import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.jackson.DatabindCodec;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.folio.rest.jaxrs.model.CopyCatProfile;
-import org.folio.rest.jaxrs.model.TargetOptions;
 import org.yaz4j.Connection;
 import org.yaz4j.PrefixQuery;
 import org.yaz4j.Query;
@@ -19,13 +32,70 @@ import org.yaz4j.exception.ZoomException;
 
 public final class RecordRetriever {
   static final String MARCENCODING_PROPERTY = "marcencoding";
+  static final String CACHE_TTL_PROPERTY = "cacheTtl";
+
+  private static final Pattern USE_ATTRIBUTE_PATTERN =
+      Pattern.compile("@attr\\s+(?:\\S+\\s+)?1=(\\d+)");
+  /** MARC fields holding the identifier for a Bib-1 use attribute. */
+  private static final Map<String, List<String>> MATCH_FIELDS = Map.of(
+      "7", List.of("020a", "020z"),
+      "8", List.of("022a"),
+      "9", List.of("010a"),
+      "12", List.of("001"),
+      "1007", List.of("020a", "022a", "024a"),
+      "1211", List.of("001", "035a"));
+  private static final int BATCH_MAX_TERMS = Config.getInt("COPYCAT_BATCH_MAX_TERMS", 50);
+  private static final int BATCH_MAX_HITS = Config.getInt("COPYCAT_BATCH_MAX_HITS", 500);
+  private static final int PRESENT_CHUNK = Config.getInt("COPYCAT_PRESENT_CHUNK", 25);
+
+  private static final int CACHE_TTL = Config.getInt("COPYCAT_CACHE_TTL", 300);
+  private static final int NOT_FOUND_TTL = Config.getInt("COPYCAT_NOT_FOUND_CACHE_TTL", 30);
+  private static final int DIAGNOSTIC_TTL = Config.getInt("COPYCAT_DIAGNOSTIC_CACHE_TTL", 60);
+  static final String TIMEOUT_PROPERTY = "timeout";
+  static final String HEDGE_PROPERTY = "hedge";
+  private static final int TIMEOUT_MAX = Config.getInt("COPYCAT_TIMEOUT", 15);
+  private static final int TIMEOUT_MIN = Config.getInt("COPYCAT_TIMEOUT_MIN", 2);
+  private static final int HEDGE = Config.getInt("COPYCAT_HEDGE", 0);
+  private static final long DROPPED_SESSION_MILLIS = 1000;
 
   private static Logger log = LogManager.getLogger(RecordRetriever.class);
 
+  private static final RecordCache recordCache =
+      new RecordCache(Config.getInt("COPYCAT_CACHE_MAX_BYTES", 16 * 1024 * 1024));
+  private static final SingleFlight<JsonObject> singleFlight = new SingleFlight<>();
+  private static final NegativeCache negativeCache =
+      new NegativeCache(Config.getInt("COPYCAT_NEGATIVE_CACHE_MAX_ENTRIES", 1000));
+
+  private static final LatencyTracker latencyTracker =
+      new LatencyTracker(Config.getInt("COPYCAT_LATENCY_WINDOW", 100), 20);
+
+  private static ZoomEngine zoomEngine;
+
+  private static final CircuitBreaker circuitBreaker = new CircuitBreaker(
+      Config.getInt("COPYCAT_BREAKER_FAILURES", 5),
+      Config.getInt("COPYCAT_BREAKER_OPEN_TIME", 30) * 1000L);
+
+  private static final ConnectionPool connectionPool = new ConnectionPool(
+      Config.getInt("COPYCAT_POOL_MAX_IDLE", 4),
+      Config.getInt("COPYCAT_POOL_IDLE_TIMEOUT", 60) * 1000L,
+      Config.getInt("COPYCAT_POOL_MAX_TOTAL", 20));
+
+  private static final ResultSetCache resultSetCache = new ResultSetCache(
+      Config.getInt("COPYCAT_RESULT_SET_MAX", 100),
+      Config.getInt("COPYCAT_RESULT_SET_TTL", 300) * 1000L);
+
   private RecordRetriever() {
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Produces a result from a Z39.50 result set.
+   */
+  @FunctionalInterface
+  interface ResultSetHandler<T> {
+    T handle(ResultSet resultSet) throws ZoomException;
+  }
+
   /**
    * Construct yaz4j Query based on external identifier and query mapping.
    *
@@ -36,23 +106,327 @@ public final class RecordRetriever {
   static Query constructQuery(CopyCatProfile profile, String externalId)
       throws ZoomException {
     // assuming the externalId does not have whitespace or include {}"\\ characters
-    String pqf = profile.getExternalIdQueryMap().replace("$identifier", externalId);
-    return new PrefixQuery(pqf);
+    return new PrefixQuery(ProfilePlan.of(profile).query(externalId));
+  }
+
+  /**
+   * Construct yaz4j Query that finds any of the external identifiers.
+   *
+   * @param profile target profile
+   * @param externalIds identifiers to use within query
+   * @return Query RPN Query with query mapping applied for each identifier and OR'ed together
+   */
+  static Query constructQuery(CopyCatProfile profile, List<String> externalIds)
+      throws ZoomException {
+    return new PrefixQuery(constructPqf(profile, externalIds));
+  }
+
+  static String constructPqf(CopyCatProfile profile, List<String> externalIds) {
+    return ProfilePlan.of(profile).batchQuery(externalIds);
+  }
+
+  /**
+   * Key for target that identifies which connections may be shared.
+   *
+   * @param profile target profile
+   * @return key made up from URL, authentication and target options
+   */
+  static String targetKey(CopyCatProfile profile) {
+    return ProfilePlan.of(profile).getTargetKey();
+  }
+
+  static ConnectionPool getConnectionPool() {
+    return connectionPool;
+  }
+
+  /**
+   * Close Z39.50 connections that have been idle for too long.
+   *
+   * @return number of connections closed
+   */
+  public static int evictIdleConnections() {
+    return connectionPool.evictIdle();
+  }
+
+  static ResultSetCache getResultSetCache() {
+    return resultSetCache;
+  }
+
+  /**
+   * Close result sets of searches that have not been used for too long.
+   *
+   * @return number of result sets closed
+   */
+  public static int evictResultSets() {
+    return resultSetCache.evictExpired();
+  }
+
+  /**
+   * Get circuit breaker that guards the targets; circuits are keyed by
+   * {@link #targetUrl}.
+   *
+   * @return circuit breaker
+   */
+  public static CircuitBreaker getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  static RecordRetrieverException unavailable(String url) {
+    long seconds = (circuitBreaker.getRetryAfter(url) + 999) / 1000;
+    return new RecordRetrieverException("Server " + url
+        + " is unavailable after repeated failures. Try again in " + seconds + " seconds");
+  }
+
+  /**
+   * URL of the service that records are retrieved from; circuits are keyed by it.
+   *
+   * @param profile target profile
+   * @return SRU URL for SRU profiles; Z39.50 URL otherwise
+   */
+  public static String targetUrl(CopyCatProfile profile) {
+    return SruRetriever.isSru(profile) ? profile.getSruUrl() : profile.getUrl();
+  }
+
+  static synchronized ZoomEngine getZoomEngine() {
+    if (zoomEngine == null) {
+      zoomEngine = new ZoomEngine(Config.getInt("COPYCAT_ASYNC_MAX_CONNECTIONS", 100));
+    }
+    return zoomEngine;
+  }
+
+  static LatencyTracker getLatencyTracker() {
+    return latencyTracker;
+  }
+
+  /**
+   * Timeout for target derived from its recent response times.
+   *
+   * @param profile target profile
+   * @return timeout in seconds; null if profile gives timeout in target options
+   */
+  static String getTimeout(CopyCatProfile profile) {
+    if (ProfilePlan.of(profile).hasOption(TIMEOUT_PROPERTY)) {
+      return null;
+    }
+    return Integer.toString(latencyTracker.timeout(targetUrl(profile), TIMEOUT_MIN, TIMEOUT_MAX));
+  }
+
+  /**
+   * Record response time of target for its timeout and hedging delay.
+   *
+   * <p>Searches that failed without an answer are left out, except when they timed out:
+   * those count with the time waited, so that the timeout of a target that has become
+   * slower grows again instead of cutting off every search.
+   *
+   * @param url target URL
+   * @param elapsed milliseconds the search took
+   * @param answered whether the target answered
+   * @param timeoutSeconds timeout of the search
+   */
+  static void recordLatency(String url, long elapsed, boolean answered, int timeoutSeconds) {
+    if (answered || elapsed >= timeoutSeconds * 900L) {
+      latencyTracker.record(url, elapsed);
+    }
+  }
+
+  static int getTimeoutSeconds(CopyCatProfile profile) {
+    String timeout = getTimeout(profile);
+    return timeout != null ? Integer.parseInt(timeout)
+        : getIntOption(profile, TIMEOUT_PROPERTY, TIMEOUT_MAX);
+  }
+
+  static Connection createConnection(CopyCatProfile profile) {
+    return configure(new Connection(profile.getUrl(), 0), profile);
+  }
+
+  /**
+   * Apply timeout, record syntax, authentication and target options of profile.
+   *
+   * @param conn connection that is not yet connected
+   * @param profile target profile
+   * @return the connection
+   */
+  static <C extends Connection> C configure(C conn, CopyCatProfile profile) {
+    String timeout = getTimeout(profile);
+    if (timeout != null) {
+      conn.option(TIMEOUT_PROPERTY, timeout);
+    }
+    conn.option("preferredRecordSyntax", "usmarc");
+    try {
+      ProfilePlan.of(profile).configure(conn);
+    } catch (RecordRetrieverException e) {
+      conn.close();
+      throw e;
+    }
+    return conn;
+  }
+
+  static ConnectionPool.PooledConnection connect(CopyCatProfile profile, String key)
+      throws ZoomException {
+    connectionPool.reserve(key, getTimeoutSeconds(profile) * 1000L);
+    Connection conn = null;
+    try {
+      conn = createConnection(profile);
+      conn.connect();
+    } catch (ZoomException | RuntimeException e) {
+      if (conn != null) {
+        conn.close();
+      }
+      connectionPool.cancel(key);
+      throw e;
+    }
+    return connectionPool.wrap(key, conn);
+  }
+
+  /**
+   * Connect to target and put the connection in the pool, unless an idle connection
+   * is there already, so that the next search does not wait for connect and Init.
+   *
+   * @param profile target profile
+   * @return true if a connection was made
+   */
+  static boolean prefill(CopyCatProfile profile) throws ZoomException {
+    checkProfile(profile);
+    String key = targetKey(profile);
+    if (connectionPool.getIdleCount(key) > 0) {
+      return false;
+    }
+    connectionPool.release(connect(profile, key));
+    return true;
+  }
+
+  /**
+   * Search target, reusing an idle connection if possible.
+   *
+   * <p>If the reused connection fails at once, because the target dropped the session
+   * while it was idle, the search is retried once with a new connection; a search that
+   * times out is not retried. Searches are refused while the circuit for the target
+   * is open.
+   *
+   * @param profile target profile
+   * @param query query to search with
+   * @param handler produces result from the result set
+   * @return result of handler
+   */
+  static <T> T search(CopyCatProfile profile, Query query, ResultSetHandler<T> handler)
+      throws ZoomException {
+    return search(profile, query, handler, false);
+  }
+
+  static <T> T search(CopyCatProfile profile, Query query, ResultSetHandler<T> handler,
+      boolean fresh) throws ZoomException {
+    if (!circuitBreaker.tryAcquire(profile.getUrl())) {
+      throw unavailable(profile.getUrl());
+    }
+    boolean reachable = false;
+    try {
+      T result = searchTarget(profile, query, handler, fresh);
+      reachable = true;
+      return result;
+    } catch (Bib1Exception | InitRejectedException | RecordRetrieverException e) {
+      // target answered
+      reachable = true;
+      throw e;
+    } finally {
+      if (reachable) {
+        circuitBreaker.onSuccess(profile.getUrl());
+      } else {
+        circuitBreaker.onFailure(profile.getUrl());
+      }
+    }
+  }
+
+  private static <T> T searchTarget(CopyCatProfile profile, Query query,
+      ResultSetHandler<T> handler, boolean fresh) throws ZoomException {
+    String key = targetKey(profile);
+    ConnectionPool.PooledConnection pooled = fresh ? null : connectionPool.borrow(key);
+    if (pooled != null) {
+      String timeout = getTimeout(profile);
+      if (timeout != null) {
+        // response times may have changed since the connection was made
+        pooled.getConnection().option(TIMEOUT_PROPERTY, timeout);
+      }
+      long start = System.currentTimeMillis();
+      try {
+        return searchPooled(pooled, query, handler);
+      } catch (Bib1Exception | InitRejectedException e) {
+        throw e;
+      } catch (ZoomException e) {
+        if (!isDroppedSession(System.currentTimeMillis() - start, getTimeoutSeconds(profile))) {
+          throw e;
+        }
+        // target may have closed the session while it was idle
+        log.info("Reused connection to {} failed: {}", profile.getUrl(), e.getMessage());
+      }
+    }
+    return searchPooled(connect(profile, key), query, handler);
+  }
+
+  /**
+   * Whether a reused connection failed because the target had dropped the session,
+   * which is noticed at once, rather than because the target is slow or hung, in which
+   * case searching again would only double the wait and the load of the target.
+   *
+   * @param elapsed milliseconds until the search failed
+   * @param timeoutSeconds timeout of the search
+   * @return true if the search may be retried on a new connection
+   */
+  static boolean isDroppedSession(long elapsed, int timeoutSeconds) {
+    return elapsed < Math.min(DROPPED_SESSION_MILLIS, timeoutSeconds * 500L);
   }
 
-  static void setAuthOptions(Connection conn, String auth) {
-    if (auth != null) {
-      String[] s = auth.trim().split("\\s+");
-      conn.option("user", s[0]);
-      if (s.length == 2) {
-        conn.option("password", s[1]);
-      } else if (s.length == 3) {
-        conn.option("group", s[1]);
-        conn.option("password", s[2]);
+  private static <T> T searchPooled(ConnectionPool.PooledConnection pooled, Query query,
+      ResultSetHandler<T> handler) throws ZoomException {
+
+    boolean healthy = false;
+    try {
+      ResultSet resultSet = pooled.getConnection().search(query);
+      try {
+        T result = handler.handle(resultSet);
+        healthy = true;
+        return result;
+      } catch (RecordRetrieverException e) {
+        healthy = true;
+        throw e;
+      } finally {
+        resultSet.close();
+      }
+    } catch (Bib1Exception e) {
+      // diagnostic from target; the session is still fine
+      healthy = true;
+      throw e;
+    } finally {
+      if (healthy) {
+        connectionPool.release(pooled);
+      } else {
+        connectionPool.discard(pooled);
       }
     }
   }
 
+  static RecordRetrieverException zoomError(CopyCatProfile profile, ZoomException e) {
+    if (e instanceof InitRejectedException) {
+      return new RecordRetrieverException("Z39.50 error: server " + profile.getUrl()
+        + " rejected init."
+        + " This may be due to missing or incorrect authentication for the copycat profile", e);
+    }
+    if (e instanceof Bib1Exception) {
+      return new RecordRetrieverException("Z39.50 error: server " + profile.getUrl()
+        + " returned diagnostic: " + e.getMessage()
+        + ". Perhaps the copycat profile is incorrectly configured for this server", e);
+    }
+    return new RecordRetrieverException("Z39.50 error: " + e.getMessage(), e);
+  }
+
+  static void checkProfile(CopyCatProfile profile) {
+    if (profile.getUrl() == null) {
+      throw new RecordRetrieverException("url missing in target profile");
+    }
+    if (profile.getExternalIdQueryMap() == null) {
+      throw new RecordRetrieverException("externalIdQueryMap missing in target profile");
+    }
+  }
+
   /**
    * Search and retrieve record.
    *
@@ -63,78 +437,291 @@ public final class RecordRetriever {
    * @return record content
    */
   static byte[] getRecordAsBytes(CopyCatProfile profile, String externalId, String type) {
-    if (profile.getUrl() == null) {
-      throw new RecordRetrieverException("url missing in target profile");
+    return getRecordAsBytes(profile, externalId, type, false);
+  }
+
+  static byte[] getRecordAsBytes(CopyCatProfile profile, String externalId, String type,
+      boolean fresh) {
+    checkProfile(profile);
+    int timeout = getTimeoutSeconds(profile);
+    long start = System.currentTimeMillis();
+    boolean answered = false;
+    try {
+      Query query = constructQuery(profile, externalId);
+      log.info("Search {} {}", profile.getUrl(), externalId);
+      byte[] result = search(profile, query, resultSet -> {
+        Record record = resultSet.getRecord(0);
+        if (record == null) {
+          throw new RecordNotFoundException("No record found when searching "
+            + profile.getUrl() + " for identifier " + externalId);
+        }
+        return record.get(type);
+      }, fresh);
+      answered = true;
+      return result;
+    } catch (RecordNotFoundException e) {
+      answered = true;
+      throw e;
+    } catch (ZoomException e) {
+      answered = e instanceof Bib1Exception;
+      throw zoomError(profile, e);
+    } finally {
+      long elapsed = System.currentTimeMillis() - start;
+      recordLatency(profile.getUrl(), elapsed, answered, timeout);
+      log.info("Z39.50 retrieval completed in {} milliseconds", elapsed);
     }
-    if (profile.getExternalIdQueryMap() == null) {
-      throw new RecordRetrieverException("externalIdQueryMap missing in target profile");
+  }
+
+  /**
+   * Normalize identifier for comparing it with values of MARC fields.
+   *
+   * <p>Only the first word is considered; case, punctuation, OCLC prefixes and
+   * leading zeros are ignored, so that "(OCoLC)ocm01234567", "1234567" and
+   * "1234567 (pbk.)" are all the same.
+   *
+   * @param identifier identifier or MARC field value
+   * @return normalized identifier
+   */
+  static String normalizeForMatch(String identifier) {
+    String s = identifier.trim().toLowerCase(Locale.ROOT);
+    int sp = 0;
+    while (sp < s.length() && !Character.isWhitespace(s.charAt(sp))) {
+      sp++;
     }
-    Connection conn = new Connection(profile.getUrl(), 0);
-    conn.option("timeout", "15");
-    conn.option("preferredRecordSyntax", "usmarc");
-    setAuthOptions(conn, profile.getAuthentication());
-
-    TargetOptions targetOptions = profile.getTargetOptions();
-    if (targetOptions != null) {
-      for (Map.Entry<String, Object> entry : targetOptions.getAdditionalProperties().entrySet()) {
-        if (entry.getValue() instanceof String) {
-          conn.option(entry.getKey(), (String) entry.getValue());
-        } else if (entry.getValue() instanceof Integer) {
-          conn.option(entry.getKey(), Integer.toString((Integer) entry.getValue()));
-        } else {
-          throw new RecordRetrieverException("Illegal options type for key " + entry.getKey()
-            + ": " + entry.getValue().getClass());
-        }
-      }
+    s = s.substring(0, sp);
+    if (s.startsWith("(ocolc)")) {
+      s = s.substring(7);
+    }
+    s = s.replaceAll("[^a-z0-9]", "");
+    s = s.replaceFirst("^(ocm|ocn|on)(?=[0-9])", "");
+    return s.replaceFirst("^0+(?=.)", "");
+  }
+
+  /**
+   * MARC fields that may hold identifier for the Bib-1 use attribute of profile.
+   *
+   * @param profile target profile
+   * @return field specifications for {@link JsonMarc#getValues}; empty if not known, in
+   *     which case records cannot be matched to identifiers
+   */
+  static List<String> matchFields(CopyCatProfile profile) {
+    Matcher matcher = USE_ATTRIBUTE_PATTERN.matcher(profile.getExternalIdQueryMap());
+    if (!matcher.find()) {
+      return Collections.emptyList();
     }
+    return MATCH_FIELDS.getOrDefault(matcher.group(1), Collections.emptyList());
+  }
+
+  /**
+   * Search and retrieve records for many identifiers with one search per batch of identifiers.
+   *
+   * <p>Each retrieved record is mapped back to the identifier it matches by looking at
+   * the MARC fields that correspond to the use attribute of the query mapping. If there
+   * are no such fields, nothing is searched, as any field could then bind a record to an
+   * identifier, such as 260$c "2001." to identifier 2001.
+   *
+   * @param profile target profile
+   * @param externalIds identifiers such as ISBN numbers, OCLC numbers
+   * @return records by identifier; identifiers with no matching record are absent, which
+   *     is all of them if records cannot be matched for the query mapping
+   */
+  static Map<String, JsonObject> getRecordsAsJsonObjects(CopyCatProfile profile,
+      List<String> externalIds) {
+
+    checkProfile(profile);
+    final List<String> fields = matchFields(profile);
+    if (fields.isEmpty()) {
+      log.info("No fields to match for {}; not searching in batches", profile.getUrl());
+      return Collections.emptyMap();
+    }
+    final String type = jsonType(profile);
+    Map<String, List<String>> wanted = new HashMap<>();
+    List<String> distinct = new ArrayList<>(new LinkedHashSet<>(externalIds));
+    for (String externalId : distinct) {
+      wanted.computeIfAbsent(normalizeForMatch(externalId), k -> new ArrayList<>())
+          .add(externalId);
+    }
+    Map<String, JsonObject> result = new LinkedHashMap<>();
     long start = System.currentTimeMillis();
     try {
-      Query query = constructQuery(profile, externalId);
-      conn.connect();
-      log.info("Search {} {}", profile.getUrl(), externalId);
-      ResultSet search = conn.search(query);
-      Record record = search.getRecord(0);
-      if (record == null) {
-        throw new RecordRetrieverException("No record found when searching "
-          + profile.getUrl() + " for identifier " + externalId);
-      }
-      return record.get(type);
-    } catch (InitRejectedException e) {
-      throw new RecordRetrieverException("Z39.50 error: server " + profile.getUrl() + " rejected init."
-        + " This may be due to missing or incorrect authentication for the copycat profile", e);
-    } catch (Bib1Exception e) {
-      throw new RecordRetrieverException("Z39.50 error: server " + profile.getUrl()
-        + " returned diagnostic: " + e.getMessage()
-        + ". Perhaps the copycat profile is incorrectly configured for this server", e);
+      for (int i = 0; i < distinct.size(); i += BATCH_MAX_TERMS) {
+        List<String> batch = distinct.subList(i, Math.min(distinct.size(), i + BATCH_MAX_TERMS));
+        Query query = constructQuery(profile, batch);
+        log.info("Search {} for {} identifiers", profile.getUrl(), batch.size());
+        search(profile, query, resultSet -> {
+          long hits = Math.min(resultSet.getHitCount(), BATCH_MAX_HITS);
+          for (long pos = 0; pos < hits && result.size() < distinct.size();
+              pos += PRESENT_CHUNK) {
+            int count = (int) Math.min(PRESENT_CHUNK, hits - pos);
+            for (Record record : resultSet.getRecords(pos, count)) {
+              if (record != null) {
+                matchRecord(decodeJson(record.get(type)), fields, wanted, result);
+              }
+            }
+          }
+          return null;
+        });
+      }
     } catch (ZoomException e) {
-      throw new RecordRetrieverException("Z39.50 error: " + e.getMessage(), e);
+      throw zoomError(profile, e);
     } finally {
-      log.info("Z39.50 retrieval completed in {} milliseconds", System.currentTimeMillis() - start);
-      conn.close();
+      log.info("Z39.50 retrieval of {} identifiers completed in {} milliseconds",
+          distinct.size(), System.currentTimeMillis() - start);
     }
+    return result;
   }
 
-  static JsonObject getRecordAsJsonObject(CopyCatProfile profile, String externalId) {
-    // for YAZ, specifying marc8 here really means that it will use either UTF-8 or MARC-8
-    // depending on the leader of the MARC record.
+  private static void matchRecord(JsonObject marc, List<String> fields,
+      Map<String, List<String>> wanted, Map<String, JsonObject> result) {
 
-    String encoding = "marc-8";
-    TargetOptions targetOptions = profile.getTargetOptions();
-    if (targetOptions != null) {
-      Object marcencoding = targetOptions.getAdditionalProperties().get(MARCENCODING_PROPERTY);
-      if (marcencoding instanceof String) {
-        encoding = (String) marcencoding;
-      } else if (marcencoding != null) {
-        encoding = Integer.toString((Integer) marcencoding);
+    List<String> values = new ArrayList<>();
+    fields.forEach(field -> values.addAll(JsonMarc.getValues(marc, field)));
+    boolean used = false;
+    for (String value : values) {
+      List<String> externalIds = wanted.get(normalizeForMatch(value));
+      if (externalIds == null) {
+        continue;
+      }
+      for (String externalId : externalIds) {
+        if (!result.containsKey(externalId)) {
+          // same record may match several identifiers
+          result.put(externalId, used ? marc.copy() : marc);
+          used = true;
+        }
       }
     }
-    var buf = getRecordAsBytes(profile, externalId, "json;charset=" + encoding);
-    return new JsonObject(new String(buf));
+  }
+
+  static String getMarcEncoding(CopyCatProfile profile) {
+    return ProfilePlan.of(profile).getMarcEncoding();
+  }
+
+  /**
+   * YAZ render type for JSON MARC; YAZ converts from the MARC encoding of the
+   * profile to UTF-8.
+   *
+   * @param profile target profile
+   * @return render type for {@link Record#get(String)}
+   */
+  static String jsonType(CopyCatProfile profile) {
+    return "json;charset=" + getMarcEncoding(profile) + ",utf-8";
+  }
+
+  /**
+   * Parse JSON record as returned by YAZ.
+   *
+   * <p>The bytes are parsed as UTF-8 directly, without first decoding them to a
+   * String with the platform charset or copying them to a Buffer.
+   *
+   * @param buf UTF-8 encoded JSON object
+   * @return JSON object
+   * @throws DecodeException if buf is not a JSON object
+   */
+  @SuppressWarnings("unchecked")
+  static JsonObject decodeJson(byte[] buf) {
+    try {
+      return new JsonObject(DatabindCodec.mapper().readValue(buf, Map.class));
+    } catch (IOException e) {
+      throw new DecodeException("Failed to decode: " + e.getMessage(), e);
+    }
+  }
+
+  static RecordCache getRecordCache() {
+    return recordCache;
+  }
+
+  static NegativeCache getNegativeCache() {
+    return negativeCache;
+  }
+
+  static SingleFlight<JsonObject> getSingleFlight() {
+    return singleFlight;
+  }
+
+  /**
+   * Forget cached records and failures for profile; to be called when a profile is
+   * modified or removed.
+   *
+   * @param profileId profile identifier
+   */
+  public static void invalidate(String profileId) {
+    recordCache.invalidate(profileId);
+    negativeCache.invalidate(profileId);
+    resultSetCache.remove(profileId);
+    ProfilePlan.remove(profileId);
+  }
+
+  /**
+   * How long a failure should be remembered.
+   *
+   * @param cause failure of retrieval
+   * @return milliseconds; 0 if failure should not be remembered
+   */
+  static long negativeTtl(Throwable cause) {
+    if (cause instanceof RecordNotFoundException) {
+      return NOT_FOUND_TTL * 1000L;
+    }
+    if (cause instanceof RecordRetrieverException && cause.getCause() instanceof Bib1Exception) {
+      // diagnostics are typically caused by a misconfigured profile
+      return DIAGNOSTIC_TTL * 1000L;
+    }
+    return 0;
+  }
+
+  /**
+   * Normalize identifier for cache lookup: case, whitespace and hyphens are ignored.
+   *
+   * @param identifier external identifier
+   * @return normalized identifier
+   */
+  static String normalizeIdentifier(String identifier) {
+    return identifier.replaceAll("[\\s-]", "").toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Cache key for record.
+   *
+   * @param profile target profile
+   * @param externalId external identifier
+   * @return key; null if profile has no identifier
+   */
+  static String cacheKey(CopyCatProfile profile, String externalId) {
+    if (profile.getId() == null || externalId == null) {
+      return null;
+    }
+    // target and query mapping are part of key, so that a modified profile does not hit
+    return profile.getId() + '\u0001' + targetKey(profile) + '\u0001' + profile.getProtocol()
+        + '\u0001' + profile.getSruUrl() + '\u0001' + profile.getExternalIdQueryMap()
+        + '\u0001' + normalizeIdentifier(externalId);
+  }
+
+  /**
+   * Get integer setting from target options of profile.
+   *
+   * @param profile target profile
+   * @param name name of option
+   * @param defaultValue value if option is not given or is invalid
+   * @return value of option
+   */
+  static int getIntOption(CopyCatProfile profile, String name, int defaultValue) {
+    return ProfilePlan.of(profile).getIntOption(name, defaultValue);
+  }
+
+
+  static JsonObject getRecordAsJsonObject(CopyCatProfile profile, String externalId) {
+    return decodeJson(getRecordAsBytes(profile, externalId, jsonType(profile)));
   }
 
   /**
    * Retrieve record as JSON from target.
    *
+   * <p>Records are cached for the number of seconds given by target option
+   * {@value #CACHE_TTL_PROPERTY} (0 disables caching for the profile).
+   *
+   * <p>If target option {@value #HEDGE_PROPERTY} is 1, a second search on a new
+   * connection is started when the target has not answered within its 95th
+   * percentile response time, and whichever answers first is used.
+   *
    * @param profile target profile
    * @param externalId external identifier (such as ISBN, OCLC number)
    * @param vertxContext Vert.x context
@@ -142,7 +729,434 @@ public final class RecordRetriever {
    */
   public static Future<JsonObject> getRecordAsJsonObject(CopyCatProfile profile,
     String externalId, Context vertxContext) {
-    // execute in separate thread, because getRecordAsJsonObject is a blocking function.
-    return vertxContext.owner().executeBlocking(() -> getRecordAsJsonObject(profile, externalId));
+    return getRecordAsJsonObject(profile, externalId, null, vertxContext);
+  }
+
+  /**
+   * Retrieve record as JSON from target, looking in the shared cache of the tenant
+   * before searching the target.
+   *
+   * @param profile target profile
+   * @param externalId external identifier (such as ISBN, OCLC number)
+   * @param sharedCache shared cache of tenant; null for none
+   * @param vertxContext Vert.x context
+   * @return async result with record (failure if no record is found)
+   */
+  public static Future<JsonObject> getRecordAsJsonObject(CopyCatProfile profile,
+      String externalId, SharedRecordCache sharedCache, Context vertxContext) {
+
+    final String key = cacheKey(profile, externalId);
+    final long ttl = getIntOption(profile, CACHE_TTL_PROPERTY, CACHE_TTL) * 1000L;
+    if (key != null && ttl > 0) {
+      JsonObject cached = recordCache.get(key);
+      if (cached != null) {
+        log.info("Found {} for {} in cache", externalId, profile.getUrl());
+        return Future.succeededFuture(cached);
+      }
+    }
+    if (key != null) {
+      RecordRetrieverException failure = negativeCache.get(key);
+      if (failure != null) {
+        log.info("Found failure for {} for {} in cache", externalId, profile.getUrl());
+        return Future.failedFuture(failure);
+      }
+    }
+    String url = targetUrl(profile);
+    if (circuitBreaker.isOpen(url)) {
+      return Future.failedFuture(unavailable(url));
+    }
+    if (key == null) {
+      return retrieve(profile, externalId, vertxContext, null, ttl);
+    }
+    // concurrent requests for same record share one search; each gets its own copy
+    return singleFlight.execute(vertxContext, key,
+            () -> retrieveShared(profile, externalId, sharedCache, vertxContext, key, ttl))
+        .map(JsonObject::copy);
+  }
+
+  /**
+   * Retrieve record as JSON from the first of several targets that has it.
+   *
+   * <p>All targets are searched at the same time. The record of the first profile in
+   * the list that finds one is used, so a slow target is only waited for if all
+   * profiles before it failed to deliver a record.
+   *
+   * @param profiles target profiles in order of priority
+   * @param externalId external identifier (such as ISBN, OCLC number)
+   * @param vertxContext Vert.x context
+   * @return async result with record; failure if no target delivers a record
+   */
+  public static Future<JsonObject> getRecordAsJsonObject(List<CopyCatProfile> profiles,
+      String externalId, Context vertxContext) {
+    return getRecordAsJsonObject(profiles, externalId, null, vertxContext);
+  }
+
+  /**
+   * Retrieve record as JSON from the first of several targets that has it, looking in
+   * the shared cache of the tenant before searching.
+   *
+   * @param profiles target profiles in order of priority
+   * @param externalId external identifier (such as ISBN, OCLC number)
+   * @param sharedCache shared cache of tenant; null for none
+   * @param vertxContext Vert.x context
+   * @return async result with record; failure if no target delivers a record
+   */
+  public static Future<JsonObject> getRecordAsJsonObject(List<CopyCatProfile> profiles,
+      String externalId, SharedRecordCache sharedCache, Context vertxContext) {
+
+    if (profiles.size() == 1) {
+      return getRecordAsJsonObject(profiles.get(0), externalId, sharedCache, vertxContext);
+    }
+    List<Future<JsonObject>> futures = new ArrayList<>();
+    for (CopyCatProfile profile : profiles) {
+      futures.add(getRecordAsJsonObject(profile, externalId, sharedCache, vertxContext));
+    }
+    return firstInOrder(futures);
+  }
+
+  /**
+   * Whether retrieving a record is known to fail without searching: for every profile,
+   * the record is not cached and either its failure is, or the circuit of the target
+   * is open.
+   *
+   * @param profiles target profiles
+   * @param externalId external identifier (such as ISBN, OCLC number)
+   * @return true if {@link #getRecordAsJsonObject(List, String, Context)} would fail
+   *     right away
+   */
+  public static boolean isKnownFailure(List<CopyCatProfile> profiles, String externalId) {
+    for (CopyCatProfile profile : profiles) {
+      String key = cacheKey(profile, externalId);
+      if (key != null && recordCache.get(key) != null) {
+        return false;
+      }
+      if ((key == null || negativeCache.get(key) == null)
+          && !circuitBreaker.isOpen(targetUrl(profile))) {
+        return false;
+      }
+    }
+    return !profiles.isEmpty();
+  }
+
+  private static Future<JsonObject> retrieveShared(CopyCatProfile profile, String externalId,
+      SharedRecordCache sharedCache, Context vertxContext, String key, long ttl) {
+
+    if (sharedCache == null || ttl <= 0) {
+      return retrieve(profile, externalId, vertxContext, key, ttl);
+    }
+    return sharedCache.get(key).compose(shared -> {
+      if (shared != null) {
+        log.info("Found {} for {} in shared cache", externalId, profile.getUrl());
+        recordCache.put(key, profile.getId(), shared, shared.toBuffer().length(), ttl);
+        return Future.succeededFuture(shared);
+      }
+      return retrieve(profile, externalId, vertxContext, key, ttl)
+          .onSuccess(record -> sharedCache.put(key, profile.getId(), record, ttl));
+    });
+  }
+
+  /**
+   * Result of first future in list that succeeds, not waiting for later futures.
+   *
+   * @param futures futures in order of priority
+   * @return first successful result; failure with all messages if all fail
+   */
+  static <T> Future<T> firstInOrder(List<Future<T>> futures) {
+    Promise<T> promise = Promise.promise();
+    Runnable check = () -> {
+      List<String> messages = new ArrayList<>();
+      for (Future<T> future : futures) {
+        if (!future.isComplete()) {
+          return;
+        }
+        if (future.succeeded()) {
+          promise.tryComplete(future.result());
+          return;
+        }
+        messages.add(future.cause().getMessage());
+      }
+      promise.tryFail(new RecordRetrieverException(String.join("; ", messages)));
+    };
+    futures.forEach(future -> future.onComplete(x -> check.run()));
+    return promise.future();
+  }
+
+  private static Future<JsonObject> retrieve(CopyCatProfile profile, String externalId,
+      Context vertxContext, String key, long ttl) {
+
+    Future<JsonObject> future;
+    if (SruRetriever.isSru(profile)) {
+      // non-blocking, so it stays on the event loop
+      future = SruRetriever.search(profile, externalId, vertxContext).map(body -> {
+        JsonObject record = SruRetriever.parseResponse(profile, externalId, body);
+        if (key != null) {
+          recordCache.put(key, profile.getId(), record, body.length(), ttl);
+        }
+        return record;
+      });
+    } else if (RetrievalExecutor.getMode() == RetrievalExecutor.Mode.ASYNC) {
+      future = RetrievalExecutor.getBulkhead().submit(profile.getUrl(), () ->
+          getZoomEngine().search(profile, externalId, jsonType(profile), vertxContext)
+      ).map(buf -> {
+        JsonObject record = decodeJson(buf);
+        if (key != null) {
+          recordCache.put(key, profile.getId(), record, buf.length, ttl);
+        }
+        return record;
+      });
+    } else {
+      long hedgeDelay = getIntOption(profile, HEDGE_PROPERTY, HEDGE) > 0
+          ? latencyTracker.percentile(profile.getUrl(), 95) : -1;
+      // execute in separate thread, because getRecordAsBytes is a blocking function.
+      future = RetrievalExecutor.executeHedged(vertxContext, profile.getUrl(), hedgeDelay,
+          () -> retrieve(profile, externalId, key, ttl, false),
+          () -> retrieve(profile, externalId, key, ttl, true));
+    }
+    return future.onFailure(cause -> {
+      if (key != null && negativeTtl(cause) > 0) {
+        negativeCache.put(key, profile.getId(), (RecordRetrieverException) cause,
+            negativeTtl(cause));
+      }
+    });
+  }
+
+  private static JsonObject retrieve(CopyCatProfile profile, String externalId, String key,
+      long ttl, boolean fresh) {
+    var buf = getRecordAsBytes(profile, externalId, jsonType(profile), fresh);
+    JsonObject record = decodeJson(buf);
+    if (key != null) {
+      recordCache.put(key, profile.getId(), record, buf.length, ttl);
+    }
+    return record;
+  }
+
+  /**
+   * Retrieve records as JSON from target for many identifiers.
+   *
+   * @param profile target profile
+   * @param externalIds external identifiers (such as ISBN, OCLC number)
+   * @param vertxContext Vert.x context
+   * @return async result with records by identifier; identifiers not found are absent
+   */
+  public static Future<Map<String, JsonObject>> getRecordsAsJsonObjects(CopyCatProfile profile,
+      List<String> externalIds, Context vertxContext) {
+    if (SruRetriever.isSru(profile)) {
+      return getRecordsSeparately(profile, externalIds, vertxContext);
+    }
+    if (circuitBreaker.isOpen(profile.getUrl())) {
+      return Future.failedFuture(unavailable(profile.getUrl()));
+    }
+    return RetrievalExecutor.execute(vertxContext, profile.getUrl(),
+        () -> getRecordsAsJsonObjects(profile, externalIds));
+  }
+
+  private static Future<Map<String, JsonObject>> getRecordsSeparately(CopyCatProfile profile,
+      List<String> externalIds, Context vertxContext) {
+
+    Map<String, JsonObject> result = new LinkedHashMap<>();
+    List<Future<Void>> futures = new ArrayList<>();
+    for (String externalId : new LinkedHashSet<>(externalIds)) {
+      futures.add(getRecordAsJsonObject(profile, externalId, vertxContext)
+          .map(record -> {
+            result.put(externalId, record);
+            return (Void) null;
+          })
+          .recover(cause -> cause instanceof RecordNotFoundException
+              ? Future.succeededFuture() : Future.failedFuture(cause)));
+    }
+    return Future.all(futures).map(x -> result);
+  }
+
+  private static ResultSet searchOpen(ConnectionPool.PooledConnection pooled, Query query)
+      throws ZoomException {
+    try {
+      return pooled.getConnection().search(query);
+    } catch (Bib1Exception e) {
+      connectionPool.release(pooled);
+      throw e;
+    } catch (ZoomException e) {
+      connectionPool.discard(pooled);
+      throw e;
+    }
+  }
+
+  static ResultSetCache.Cursor createResultSet(CopyCatProfile profile, String externalId,
+      String tenant, String id) {
+
+    checkProfile(profile);
+    String url = profile.getUrl();
+    if (!circuitBreaker.tryAcquire(url)) {
+      throw unavailable(url);
+    }
+    Query query = constructQuery(profile, externalId);
+    String key = targetKey(profile);
+    log.info("Search {} {} keeping result set", url, externalId);
+    int timeout = getTimeoutSeconds(profile);
+    long start = System.currentTimeMillis();
+    boolean reachable = false;
+    try {
+      ConnectionPool.PooledConnection pooled = connectionPool.borrow(key);
+      if (pooled != null) {
+        try {
+          ResultSet resultSet = searchOpen(pooled, query);
+          reachable = true;
+          return new ResultSetCache.Cursor(id, tenant, profile, pooled, resultSet);
+        } catch (Bib1Exception e) {
+          throw e;
+        } catch (ZoomException e) {
+          if (!isDroppedSession(System.currentTimeMillis() - start, timeout)) {
+            throw e;
+          }
+          // target may have closed the session while it was idle
+          log.info("Reused connection to {} failed: {}", url, e.getMessage());
+        }
+      }
+      pooled = connect(profile, key);
+      ResultSet resultSet = searchOpen(pooled, query);
+      reachable = true;
+      return new ResultSetCache.Cursor(id, tenant, profile, pooled, resultSet);
+    } catch (Bib1Exception | InitRejectedException e) {
+      reachable = true;
+      throw zoomError(profile, e);
+    } catch (ZoomException e) {
+      throw zoomError(profile, e);
+    } finally {
+      long elapsed = System.currentTimeMillis() - start;
+      if (reachable) {
+        circuitBreaker.onSuccess(url);
+      } else {
+        circuitBreaker.onFailure(url);
+      }
+      recordLatency(url, elapsed, reachable, timeout);
+      log.info("Z39.50 search completed in {} milliseconds", elapsed);
+    }
+  }
+
+  /**
+   * Search target and keep the result set open for {@link #getResultSetRecords}.
+   *
+   * @param profile target profile; must use Z39.50
+   * @param externalId identifier such as ISBN number, OCLC number
+   * @param tenant tenant that may use the result set
+   * @param vertxContext Vert.x context
+   * @return async result with result set
+   */
+  public static Future<ResultSetCache.Cursor> openResultSet(CopyCatProfile profile,
+      String externalId, String tenant, Context vertxContext) {
+    return openResultSet(profile, externalId, tenant, ResultSetCache.newId(externalId),
+        vertxContext);
+  }
+
+  static Future<ResultSetCache.Cursor> openResultSet(CopyCatProfile profile,
+      String externalId, String tenant, String id, Context vertxContext) {
+
+    if (SruRetriever.isSru(profile)) {
+      return Future.failedFuture(
+          new RecordRetrieverException("Search is not supported for SRU profiles"));
+    }
+    return RetrievalExecutor.execute(vertxContext, profile.getUrl(), () -> {
+      ResultSetCache.Cursor cursor = createResultSet(profile, externalId, tenant, id);
+      resultSetCache.put(cursor);
+      return cursor;
+    });
+  }
+
+  /**
+   * Get result set of earlier search.
+   *
+   * <p>If the result set is not open in this instance of the module, because another
+   * instance made it or because it expired, the search is made again and the result
+   * set is kept under the same identifier.
+   *
+   * @param profile profile that the result set must be of
+   * @param resultSetId identifier of result set
+   * @param tenant tenant of request
+   * @param vertxContext Vert.x context
+   * @return async result with result set; RecordNotFoundException failure if the
+   *     identifier is not one of a result set or the result set is of another profile
+   */
+  public static Future<ResultSetCache.Cursor> getResultSet(CopyCatProfile profile,
+      String resultSetId, String tenant, Context vertxContext) {
+    return getResultSet(profile, resultSetId, tenant, true, vertxContext);
+  }
+
+  /**
+   * Get result set of earlier search, searching again only if allowed.
+   *
+   * <p>Hits of a new search may be in another order, so a position in the result set
+   * may then be of another record.
+   *
+   * @param profile profile that the result set must be of
+   * @param resultSetId identifier of result set
+   * @param tenant tenant of request
+   * @param searchAgain whether to search again if the result set is not open
+   * @param vertxContext Vert.x context
+   * @return async result with result set; RecordNotFoundException failure if the
+   *     result set is not open and not to be searched again, if the identifier is not
+   *     one of a result set or if the result set is of another profile
+   */
+  public static Future<ResultSetCache.Cursor> getResultSet(CopyCatProfile profile,
+      String resultSetId, String tenant, boolean searchAgain, Context vertxContext) {
+
+    ResultSetCache.Cursor cursor = resultSetCache.get(resultSetId, tenant);
+    if (cursor != null && Objects.equals(cursor.getProfile().getId(), profile.getId())) {
+      return Future.succeededFuture(cursor);
+    }
+    String externalId = ResultSetCache.getExternalId(resultSetId);
+    if (cursor != null || externalId == null) {
+      return Future.failedFuture(new RecordNotFoundException("No result set " + resultSetId
+          + " for profile " + profile.getId()));
+    }
+    if (!searchAgain) {
+      return Future.failedFuture(new RecordNotFoundException("Result set " + resultSetId
+          + " is no longer open"));
+    }
+    log.info("Result set {} is not open; searching {} again", resultSetId, externalId);
+    return openResultSet(profile, externalId, tenant, resultSetId, vertxContext);
+  }
+
+  /**
+   * Get records of result set as JSON; only records not fetched before are fetched.
+   *
+   * @param cursor result set
+   * @param offset position of first record, starting with 0
+   * @param limit maximum number of records
+   * @param vertxContext Vert.x context
+   * @return async result with records; null for positions without a record
+   */
+  public static Future<List<JsonObject>> getResultSetRecords(ResultSetCache.Cursor cursor,
+      long offset, int limit, Context vertxContext) {
+
+    CopyCatProfile profile = cursor.getProfile();
+    String type = jsonType(profile);
+    return RetrievalExecutor.execute(vertxContext, profile.getUrl(), () -> {
+      try {
+        return cursor.getRecords(offset, limit, type);
+      } catch (ZoomException e) {
+        throw zoomError(profile, e);
+      }
+    }).map(records -> records.stream().map(buf -> buf == null ? null : decodeJson(buf)).toList());
+  }
+
+  /**
+   * Get record of result set as JSON.
+   *
+   * @param profile profile that the result set must be of
+   * @param resultSetId identifier of result set
+   * @param tenant tenant of request
+   * @param position position of record, starting with 0
+   * @param searchAgain whether to search again if the result set is not open
+   * @param vertxContext Vert.x context
+   * @return async result with record; failure if result set or record is not found
+   */
+  public static Future<JsonObject> getResultSetRecord(CopyCatProfile profile, String resultSetId,
+      String tenant, long position, boolean searchAgain, Context vertxContext) {
+
+    return getResultSet(profile, resultSetId, tenant, searchAgain, vertxContext)
+        .compose(cursor -> getResultSetRecords(cursor, position, 1, vertxContext))
+        .compose(records -> records.isEmpty() || records.get(0) == null
+            ? Future.failedFuture(new RecordNotFoundException("No record at position "
+                + position + " in result set " + resultSetId))
+            : Future.succeededFuture(records.get(0)));
   }
 }
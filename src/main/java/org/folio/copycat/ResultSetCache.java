@@ -0,0 +1,283 @@
+package org.folio.copycat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.rest.jaxrs.model.CopyCatProfile;
+import org.yaz4j.Record;
+import org.yaz4j.ResultSet;
+import org.yaz4j.exception.ZoomException;
+
+/**
+ * Open Z39.50 result sets of searches, so that the hits can be fetched page by page
+ * and one of them imported without searching again.
+ *
+ * <p>Each result set keeps its connection until it is closed. A result set is closed
+ * when it has not been used for the time to live or when the least recently used
+ * one must go to make room for a new one. Records are fetched from the target only
+ * once per result set.
+ *
+ * <p>Result sets are kept by the module instance that searched. Their identifiers
+ * carry the identifier searched for, see {@link #newId}, so that another instance, or
+ * the same one after the result set expired, can search again.
+ */
+public class ResultSetCache {
+  private static final Logger log = LogManager.getLogger(ResultSetCache.class);
+
+  private final int maxEntries;
+  private final long ttl;
+  private final LinkedHashMap<String, Cursor> cursors = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Open result set with the connection it belongs to.
+   */
+  public static final class Cursor {
+    private final String id;
+    private final String tenant;
+    private final CopyCatProfile profile;
+    private final ConnectionPool.PooledConnection connection;
+    private final ResultSet resultSet;
+    private final Map<Long, byte[]> records = new HashMap<>();
+    private long expires;
+    private boolean closed;
+
+    Cursor(String id, String tenant, CopyCatProfile profile,
+        ConnectionPool.PooledConnection connection, ResultSet resultSet) {
+      this.id = id;
+      this.tenant = tenant;
+      this.profile = profile;
+      this.connection = connection;
+      this.resultSet = resultSet;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public CopyCatProfile getProfile() {
+      return profile;
+    }
+
+    public long getHitCount() {
+      return resultSet.getHitCount();
+    }
+
+    /**
+     * Get records of result set, fetching those not fetched before in one present.
+     *
+     * @param offset position of first record, starting with 0
+     * @param limit maximum number of records
+     * @param type render type, see {@link RecordRetriever#getRecordAsBytes}
+     * @return records; null for positions that the target returned no record for
+     * @throws ZoomException if the present fails
+     * @throws RecordRetrieverException if the result set has been closed
+     */
+    public synchronized List<byte[]> getRecords(long offset, int limit, String type)
+        throws ZoomException {
+
+      if (closed) {
+        throw new RecordRetrieverException("Result set " + id + " has expired");
+      }
+      long end = Math.min(getHitCount(), offset + limit);
+      long first = offset;
+      while (first < end && records.containsKey(first)) {
+        first++;
+      }
+      long last = end;
+      while (last > first && records.containsKey(last - 1)) {
+        last--;
+      }
+      if (first < last) {
+        List<Record> fetched = resultSet.getRecords(first, (int) (last - first));
+        for (int i = 0; i < fetched.size(); i++) {
+          Record record = fetched.get(i);
+          records.put(first + i, record == null ? null : record.get(type));
+        }
+      }
+      List<byte[]> result = new ArrayList<>();
+      for (long pos = offset; pos < end; pos++) {
+        result.add(records.get(pos));
+      }
+      return result;
+    }
+
+    synchronized void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      records.clear();
+      try {
+        if (resultSet != null) {
+          resultSet.close();
+        }
+      } catch (Exception e) {
+        log.warn("Closing result set failed: {}", e.getMessage(), e);
+      }
+      if (connection != null) {
+        // idle time of the connection is unknown, so do not return it to the pool
+        RecordRetriever.getConnectionPool().discard(connection);
+      }
+    }
+  }
+
+  /**
+   * Create cache.
+   *
+   * @param maxEntries maximum number of open result sets
+   * @param ttl milliseconds an unused result set is kept
+   */
+  public ResultSetCache(int maxEntries, long ttl) {
+    this.maxEntries = maxEntries;
+    this.ttl = ttl;
+  }
+
+  /**
+   * Make identifier for result set of a search.
+   *
+   * @param externalId identifier searched for
+   * @return random identifier followed by externalId in URL-safe Base64
+   */
+  public static String newId(String externalId) {
+    return UUID.randomUUID() + "." + Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(externalId.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Get identifier searched for from result set identifier.
+   *
+   * @param id result set identifier made by {@link #newId}
+   * @return identifier searched for; null if id does not carry one
+   */
+  public static String getExternalId(String id) {
+    int dot = id.indexOf('.');
+    if (dot < 0) {
+      return null;
+    }
+    try {
+      return new String(Base64.getUrlDecoder().decode(id.substring(dot + 1)),
+          StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static String key(String id, String tenant) {
+    return tenant + '\u0001' + id;
+  }
+
+  /**
+   * Add result set; the least recently used one is closed if the cache is full, and
+   * a result set of the same tenant with the same identifier is replaced and closed.
+   *
+   * @param cursor result set
+   */
+  public void put(Cursor cursor) {
+    List<Cursor> evicted = new ArrayList<>();
+    synchronized (this) {
+      cursor.expires = System.currentTimeMillis() + ttl;
+      Cursor previous = cursors.put(key(cursor.id, cursor.tenant), cursor);
+      if (previous != null && previous != cursor) {
+        evicted.add(previous);
+      }
+      Iterator<Cursor> it = cursors.values().iterator();
+      while (cursors.size() > maxEntries && it.hasNext()) {
+        evicted.add(it.next());
+        it.remove();
+      }
+    }
+    evicted.forEach(Cursor::close);
+  }
+
+  /**
+   * Get result set and extend its time to live.
+   *
+   * @param id result set identifier
+   * @param tenant tenant that the result set must belong to
+   * @return result set; null if unknown, expired or of another tenant
+   */
+  public Cursor get(String id, String tenant) {
+    Cursor cursor;
+    synchronized (this) {
+      cursor = cursors.get(key(id, tenant));
+      if (cursor == null) {
+        return null;
+      }
+      long now = System.currentTimeMillis();
+      if (cursor.expires > now) {
+        cursor.expires = now + ttl;
+        return cursor;
+      }
+      cursors.remove(key(id, tenant));
+    }
+    cursor.close();
+    return null;
+  }
+
+  /**
+   * Close result sets of profile, such as when the profile is changed.
+   *
+   * @param profileId profile identifier
+   */
+  public void remove(String profileId) {
+    List<Cursor> removed = new ArrayList<>();
+    synchronized (this) {
+      cursors.values().removeIf(cursor -> {
+        if (profileId.equals(cursor.profile.getId())) {
+          removed.add(cursor);
+          return true;
+        }
+        return false;
+      });
+    }
+    removed.forEach(Cursor::close);
+  }
+
+  /**
+   * Close result sets that have not been used for the time to live.
+   *
+   * @return number of result sets closed
+   */
+  public int evictExpired() {
+    List<Cursor> expired = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    synchronized (this) {
+      cursors.values().removeIf(cursor -> {
+        if (cursor.expires <= now) {
+          expired.add(cursor);
+          return true;
+        }
+        return false;
+      });
+    }
+    expired.forEach(Cursor::close);
+    if (!expired.isEmpty()) {
+      log.info("Closed {} expired result sets", expired.size());
+    }
+    return expired.size();
+  }
+
+  /**
+   * Close all result sets.
+   */
+  public void clear() {
+    List<Cursor> all;
+    synchronized (this) {
+      all = new ArrayList<>(cursors.values());
+      cursors.clear();
+    }
+    all.forEach(Cursor::close);
+  }
+
+  public synchronized int size() {
+    return cursors.size();
+  }
+}
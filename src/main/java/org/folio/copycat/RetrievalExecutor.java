@@ -0,0 +1,180 @@
+package org.folio.copycat;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs blocking retrieval (yaz4j) calls.
+ *
+ * <p>Retrieval has its own worker pool, so that slow targets do not use up the
+ * Vert.x worker pool that RMB needs for its own blocking work. The number of
+ * concurrent calls for each target is limited by a {@link Bulkhead}.
+ *
+ * <p>With mode {@code virtual} each call runs on a virtual thread instead. Note
+ * that a virtual thread blocked in native (yaz) code keeps its carrier thread, so
+ * the number of carrier threads, {@code jdk.virtualThreadScheduler.parallelism},
+ * limits how many retrievals actually wait at the same time.
+ *
+ * <p>With mode {@code async} single record searches do not use a thread each, but
+ * are all handled by the one thread of {@link ZoomEngine}. Searches are started in
+ * cycles there, so a search may wait for the slowest search of the running cycle.
+ */
+public final class RetrievalExecutor {
+  private static final Logger log = LogManager.getLogger(RetrievalExecutor.class);
+
+  /**
+   * How blocking retrieval calls are run.
+   */
+  enum Mode {
+    /** On dedicated Vert.x worker pool. */
+    WORKER,
+    /** On a virtual thread per call. */
+    VIRTUAL,
+    /**
+     * Single record searches on {@link ZoomEngine}; other calls on dedicated Vert.x
+     * worker pool.
+     */
+    ASYNC
+  }
+
+  static final String POOL_NAME = "copycat-retrieval";
+  private static final Mode mode = getMode(Config.getString("COPYCAT_RETRIEVAL_MODE", "worker"));
+  private static final int POOL_SIZE = Config.getInt("COPYCAT_RETRIEVAL_POOL_SIZE", 20);
+  private static final Bulkhead bulkhead = new Bulkhead(
+      Config.getInt("COPYCAT_TARGET_MAX_CONCURRENT", 5),
+      Config.getInt("COPYCAT_TARGET_MAX_QUEUED", 20));
+  private static final Map<Vertx, WorkerExecutor> workerExecutors = new WeakHashMap<>();
+  private static ExecutorService virtualExecutor;
+
+  private RetrievalExecutor() {
+    throw new UnsupportedOperationException();
+  }
+
+  static Mode getMode(String value) {
+    try {
+      return Mode.valueOf(value.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      log.warn("Unknown retrieval mode {}; using worker", value);
+      return Mode.WORKER;
+    }
+  }
+
+  static synchronized ExecutorService getVirtualExecutor() {
+    if (virtualExecutor == null) {
+      virtualExecutor = Executors.newThreadPerTaskExecutor(
+          Thread.ofVirtual().name(POOL_NAME + "-virtual-", 0).factory());
+    }
+    return virtualExecutor;
+  }
+
+  static synchronized WorkerExecutor getWorkerExecutor(Vertx vertx) {
+    return workerExecutors.computeIfAbsent(vertx, v ->
+        v.createSharedWorkerExecutor(POOL_NAME, POOL_SIZE, 2, TimeUnit.MINUTES));
+  }
+
+  static Mode getMode() {
+    return mode;
+  }
+
+  static Bulkhead getBulkhead() {
+    return bulkhead;
+  }
+
+  /**
+   * Execute blocking retrieval.
+   *
+   * @param vertxContext context that the result is delivered on
+   * @param target target that the concurrency limit applies to
+   * @param task blocking code
+   * @return async result of task; failed with {@link RecordRetrieverException} if
+   *     there are too many requests for the target already
+   */
+  public static <T> Future<T> execute(Context vertxContext, String target, Callable<T> task) {
+    return bulkhead.submit(target, () -> execute(vertxContext, task, mode));
+  }
+
+  static <T> Future<T> execute(Context vertxContext, Callable<T> task, Mode executionMode) {
+    if (executionMode == Mode.VIRTUAL) {
+      return executeVirtual(vertxContext, task);
+    }
+    WorkerExecutor workerExecutor = getWorkerExecutor(vertxContext.owner());
+    return Future.future(promise ->
+        vertxContext.runOnContext(x ->
+            workerExecutor.executeBlocking(task, false).onComplete(promise)));
+  }
+
+  /**
+   * Execute blocking retrieval; start a second attempt if the first one is slow.
+   *
+   * <p>The second attempt is not made if other retrievals are waiting for the target,
+   * so that hedging never adds load to a target that is already busy. The first
+   * successful result is used; the result fails only if all attempts fail.
+   *
+   * @param vertxContext context that the result is delivered on
+   * @param target target that the concurrency limit applies to
+   * @param delay milliseconds before second attempt is made; negative for no second attempt
+   * @param task blocking code for first attempt
+   * @param hedgeTask blocking code for second attempt
+   * @return async result of the attempt that succeeded first
+   */
+  public static <T> Future<T> executeHedged(Context vertxContext, String target, long delay,
+      Callable<T> task, Callable<T> hedgeTask) {
+
+    Future<T> first = execute(vertxContext, target, task);
+    if (delay < 0) {
+      return first;
+    }
+    Promise<T> promise = Promise.promise();
+    AtomicInteger pending = new AtomicInteger(1);
+    Handler<AsyncResult<T>> handler = ar -> {
+      if (ar.succeeded()) {
+        promise.tryComplete(ar.result());
+      } else if (pending.decrementAndGet() == 0) {
+        promise.tryFail(ar.cause());
+      }
+    };
+    Vertx vertx = vertxContext.owner();
+    long timerId = vertx.setTimer(Math.max(1, delay), x -> {
+      if (first.isComplete() || bulkhead.getQueued(target) > 0) {
+        return;
+      }
+      log.info("No response from {} within {} ms; searching again", target, delay);
+      pending.incrementAndGet();
+      execute(vertxContext, target, hedgeTask).onComplete(handler);
+    });
+    first.onComplete(ar -> {
+      vertx.cancelTimer(timerId);
+      handler.handle(ar);
+    });
+    return promise.future();
+  }
+
+  static <T> Future<T> executeVirtual(Context vertxContext, Callable<T> task) {
+    Promise<T> promise = Promise.promise();
+    getVirtualExecutor().execute(() -> {
+      try {
+        T result = task.call();
+        vertxContext.runOnContext(x -> promise.complete(result));
+      } catch (Throwable e) {
+        // also errors such as UnsatisfiedLinkError, or the promise would never complete
+        vertxContext.runOnContext(x -> promise.fail(e));
+      }
+    });
+    return promise.future();
+  }
+}
@@ -0,0 +1,133 @@
+package org.folio.copycat;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Tuple;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.rest.persist.PostgresClient;
+
+/**
+ * Cache of retrieved records in a table of the tenant schema, shared by all instances
+ * of the module.
+ *
+ * <p>A row is identified by a name based UUID of the record cache key, so profile,
+ * target, query mapping and normalized identifier select the row. Rows hold the
+ * record, the time it was fetched and the time it expires. Failures of the database
+ * are logged and treated as cache misses, so that imports still work.
+ */
+public class SharedRecordCache {
+  public static final String TABLE = "record_cache";
+  private static final Logger log = LogManager.getLogger(SharedRecordCache.class);
+
+  private final PostgresClient postgresClient;
+  private final String schema;
+
+  /**
+   * Create cache for tenant.
+   *
+   * @param postgresClient client for tenant
+   * @param tenant tenant identifier
+   */
+  public SharedRecordCache(PostgresClient postgresClient, String tenant) {
+    this.postgresClient = postgresClient;
+    this.schema = PostgresClient.convertToPsqlStandard(tenant);
+  }
+
+  /**
+   * Check whether the shared cache is enabled.
+   *
+   * @return true if setting COPYCAT_SHARED_CACHE is 1
+   */
+  public static boolean isEnabled() {
+    return Config.getInt("COPYCAT_SHARED_CACHE", 0) > 0;
+  }
+
+  static String rowId(String key) {
+    return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+  }
+
+  /**
+   * Get record.
+   *
+   * @param key cache key, see {@link RecordRetriever#cacheKey}
+   * @return async result with record; null if not in cache, expired or on error
+   */
+  public Future<JsonObject> get(String key) {
+    return postgresClient.getById(TABLE, rowId(key))
+        .map(row -> {
+          if (row == null || row.getLong("expires", 0L) <= System.currentTimeMillis()) {
+            return null;
+          }
+          return row.getJsonObject("record");
+        })
+        .otherwise(e -> {
+          log.warn("Reading shared record cache failed: {}", e.getMessage(), e);
+          return null;
+        });
+  }
+
+  /**
+   * Store record.
+   *
+   * @param key cache key, see {@link RecordRetriever#cacheKey}
+   * @param profileId profile identifier
+   * @param record record; not modified
+   * @param ttl milliseconds record may be used
+   * @return async result; always succeeds
+   */
+  public Future<Void> put(String key, String profileId, JsonObject record, long ttl) {
+    String id = rowId(key);
+    long now = System.currentTimeMillis();
+    JsonObject row = new JsonObject()
+        .put("id", id)
+        .put("profileId", profileId)
+        .put("record", record)
+        .put("fetchedAt", now)
+        .put("expires", now + ttl);
+    return postgresClient.upsert(TABLE, id, row)
+        .<Void>mapEmpty()
+        .otherwise(e -> {
+          log.warn("Writing shared record cache failed: {}", e.getMessage(), e);
+          return null;
+        });
+  }
+
+  /**
+   * Remove records of profile.
+   *
+   * @param profileId profile identifier
+   * @return async result with number of records removed
+   */
+  public Future<Integer> invalidate(String profileId) {
+    return postgresClient.execute("DELETE FROM " + schema + "." + TABLE
+            + " WHERE jsonb->>'profileId' = $1", Tuple.of(profileId))
+        .map(rows -> rows.rowCount());
+  }
+
+  /**
+   * Remove expired records in batches, so that no single statement runs for long.
+   *
+   * @param postgresClient client for module
+   * @param schema schema of tenant
+   * @param batchSize maximum number of records removed by one statement
+   * @return async result with number of records removed
+   */
+  public static Future<Integer> purge(PostgresClient postgresClient, String schema,
+      int batchSize) {
+    return purge(postgresClient, schema, batchSize, System.currentTimeMillis(), 0);
+  }
+
+  private static Future<Integer> purge(PostgresClient postgresClient, String schema,
+      int batchSize, long now, int total) {
+    String table = schema + "." + TABLE;
+    return postgresClient.execute("DELETE FROM " + table + " WHERE id IN (SELECT id FROM "
+            + table + " WHERE (jsonb->>'expires')::bigint < $1 LIMIT $2)",
+            Tuple.of(now, batchSize))
+        .compose(rows -> rows.rowCount() < batchSize
+            ? Future.succeededFuture(total + rows.rowCount())
+            : purge(postgresClient, schema, batchSize, now, total + rows.rowCount()));
+  }
+}
@@ -0,0 +1,72 @@
+package org.folio.copycat;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical operations: while an operation for a key is in
+ * progress, further callers for the same key share its result instead of starting
+ * their own.
+ */
+public class SingleFlight<T> {
+  private final Map<String, Future<T>> inFlight = new HashMap<>();
+
+  /**
+   * Execute operation unless one for the key is already in progress.
+   *
+   * @param vertxContext context that the result is delivered on
+   * @param key identifies the operation
+   * @param operation starts the operation
+   * @return async result of the operation; shared between concurrent callers
+   */
+  public Future<T> execute(Context vertxContext, String key, Supplier<Future<T>> operation) {
+    Promise<T> leader = null;
+    Future<T> shared;
+    synchronized (this) {
+      shared = inFlight.get(key);
+      if (shared == null) {
+        leader = Promise.promise();
+        shared = leader.future();
+        inFlight.put(key, shared);
+      }
+    }
+    if (leader != null) {
+      Future<T> future;
+      try {
+        future = operation.get();
+      } catch (Exception e) {
+        future = Future.failedFuture(e);
+      }
+      Promise<T> promise = leader;
+      future.onComplete(ar -> {
+        synchronized (this) {
+          inFlight.remove(key);
+        }
+        promise.handle(ar);
+      });
+    }
+    Promise<T> result = Promise.promise();
+    shared.onComplete(ar -> {
+      if (Vertx.currentContext() == vertxContext) {
+        result.handle(ar);
+      } else {
+        vertxContext.runOnContext(x -> result.handle(ar));
+      }
+    });
+    return result.future();
+  }
+
+  /**
+   * Get number of operations in progress.
+   *
+   * @return number of operations
+   */
+  public synchronized int size() {
+    return inFlight.size();
+  }
+}
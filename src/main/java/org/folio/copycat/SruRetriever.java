@@ -0,0 +1,249 @@
+package org.folio.copycat;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import java.io.ByteArrayInputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.rest.jaxrs.model.CopyCatProfile;
+
+/**
+ * Retrieves records with SRU searchRetrieve over HTTP.
+ *
+ * <p>Unlike Z39.50 retrieval, nothing blocks: the request is made with the Vert.x
+ * WebClient and the MARCXML response is parsed with StAX on the event loop. The
+ * query mapping of the profile is a CQL query with {@code $identifier}, such as
+ * {@code bath.isbn=$identifier}.
+ */
+public final class SruRetriever {
+  private static final String SRU_VERSION = "1.2";
+  private static final int WEBCLIENT_CONNECT_TIMEOUT = 10000;
+  private static final int WEBCLIENT_IDLE_TIMEOUT = 20;
+
+  private static final Logger log = LogManager.getLogger(SruRetriever.class);
+  private static final XMLInputFactory xmlInputFactory = createXmlInputFactory();
+
+  private SruRetriever() {
+    throw new UnsupportedOperationException();
+  }
+
+  private static XMLInputFactory createXmlInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    return factory;
+  }
+
+  static WebClient getWebClient(Vertx vertx) {
+    return WebClients.get(vertx, SruRetriever.class.getName(),
+        v -> WebClient.create(v, new WebClientOptions()
+            .setConnectTimeout(WEBCLIENT_CONNECT_TIMEOUT)
+            .setIdleTimeout(WEBCLIENT_IDLE_TIMEOUT)
+            .setKeepAlive(true)));
+  }
+
+  /**
+   * Check whether profile uses SRU.
+   *
+   * @param profile target profile
+   * @return true if protocol of profile is SRU
+   */
+  public static boolean isSru(CopyCatProfile profile) {
+    return profile.getProtocol() == CopyCatProfile.Protocol.SRU;
+  }
+
+  static void checkProfile(CopyCatProfile profile) {
+    if (profile.getSruUrl() == null) {
+      throw new RecordRetrieverException("sruUrl missing in target profile");
+    }
+    if (profile.getExternalIdQueryMap() == null) {
+      throw new RecordRetrieverException("externalIdQueryMap missing in target profile");
+    }
+  }
+
+  /**
+   * Construct CQL query based on external identifier and query mapping.
+   *
+   * @param profile target profile
+   * @param externalId identifier to use within query
+   * @return CQL query with $identifier replaced by quoted identifier
+   */
+  static String constructQuery(CopyCatProfile profile, String externalId) {
+    String term = "\"" + externalId.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    return profile.getExternalIdQueryMap().replace("$identifier", term);
+  }
+
+  /**
+   * Send searchRetrieve request for identifier.
+   *
+   * @param profile target profile
+   * @param externalId identifier such as ISBN number, OCLC number
+   * @param vertxContext Vert.x context
+   * @return async result with response body
+   */
+  static Future<Buffer> search(CopyCatProfile profile, String externalId, Context vertxContext) {
+    try {
+      checkProfile(profile);
+    } catch (RecordRetrieverException e) {
+      return Future.failedFuture(e);
+    }
+    String url = profile.getSruUrl();
+    CircuitBreaker circuitBreaker = RecordRetriever.getCircuitBreaker();
+    if (!circuitBreaker.tryAcquire(url)) {
+      return Future.failedFuture(RecordRetriever.unavailable(url));
+    }
+    String query = constructQuery(profile, externalId);
+    log.info("Search {} {}", url, query);
+    int timeout = RecordRetriever.getTimeoutSeconds(profile);
+    HttpRequest<Buffer> request = getWebClient(vertxContext.owner()).getAbs(url)
+        .addQueryParam("version", SRU_VERSION)
+        .addQueryParam("operation", "searchRetrieve")
+        .addQueryParam("query", query)
+        .addQueryParam("maximumRecords", "1")
+        .addQueryParam("recordSchema", "marcxml")
+        .addQueryParam("recordPacking", "xml")
+        .timeout(timeout * 1000L);
+    long start = System.currentTimeMillis();
+    return request.send()
+        .recover(e -> {
+          circuitBreaker.onFailure(url);
+          RecordRetriever.recordLatency(url, System.currentTimeMillis() - start, false, timeout);
+          return Future.failedFuture(
+              new RecordRetrieverException("SRU error: " + e.getMessage(), e));
+        })
+        .compose(response -> {
+          long elapsed = System.currentTimeMillis() - start;
+          log.info("SRU retrieval completed in {} milliseconds", elapsed);
+          if (response.statusCode() != 200) {
+            circuitBreaker.onFailure(url);
+            return Future.failedFuture(new RecordRetrieverException("SRU error: server " + url
+                + " returned HTTP status " + response.statusCode()));
+          }
+          circuitBreaker.onSuccess(url);
+          RecordRetriever.recordLatency(url, elapsed, true, timeout);
+          Buffer body = response.body();
+          return Future.succeededFuture(body == null ? Buffer.buffer() : body);
+        });
+  }
+
+  /**
+   * Send explain request, which makes a connection that later searches can use.
+   *
+   * @param profile target profile
+   * @param vertxContext Vert.x context
+   * @return async result; failed if the service does not respond with HTTP status 200
+   */
+  static Future<Void> explain(CopyCatProfile profile, Context vertxContext) {
+    String url = profile.getSruUrl();
+    if (url == null) {
+      return Future.failedFuture(new RecordRetrieverException("sruUrl missing in target profile"));
+    }
+    return getWebClient(vertxContext.owner()).getAbs(url)
+        .addQueryParam("version", SRU_VERSION)
+        .addQueryParam("operation", "explain")
+        .timeout(RecordRetriever.getTimeoutSeconds(profile) * 1000L)
+        .send()
+        .compose(response -> response.statusCode() == 200
+            ? Future.succeededFuture()
+            : Future.failedFuture(new RecordRetrieverException("SRU error: server " + url
+                + " returned HTTP status " + response.statusCode())));
+  }
+
+  /**
+   * Get first record from searchRetrieve response.
+   *
+   * @param profile target profile
+   * @param externalId identifier that was searched for
+   * @param body searchRetrieve response
+   * @return record as JSON MARC
+   * @throws RecordNotFoundException if the response has no record
+   * @throws RecordRetrieverException for diagnostics and bad responses
+   */
+  static JsonObject parseResponse(CopyCatProfile profile, String externalId, Buffer body) {
+    XMLStreamReader reader = null;
+    try {
+      reader = xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(body.getBytes()));
+      while (reader.hasNext()) {
+        if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+          continue;
+        }
+        String name = reader.getLocalName();
+        if ("diagnostic".equals(name)) {
+          throw new RecordRetrieverException("SRU error: server " + profile.getSruUrl()
+              + " returned diagnostic: " + parseDiagnostic(reader)
+              + ". Perhaps the copycat profile is incorrectly configured for this server");
+        }
+        if ("record".equals(name) && MarcXml.NAMESPACE.equals(reader.getNamespaceURI())) {
+          return MarcXml.toJson(reader);
+        }
+      }
+    } catch (XMLStreamException e) {
+      throw new RecordRetrieverException("SRU error: bad response from server "
+          + profile.getSruUrl() + ": " + e.getMessage(), e);
+    } finally {
+      close(reader);
+    }
+    throw new RecordNotFoundException("No record found when searching "
+        + profile.getSruUrl() + " for identifier " + externalId);
+  }
+
+  private static String parseDiagnostic(XMLStreamReader reader) throws XMLStreamException {
+    String uri = null;
+    String message = null;
+    String details = null;
+    int depth = 1;
+    while (depth > 0 && reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        switch (reader.getLocalName()) {
+          case "uri" -> uri = reader.getElementText();
+          case "message" -> message = reader.getElementText();
+          case "details" -> details = reader.getElementText();
+          default -> depth++;
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+    StringBuilder s = new StringBuilder(message != null ? message : String.valueOf(uri));
+    if (details != null && !details.isEmpty()) {
+      s.append(": ").append(details);
+    }
+    return s.toString();
+  }
+
+  private static void close(XMLStreamReader reader) {
+    if (reader != null) {
+      try {
+        reader.close();
+      } catch (XMLStreamException e) {
+        log.warn(e.getMessage(), e);
+      }
+    }
+  }
+
+  /**
+   * Retrieve record as JSON from SRU target.
+   *
+   * @param profile target profile
+   * @param externalId external identifier (such as ISBN, OCLC number)
+   * @param vertxContext Vert.x context
+   * @return async result with record (failure if no record is found)
+   */
+  public static Future<JsonObject> getRecordAsJsonObject(CopyCatProfile profile,
+      String externalId, Context vertxContext) {
+    return search(profile, externalId, vertxContext)
+        .map(body -> parseResponse(profile, externalId, body));
+  }
+}
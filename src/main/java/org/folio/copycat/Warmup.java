@@ -0,0 +1,102 @@
+package org.folio.copycat;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.rest.jaxrs.model.CopyCatProfile;
+
+/**
+ * Prepares for the first imports after start or tenant enable, so that these are about
+ * as fast as later ones.
+ *
+ * <p>For each enabled profile a connection to the target is made (which also looks up
+ * the host) and kept in the pool. The JSON MARC code that every import runs is
+ * executed a number of times, so that it is compiled by the JIT.
+ */
+public final class Warmup {
+  private static final Logger log = LogManager.getLogger(Warmup.class);
+  private static final int JIT_ITERATIONS = Config.getInt("COPYCAT_WARMUP_ITERATIONS", 2000);
+
+  private Warmup() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Check whether warm-up is enabled.
+   *
+   * @return true if setting COPYCAT_WARMUP is 1
+   */
+  public static boolean isEnabled() {
+    return Config.getInt("COPYCAT_WARMUP", 0) > 0;
+  }
+
+  static JsonObject sampleRecord() {
+    JsonArray fields = new JsonArray()
+        .add(new JsonObject().put("001", "12345"))
+        .add(new JsonObject().put("008", "780306m19009999ohu"));
+    for (String tag : List.of("020", "100", "245", "260", "300", "650", "650", "700")) {
+      fields.add(new JsonObject().put(tag, new JsonObject()
+          .put("ind1", "1")
+          .put("ind2", " ")
+          .put("subfields", new JsonArray()
+              .add(new JsonObject().put("a", "Warm-up " + tag))
+              .add(new JsonObject().put("b", "København")))));
+    }
+    return new JsonObject().put("leader", "00714cam a2200205 a 4500").put("fields", fields);
+  }
+
+  /**
+   * Run the JSON MARC code of imports repeatedly.
+   *
+   * @param iterations number of times to run
+   */
+  public static void primeJit(int iterations) {
+    byte[] buf = sampleRecord().toBuffer().getBytes();
+    int values = 0;
+    for (int i = 0; i < iterations; i++) {
+      JsonObject marc = RecordRetriever.decodeJson(buf);
+      values += JsonMarc.getValues(marc, "020a").size();
+      JsonMarc.embedPath(marc, "999ff$i", UUID.randomUUID().toString());
+      values += marc.copy().encode().length();
+    }
+    log.debug("JIT priming done ({})", values);
+  }
+
+  /**
+   * Connect to the targets of enabled profiles and prime the JIT.
+   *
+   * @param vertxContext Vert.x context
+   * @param profiles profiles of tenant; those not enabled are skipped
+   * @return async result; warm-up failures are logged, not returned
+   */
+  public static Future<Void> warmUp(Context vertxContext, List<CopyCatProfile> profiles) {
+    List<Future<Void>> futures = new ArrayList<>();
+    for (CopyCatProfile profile : profiles) {
+      if (!Boolean.TRUE.equals(profile.getEnabled())) {
+        continue;
+      }
+      String url = RecordRetriever.targetUrl(profile);
+      Future<Void> future = SruRetriever.isSru(profile)
+          ? SruRetriever.explain(profile, vertxContext)
+          : RetrievalExecutor.execute(vertxContext, url, () -> RecordRetriever.prefill(profile))
+              .mapEmpty();
+      futures.add(future
+          .onSuccess(x -> log.info("Warm-up of {} done", url))
+          .recover(e -> {
+            log.warn("Warm-up of {} failed: {}", url, e.getMessage());
+            return Future.succeededFuture();
+          }));
+    }
+    futures.add(RetrievalExecutor.execute(vertxContext, null, () -> {
+      primeJit(JIT_ITERATIONS);
+      return null;
+    }));
+    return Future.all(futures).mapEmpty();
+  }
+}
@@ -0,0 +1,42 @@
+package org.folio.copycat;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.client.WebClient;
+import java.util.function.Function;
+
+/**
+ * WebClients shared by all users of a Vert.x instance.
+ *
+ * <p>Clients are kept in a local map of the Vert.x instance rather than in a static
+ * map keyed by the instance, so that they go away together with the instance.
+ */
+public final class WebClients {
+  static final String MAP_NAME = "org.folio.copycat.WebClients";
+
+  private WebClients() {
+    throw new UnsupportedOperationException();
+  }
+
+  private static final class Holder implements Shareable {
+    private final WebClient client;
+
+    Holder(WebClient client) {
+      this.client = client;
+    }
+  }
+
+  /**
+   * Get WebClient of Vert.x instance, creating it on first use.
+   *
+   * @param vertx Vert.x instance
+   * @param name identifies the client within the Vert.x instance
+   * @param factory creates the client
+   * @return client
+   */
+  public static WebClient get(Vertx vertx, String name, Function<Vertx, WebClient> factory) {
+    LocalMap<String, Holder> clients = vertx.sharedData().getLocalMap(MAP_NAME);
+    return clients.computeIfAbsent(name, k -> new Holder(factory.apply(vertx))).client;
+  }
+}
@@ -0,0 +1,262 @@
+package org.folio.copycat;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.rest.jaxrs.model.CopyCatProfile;
+import org.yaz4j.AsyncConnection;
+import org.yaz4j.AsyncConnections;
+import org.yaz4j.ResultSet;
+import org.yaz4j.exception.Bib1Exception;
+import org.yaz4j.exception.InitRejectedException;
+import org.yaz4j.exception.ZoomException;
+
+/**
+ * Retrieves records with asynchronous ZOOM connections that are all driven by one
+ * thread.
+ *
+ * <p>The thread takes the searches that are waiting, starts a connection for each
+ * and waits for ZOOM events of all of them at once ({@code ZOOM_event}). A search
+ * completes as soon as its record, its failure or a response without hits arrives,
+ * so a fast target does not wait for a slow one. The cycle ends when every search
+ * has completed or timed out; its connections are closed then, and the thread takes
+ * the searches that arrived in the meantime, which therefore wait for the slowest
+ * search of the cycle before they are started. yaz4j drives the connections with
+ * {@code ZOOM_event} until all of them are idle and offers no way to add a connection
+ * to a running cycle, so this is not the mode for many concurrent searches against
+ * targets of mixed speed. Each search uses a new connection; idle connections of
+ * {@link ConnectionPool} are not used, because they are synchronous, but the
+ * connection is counted against its limit of open connections per target.
+ */
+public class ZoomEngine {
+  private static final Logger log = LogManager.getLogger(ZoomEngine.class);
+
+  private final int maxConnections;
+  private final BlockingQueue<Search> queue = new LinkedBlockingQueue<>();
+  private Thread thread;
+
+  private static final class Search {
+    private final CopyCatProfile profile;
+    private final String externalId;
+    private final String type;
+    private final Context vertxContext;
+    private final Promise<byte[]> promise = Promise.promise();
+    private String key;
+    private AsyncConnection connection;
+    private ResultSet resultSet;
+    private byte[] record;
+    private ZoomException error;
+    private long start;
+    private int timeout;
+    private boolean done;
+
+    Search(CopyCatProfile profile, String externalId, String type, Context vertxContext) {
+      this.profile = profile;
+      this.externalId = externalId;
+      this.type = type;
+      this.vertxContext = vertxContext;
+    }
+  }
+
+  /**
+   * Create engine; the thread is started with the first search.
+   *
+   * @param maxConnections maximum number of connections driven at the same time
+   */
+  public ZoomEngine(int maxConnections) {
+    this.maxConnections = Math.max(1, maxConnections);
+  }
+
+  /**
+   * Search and retrieve record.
+   *
+   * @param profile target profile
+   * @param externalId record identifier such as ISBN number, OCLC number
+   * @param type render type, see {@link RecordRetriever#getRecordAsBytes}
+   * @param vertxContext context that the result is delivered on
+   * @return async result with record content
+   */
+  public Future<byte[]> search(CopyCatProfile profile, String externalId, String type,
+      Context vertxContext) {
+
+    try {
+      RecordRetriever.checkProfile(profile);
+    } catch (RecordRetrieverException e) {
+      return Future.failedFuture(e);
+    }
+    Search search = new Search(profile, externalId, type, vertxContext);
+    start();
+    queue.add(search);
+    return search.promise.future();
+  }
+
+  private synchronized void start() {
+    if (thread == null) {
+      thread = new Thread(this::run, "copycat-zoom-engine");
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * Get number of searches waiting for the next cycle.
+   *
+   * @return number of searches
+   */
+  public int getQueued() {
+    return queue.size();
+  }
+
+  private void run() {
+    while (!Thread.currentThread().isInterrupted()) {
+      List<Search> searches = new ArrayList<>();
+      try {
+        searches.add(queue.take());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      queue.drainTo(searches, maxConnections - 1);
+      try {
+        cycle(searches);
+      } catch (Exception e) {
+        // do not let one bad cycle stop the engine
+        log.error(e.getMessage(), e);
+        searches.forEach(search -> complete(search, e));
+      }
+    }
+  }
+
+  private void cycle(List<Search> searches) {
+    AsyncConnections connections = new AsyncConnections();
+    List<Search> started = new ArrayList<>();
+    for (Search search : searches) {
+      CircuitBreaker circuitBreaker = RecordRetriever.getCircuitBreaker();
+      String url = search.profile.getUrl();
+      if (!circuitBreaker.tryAcquire(url)) {
+        complete(search, RecordRetriever.unavailable(url));
+        continue;
+      }
+      try {
+        begin(search);
+        connections.add(search.connection);
+        started.add(search);
+      } catch (ZoomException e) {
+        search.error = e;
+        finish(search);
+        close(search);
+      } catch (RuntimeException e) {
+        circuitBreaker.onSuccess(url);
+        close(search);
+        complete(search, e);
+      }
+    }
+    if (!started.isEmpty()) {
+      log.info("Waiting for {} Z39.50 searches", started.size());
+      connections.start();
+    }
+    for (Search search : started) {
+      // timed out or ended without record
+      finish(search);
+      close(search);
+    }
+  }
+
+  private void begin(Search search) throws ZoomException {
+    CopyCatProfile profile = search.profile;
+    search.timeout = RecordRetriever.getTimeoutSeconds(profile);
+    search.start = System.currentTimeMillis();
+    // the engine thread must not wait for another search to close its connection
+    String key = RecordRetriever.targetKey(profile);
+    RecordRetriever.getConnectionPool().reserve(key, 0);
+    search.key = key;
+    search.connection = RecordRetriever.configure(new AsyncConnection(profile.getUrl(), 0),
+        profile);
+    // ask for first record in the search response, so that no present is needed
+    search.connection.option("count", "1");
+    search.connection
+        .onSearch(resultSet -> {
+          search.resultSet = resultSet;
+          if (resultSet.getHitCount() == 0) {
+            finish(search);
+          }
+        })
+        .onRecord(record -> {
+          if (search.record == null) {
+            search.record = record.get(search.type);
+            finish(search);
+          }
+        })
+        .onError(e -> {
+          search.error = e;
+          finish(search);
+        })
+        .onRecordError(e -> {
+          search.error = e;
+          finish(search);
+        });
+    log.info("Search {} {}", profile.getUrl(), search.externalId);
+    search.connection.connect();
+    search.connection.search(RecordRetriever.constructQuery(profile, search.externalId));
+  }
+
+  /**
+   * Complete search; called on the engine thread from the ZOOM event that ends it, or
+   * at the end of the cycle. The connection stays open until the cycle ends, because
+   * ZOOM events of the other connections are still being waited for.
+   */
+  private void finish(Search search) {
+    if (search.done) {
+      return;
+    }
+    search.done = true;
+    CopyCatProfile profile = search.profile;
+    long elapsed = System.currentTimeMillis() - search.start;
+    ZoomException error = search.error;
+    boolean answered = error == null || error instanceof Bib1Exception
+        || error instanceof InitRejectedException;
+    if (answered) {
+      RecordRetriever.getCircuitBreaker().onSuccess(profile.getUrl());
+    } else {
+      RecordRetriever.getCircuitBreaker().onFailure(profile.getUrl());
+    }
+    RecordRetriever.recordLatency(profile.getUrl(), elapsed, answered, search.timeout);
+    log.info("Z39.50 retrieval completed in {} milliseconds", elapsed);
+    if (error != null) {
+      complete(search, RecordRetriever.zoomError(profile, error));
+    } else if (search.record == null) {
+      complete(search, new RecordNotFoundException("No record found when searching "
+          + profile.getUrl() + " for identifier " + search.externalId));
+    } else {
+      byte[] record = search.record;
+      search.vertxContext.runOnContext(x -> search.promise.tryComplete(record));
+    }
+  }
+
+  private static void close(Search search) {
+    try {
+      if (search.resultSet != null) {
+        search.resultSet.close();
+      }
+      if (search.connection != null) {
+        search.connection.close();
+      }
+    } catch (Exception e) {
+      log.warn("Closing Z39.50 connection failed: {}", e.getMessage(), e);
+    }
+    if (search.key != null) {
+      RecordRetriever.getConnectionPool().cancel(search.key);
+      search.key = null;
+    }
+  }
+
+  private static void complete(Search search, Throwable cause) {
+    search.vertxContext.runOnContext(x -> search.promise.tryFail(cause));
+  }
+}
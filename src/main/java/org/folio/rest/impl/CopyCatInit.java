@@ -3,10 +3,17 @@ package org.folio.rest.impl;
 import io.vertx.core.Context;
 import io.vertx.core.Future;
 import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.copycat.Warmup;
+import org.folio.rest.jaxrs.model.CopyCatProfile;
 import org.folio.rest.jaxrs.model.TenantAttributes;
+import org.folio.rest.persist.Criteria.Criterion;
+import org.folio.rest.persist.PgUtil;
 import org.folio.rest.tools.utils.TenantLoading;
 
 public class CopyCatInit extends TenantAPI {
+  private static final Logger log = LogManager.getLogger(CopyCatInit.class);
 
   @Override
   Future<Integer> loadData(TenantAttributes attributes, String tenantId,
@@ -18,6 +25,19 @@ public class CopyCatInit extends TenantAPI {
             .withPostOnly() // only install this reference data once
             .withAcceptStatus(400) // 400 is returned if id already exists
             .add("profiles", "copycat/profiles")
-            .perform(attributes, headers, vertxContext, num));
+            .perform(attributes, headers, vertxContext, num))
+        .onSuccess(num -> {
+          if (Warmup.isEnabled()) {
+            // tenant init does not wait for this
+            warmUp(headers, vertxContext);
+          }
+        });
+  }
+
+  static Future<Void> warmUp(Map<String, String> headers, Context vertxContext) {
+    return PgUtil.postgresClient(vertxContext, headers)
+        .get(CopycatImpl.PROFILE_TABLE, CopyCatProfile.class, new Criterion(), false)
+        .compose(results -> Warmup.warmUp(vertxContext, results.getResults()))
+        .onFailure(e -> log.warn("Warm-up failed: {}", e.getMessage(), e));
   }
 }
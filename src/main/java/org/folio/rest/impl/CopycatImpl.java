@@ -9,31 +9,56 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Function;
 import javax.ws.rs.core.Response;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.folio.copycat.CircuitBreaker;
+import org.folio.copycat.Config;
+import org.folio.copycat.ImportJobStore;
 import org.folio.copycat.JsonMarc;
+import org.folio.copycat.ProfilePlan;
 import org.folio.copycat.RecordImporter;
+import org.folio.copycat.RecordNotFoundException;
 import org.folio.copycat.RecordRetriever;
+import org.folio.copycat.RecordRetrieverException;
+import org.folio.copycat.SharedRecordCache;
+import org.folio.copycat.SruRetriever;
 import org.folio.rest.annotations.Validate;
 import org.folio.rest.impl.exceptions.UnsupportedJobProfileException;
+import org.folio.rest.jaxrs.model.CopyCatBatchImports;
+import org.folio.rest.jaxrs.model.CopyCatBatchItem;
 import org.folio.rest.jaxrs.model.CopyCatCollection;
+import org.folio.rest.jaxrs.model.CopyCatHit;
+import org.folio.rest.jaxrs.model.CopyCatImportJob;
 import org.folio.rest.jaxrs.model.CopyCatImports;
 import org.folio.rest.jaxrs.model.CopyCatProfile;
+import org.folio.rest.jaxrs.model.CopyCatSearch;
+import org.folio.rest.jaxrs.model.CopyCatTarget;
+import org.folio.rest.jaxrs.model.CopyCatTargets;
 import org.folio.rest.jaxrs.model.Error;
 import org.folio.rest.jaxrs.model.Errors;
 import org.folio.rest.jaxrs.model.Record;
+import org.folio.rest.persist.Criteria.Criterion;
 import org.folio.rest.persist.PgUtil;
 import org.folio.rest.persist.PostgresClient;
+import org.folio.rest.tools.utils.TenantTool;
 import org.marc4j.MarcJsonWriter;
 import org.marc4j.MarcStreamReader;
 import org.marc4j.converter.impl.AnselToUnicode;
 
 public class CopycatImpl implements org.folio.rest.jaxrs.resource.Copycat {
-  private static final String PROFILE_TABLE = "profile";
+  static final String PROFILE_TABLE = "profile";
+  private static final int BATCH_IMPORT_PARALLEL =
+      Math.max(1, Config.getInt("COPYCAT_BATCH_IMPORT_PARALLEL", 5));
   private static final Logger log = LogManager.getLogger(CopycatImpl.class);
 
   static Errors createErrors(String message) {
@@ -114,65 +139,146 @@ public class CopycatImpl implements org.folio.rest.jaxrs.resource.Copycat {
     }
   }
 
+  static Future<List<CopyCatProfile>> getProfiles(PostgresClient postgresClient,
+      CopyCatProfile first, List<String> additionalProfileIds) {
+
+    List<Future<CopyCatProfile>> futures = new ArrayList<>();
+    futures.add(Future.succeededFuture(first));
+    if (additionalProfileIds != null) {
+      for (String profileId : additionalProfileIds) {
+        futures.add(postgresClient.getById(PROFILE_TABLE, profileId).compose(res -> res == null
+            ? Future.failedFuture("No such profileId " + profileId)
+            : Future.succeededFuture(res.mapTo(CopyCatProfile.class))));
+      }
+    }
+    return Future.all(futures).map(x -> futures.stream().map(Future::result).toList());
+  }
+
+  Future<List<String>> importRecord(CopyCatImports entity, CopyCatProfile targetProfile,
+      PostgresClient postgresClient, Map<String, String> okapiHeaders, Context vertxContext,
+      Runnable importing) {
+
+    String jobProfile;
+    String selectedJobProfileId = entity.getSelectedJobProfileId();
+    List<String> instances = new LinkedList<>();
+    if (entity.getInternalIdentifier() != null) {
+      List<String> updateJobProfileIds = targetProfile.getAllowedUpdateJobProfileIds();
+      try {
+        jobProfile = getJobProfileId(selectedJobProfileId,
+            targetProfile.getUpdateJobProfileId(), updateJobProfileIds);
+      } catch (UnsupportedJobProfileException e) {
+        log.warn("Invalid job profile id {}", selectedJobProfileId);
+        return Future.failedFuture(e.getMessage());
+      }
+      if (targetProfile.getInternalIdEmbedPath() == null) {
+        return Future.failedFuture("Missing internalIdEmbedPath in target profile");
+      }
+      instances.add(entity.getInternalIdentifier());
+    } else {
+      List<String> createJobProfileIds = targetProfile.getAllowedCreateJobProfileIds();
+      try {
+        jobProfile = getJobProfileId(selectedJobProfileId,
+            targetProfile.getCreateJobProfileId(), createJobProfileIds);
+      } catch (UnsupportedJobProfileException e) {
+        log.warn("Invalid job profile id {}", selectedJobProfileId);
+        return Future.failedFuture(e.getMessage());
+      }
+    }
+    RecordImporter importer;
+    try {
+      importer = new RecordImporter(okapiHeaders, vertxContext);
+    } catch (IllegalArgumentException e) {
+      return Future.failedFuture(e);
+    }
+    // job setup does not depend on the record, so it runs while the record is retrieved
+    log.info("Importing with job profile {}", jobProfile);
+    Record record = entity.getRecord();
+    Future<JsonObject> fut;
+    Future<Void> setup;
+    if (record != null) {
+      setup = importer.begin(jobProfile);
+      fut = getLocalRecord(record);
+    } else if (entity.getResultSetId() != null) {
+      setup = importer.begin(jobProfile);
+      // a new search may have other hits, so it is only made if the hit can be checked
+      String hitIdentifier = entity.getHitIdentifier();
+      fut = RecordRetriever.getResultSetRecord(targetProfile, entity.getResultSetId(),
+              TenantTool.tenantId(okapiHeaders), entity.getPosition(), hitIdentifier != null,
+              vertxContext)
+          .compose(marc -> checkHit(marc, hitIdentifier, entity.getPosition(),
+              entity.getResultSetId()));
+    } else {
+      SharedRecordCache sharedCache = SharedRecordCache.isEnabled()
+          ? new SharedRecordCache(postgresClient, TenantTool.tenantId(okapiHeaders)) : null;
+      Future<List<CopyCatProfile>> profiles =
+          getProfiles(postgresClient, targetProfile, entity.getAdditionalProfileIds());
+      // no job for a record that is known to fail, such as from a cached failure
+      setup = profiles.compose(p -> RecordRetriever.isKnownFailure(p,
+          entity.getExternalIdentifier()) ? Future.succeededFuture() : importer.begin(jobProfile));
+      fut = profiles.compose(p -> RecordRetriever.getRecordAsJsonObject(p,
+          entity.getExternalIdentifier(), sharedCache, vertxContext));
+    }
+    Future<JsonObject> marcFuture = fut.map(marc -> {
+      if (entity.getInternalIdentifier() != null) {
+        log.info("Embedding identifier {} in MARC {}",
+            entity::getInternalIdentifier, targetProfile::getInternalIdEmbedPath);
+        ProfilePlan.of(targetProfile).embed(marc, entity.getInternalIdentifier());
+      }
+      return marc;
+    });
+    return Future.join(marcFuture, setup).transform(x -> {
+      if (marcFuture.failed()) {
+        // errors of retrieval come first, as they did when setup came after retrieval
+        return discard(importer, marcFuture.cause());
+      }
+      if (setup.failed()) {
+        return discard(importer, setup.cause());
+      }
+      JsonObject marc = marcFuture.result();
+      log.info("Importing {}", marc::encodePrettily);
+      importing.run();
+      // setup was skipped if the record was expected to fail, but then was retrieved
+      Future<Void> ready = importer.hasJob() ? Future.succeededFuture()
+          : importer.begin(jobProfile);
+      return ready
+          .compose(y -> importer.post(List.of(marc), true))
+          .compose(y -> importer.end(instances));
+    });
+  }
+
   @Validate
   @Override
-  public void postCopycatImports(CopyCatImports entity, Map<String, String> okapiHeaders,
+  public void postCopycatImports(boolean async, CopyCatImports entity,
+                                 Map<String, String> okapiHeaders,
                                  Handler<AsyncResult<Response>> asyncResultHandler,
                                  Context vertxContext) {
 
     String profileId = entity.getProfileId();
     PostgresClient postgresClient = PgUtil.postgresClient(vertxContext, okapiHeaders);
-    postgresClient.getById(PROFILE_TABLE, profileId)
-        .compose(res -> {
-          if (res == null) {
-            return Future.failedFuture("No such profileId " + profileId);
-          }
-          CopyCatProfile targetProfile = res.mapTo(CopyCatProfile.class);
-          Record record = entity.getRecord();
-          Future<JsonObject> fut = record != null
-              ? getLocalRecord(record)
-              :  RecordRetriever.getRecordAsJsonObject(targetProfile,
-              entity.getExternalIdentifier(), vertxContext);
-          return fut.compose(marc -> {
-            String jobProfile;
-            String selectedJobProfileId = entity.getSelectedJobProfileId();
-            List<String> instances = new LinkedList<>();
-            if (entity.getInternalIdentifier() != null) {
-              List<String> updateJobProfileIds = targetProfile.getAllowedUpdateJobProfileIds();
-              try {
-                jobProfile = getJobProfileId(selectedJobProfileId,
-                    targetProfile.getUpdateJobProfileId(), updateJobProfileIds);
-              } catch (UnsupportedJobProfileException e) {
-                log.warn("Invalid job profile id {}", selectedJobProfileId);
-                return Future.failedFuture(e.getMessage());
-              }
-
-              String pattern = targetProfile.getInternalIdEmbedPath();
-              if (pattern == null) {
-                return Future.failedFuture("Missing internalIdEmbedPath in target profile");
-              }
-              instances.add(entity.getInternalIdentifier());
-              log.info("Embedding identifier {} in MARC {}",
-                  entity::getInternalIdentifier, () -> pattern);
-              JsonMarc.embedPath(marc, pattern, entity.getInternalIdentifier());
-            } else {
-              List<String> createJobProfileIds = targetProfile.getAllowedCreateJobProfileIds();
-              try {
-                jobProfile = getJobProfileId(selectedJobProfileId,
-                    targetProfile.getCreateJobProfileId(), createJobProfileIds);
-              } catch (UnsupportedJobProfileException e) {
-                log.warn("Invalid job profile id {}", selectedJobProfileId);
-                return Future.failedFuture(e.getMessage());
-              }
-            }
-            log.info("Importing with job profile {}", jobProfile);
-            log.info("Importing {}", marc::encodePrettily);
-            RecordImporter importer = new RecordImporter(okapiHeaders, vertxContext);
-            return importer.begin(jobProfile)
-                .compose(x -> importer.post(marc))
-                .compose(x -> importer.end(instances));
-          });
-        })
+    Future<CopyCatProfile> profile = postgresClient.getById(PROFILE_TABLE, profileId)
+        .compose(res -> res == null
+            ? Future.failedFuture("No such profileId " + profileId)
+            : Future.succeededFuture(res.mapTo(CopyCatProfile.class)));
+    if (async) {
+      profile
+          .compose(targetProfile -> startImportJob(entity, targetProfile, postgresClient,
+              okapiHeaders, vertxContext))
+          .onSuccess(job ->
+              asyncResultHandler.handle(
+                  Future.succeededFuture(
+                      PostCopycatImportsResponse.respond202WithApplicationJson(job,
+                          PostCopycatImportsResponse.headersFor202()
+                              .withLocation("/copycat/imports/" + job.getId())))))
+          .onFailure(cause ->
+              asyncResultHandler.handle(
+                  Future.succeededFuture(
+                      PostCopycatImportsResponse.respond400WithApplicationJson(
+                          createErrors(cause)))));
+      return;
+    }
+    profile
+        .compose(targetProfile -> importRecord(entity, targetProfile, postgresClient,
+            okapiHeaders, vertxContext, () -> { }))
         .onSuccess(
             instances -> {
               if (!instances.isEmpty()) {
@@ -193,12 +299,443 @@ public class CopycatImpl implements org.folio.rest.jaxrs.resource.Copycat {
       );
   }
 
+  /**
+   * Save import job and run import in the background, saving each change of phase.
+   *
+   * @return async result with job as saved, before the import has got anywhere
+   */
+  Future<CopyCatImportJob> startImportJob(CopyCatImports entity, CopyCatProfile targetProfile,
+      PostgresClient postgresClient, Map<String, String> okapiHeaders, Context vertxContext) {
+
+    ImportJobStore store = new ImportJobStore(postgresClient);
+    CopyCatImportJob job = new CopyCatImportJob()
+        .withId(UUID.randomUUID().toString())
+        .withPhase(CopyCatImportJob.Phase.RETRIEVING)
+        .withProfileId(entity.getProfileId())
+        .withExternalIdentifier(entity.getExternalIdentifier())
+        .withStartedAt(new Date());
+    return store.save(job).onSuccess(x -> {
+      // final phase is saved after the importing phase, so that it is not overwritten
+      List<Future<Void>> saves = new ArrayList<>();
+      importRecord(entity, targetProfile, postgresClient, okapiHeaders, vertxContext, () ->
+          saves.add(store.save(copyOf(job).withPhase(CopyCatImportJob.Phase.IMPORTING))))
+          .map(instances -> copyOf(job)
+              .withPhase(CopyCatImportJob.Phase.COMPLETED)
+              .withInstanceIds(instances))
+          .otherwise(cause -> {
+            log.warn("Import job {} failed: {}", job.getId(), cause.getMessage(), cause);
+            return copyOf(job)
+                .withPhase(CopyCatImportJob.Phase.FAILED)
+                .withMessage(cause.getMessage());
+          })
+          .compose(done -> Future.join(saves).transform(y ->
+              store.save(done.withCompletedAt(new Date()))))
+          .onFailure(cause -> log.error("Saving import job {} failed: {}", job.getId(),
+              cause.getMessage(), cause));
+    }).map(job);
+  }
+
+  private static CopyCatImportJob copyOf(CopyCatImportJob job) {
+    return JsonObject.mapFrom(job).mapTo(CopyCatImportJob.class);
+  }
+
+  @Validate
+  @Override
+  public void getCopycatImportsById(String id, Map<String, String> okapiHeaders,
+                                    Handler<AsyncResult<Response>> asyncResultHandler,
+                                    Context vertxContext) {
+
+    new ImportJobStore(PgUtil.postgresClient(vertxContext, okapiHeaders)).get(id)
+        .onSuccess(job -> asyncResultHandler.handle(Future.succeededFuture(job == null
+            ? GetCopycatImportsByIdResponse.respond404WithTextPlain("Import job " + id
+                + " not found")
+            : GetCopycatImportsByIdResponse.respond200WithApplicationJson(job))))
+        .onFailure(cause -> {
+          log.error(cause.getMessage(), cause);
+          asyncResultHandler.handle(Future.succeededFuture(
+              GetCopycatImportsByIdResponse.respond500WithTextPlain(cause.getMessage())));
+        });
+  }
+
+  /**
+   * Apply function to items with at most parallel results pending at a time.
+   *
+   * @param items items to apply function to
+   * @param parallel maximum number of pending results
+   * @param function function returning async result for item
+   * @return async result, always succeeding, with result of each item in item order
+   */
+  static <T, R> Future<List<Future<R>>> forEachBounded(List<T> items, int parallel,
+      Function<T, Future<R>> function) {
+
+    List<Future<R>> results = new ArrayList<>(Collections.nCopies(items.size(), null));
+    int[] next = new int[1];
+    List<Future<Void>> lanes = new ArrayList<>();
+    for (int i = 0; i < Math.min(parallel, items.size()); i++) {
+      lanes.add(nextBounded(items, next, results, function));
+    }
+    return Future.all(lanes).map(x -> results);
+  }
+
+  private static <T, R> Future<Void> nextBounded(List<T> items, int[] next,
+      List<Future<R>> results, Function<T, Future<R>> function) {
+
+    int i = next[0]++;
+    if (i >= items.size()) {
+      return Future.succeededFuture();
+    }
+    Future<R> result;
+    try {
+      result = function.apply(items.get(i));
+    } catch (Exception e) {
+      result = Future.failedFuture(e);
+    }
+    results.set(i, result);
+    return result.transform(x -> nextBounded(items, next, results, function));
+  }
+
+  @Validate
+  @Override
+  public void postCopycatImportsBatch(CopyCatBatchImports entity,
+                                      Map<String, String> okapiHeaders,
+                                      Handler<AsyncResult<Response>> asyncResultHandler,
+                                      Context vertxContext) {
+
+    String profileId = entity.getProfileId();
+    List<CopyCatBatchItem> items = entity.getItems();
+    PostgresClient postgresClient = PgUtil.postgresClient(vertxContext, okapiHeaders);
+    postgresClient.getById(PROFILE_TABLE, profileId)
+        .compose(res -> {
+          if (res == null) {
+            return Future.failedFuture("No such profileId " + profileId);
+          }
+          CopyCatProfile targetProfile = res.mapTo(CopyCatProfile.class);
+          long overlays = items.stream().filter(item -> item.getInternalIdentifier() != null)
+              .count();
+          if (overlays != 0 && overlays != items.size()) {
+            return Future.failedFuture("Items must all have internalIdentifier or none");
+          }
+          boolean overlay = overlays > 0;
+          String jobProfile;
+          try {
+            jobProfile = overlay
+                ? getJobProfileId(entity.getSelectedJobProfileId(),
+                    targetProfile.getUpdateJobProfileId(),
+                    targetProfile.getAllowedUpdateJobProfileIds())
+                : getJobProfileId(entity.getSelectedJobProfileId(),
+                    targetProfile.getCreateJobProfileId(),
+                    targetProfile.getAllowedCreateJobProfileIds());
+          } catch (UnsupportedJobProfileException e) {
+            log.warn("Invalid job profile id {}", entity.getSelectedJobProfileId());
+            return Future.failedFuture(e.getMessage());
+          }
+          if (overlay && targetProfile.getInternalIdEmbedPath() == null) {
+            return Future.failedFuture("Missing internalIdEmbedPath in target profile");
+          }
+          RecordImporter importer = new RecordImporter(okapiHeaders, vertxContext);
+          log.info("Importing with job profile {}", jobProfile);
+          ProfilePlan plan = ProfilePlan.of(targetProfile);
+          SharedRecordCache sharedCache = SharedRecordCache.isEnabled()
+              ? new SharedRecordCache(postgresClient, TenantTool.tenantId(okapiHeaders)) : null;
+          Future<List<CopyCatProfile>> profilesFuture =
+              getProfiles(postgresClient, targetProfile, entity.getAdditionalProfileIds());
+          // no job if all records are known to fail, such as from cached failures
+          Future<Void> setup = profilesFuture.compose(profiles -> items.stream()
+              .allMatch(item -> RecordRetriever.isKnownFailure(profiles,
+                  item.getExternalIdentifier()))
+              ? Future.succeededFuture() : importer.begin(jobProfile));
+          return profilesFuture
+              .compose(profiles -> retrieveBatch(targetProfile, items, vertxContext)
+                  .compose(found -> forEachBounded(items, BATCH_IMPORT_PARALLEL, item -> {
+                    JsonObject batched = found.get(item.getExternalIdentifier());
+                    Future<JsonObject> record = batched != null
+                        ? Future.succeededFuture(batched.copy())
+                        : RecordRetriever.getRecordAsJsonObject(profiles,
+                            item.getExternalIdentifier(), sharedCache, vertxContext);
+                    return record.map(marc -> {
+                      if (overlay) {
+                        plan.embed(marc, item.getInternalIdentifier());
+                      }
+                      return marc;
+                    });
+                  })))
+              .transform(results -> importBatch(items, results, importer, setup, overlay,
+                  jobProfile));
+        })
+        .onSuccess(imported -> {
+          entity.setTotalImported(imported);
+          asyncResultHandler.handle(
+              Future.succeededFuture(
+                  PostCopycatImportsBatchResponse.respond200WithApplicationJson(entity)));
+        })
+        .onFailure(cause ->
+            asyncResultHandler.handle(
+                Future.succeededFuture(
+                    PostCopycatImportsBatchResponse.respond400WithApplicationJson(
+                        createErrors(cause)))));
+  }
+
+  /**
+   * Retrieve records of batch from target with batched searches.
+   *
+   * <p>Identifiers absent from the result, for example because the target has no record
+   * or the record could not be matched to its identifier, are to be retrieved one by one.
+   *
+   * @param profile target profile
+   * @param items batch items
+   * @param vertxContext Vert.x context
+   * @return async result, always succeeding, with records by external identifier
+   */
+  static Future<Map<String, JsonObject>> retrieveBatch(CopyCatProfile profile,
+      List<CopyCatBatchItem> items, Context vertxContext) {
+
+    List<String> externalIds = items.stream()
+        .map(CopyCatBatchItem::getExternalIdentifier)
+        .distinct()
+        .toList();
+    if (externalIds.size() < 2 || SruRetriever.isSru(profile)) {
+      return Future.succeededFuture(Collections.emptyMap());
+    }
+    return RecordRetriever.getRecordsAsJsonObjects(profile, externalIds, vertxContext)
+        .recover(e -> {
+          log.warn("Batched search failed; searching for each identifier: {}", e.getMessage());
+          return Future.succeededFuture(Collections.emptyMap());
+        });
+  }
+
+  private static Future<Integer> importBatch(List<CopyCatBatchItem> items,
+      AsyncResult<List<Future<JsonObject>>> results, RecordImporter importer,
+      Future<Void> setup, boolean overlay, String jobProfile) {
+
+    // job setup runs while records are retrieved; wait for it either way
+    return setup.transform(x -> {
+      if (results.failed()) {
+        return discard(importer, results.cause());
+      }
+      List<JsonObject> records = new ArrayList<>();
+      List<CopyCatBatchItem> retrieved = new ArrayList<>();
+      List<String> instances = new ArrayList<>();
+      for (int i = 0; i < items.size(); i++) {
+        CopyCatBatchItem item = items.get(i);
+        Future<JsonObject> result = results.result().get(i);
+        if (result.succeeded()) {
+          retrieved.add(item);
+          records.add(result.result());
+          if (overlay) {
+            instances.add(item.getInternalIdentifier());
+          }
+        } else {
+          item.setStatus(CopyCatBatchItem.Status.FAILED);
+          item.setMessage(result.cause().getMessage());
+        }
+      }
+      log.info("Retrieved {} of {} records for batch import", records.size(), items.size());
+      if (records.isEmpty()) {
+        return discard(importer, null).map(0);
+      }
+      if (setup.failed()) {
+        return discard(importer, setup.cause());
+      }
+      importer.setTotal(records.size());
+      // setup was skipped if all records were expected to fail, but some were retrieved
+      Future<Void> ready = importer.hasJob() ? Future.succeededFuture()
+          : importer.begin(jobProfile);
+      return ready
+          .compose(y -> importer.post(records, true))
+          .compose(y -> importer.end(instances))
+          .map(y -> {
+            retrieved.forEach(item -> item.setStatus(CopyCatBatchItem.Status.IMPORTED));
+            return records.size();
+          });
+    });
+  }
+
+  private static <T> Future<T> discard(RecordImporter importer, Throwable cause) {
+    // a job is discarded even if assigning its job profile failed
+    Future<Void> cleanup = importer.hasJob() ? importer.discard() : Future.succeededFuture();
+    return cleanup.transform(x -> cause == null
+        ? Future.succeededFuture() : Future.failedFuture(cause));
+  }
+
+  static String trimPunctuation(String value) {
+    return value.replaceAll("[\\s/:;,=]+$", "").trim();
+  }
+
+  static String firstValue(JsonObject marc, String... fieldSpecs) {
+    for (String fieldSpec : fieldSpecs) {
+      List<String> values = JsonMarc.getValues(marc, fieldSpec);
+      if (!values.isEmpty()) {
+        return trimPunctuation(values.get(0));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Check that record is the hit that was chosen.
+   *
+   * @param marc record at position
+   * @param hitIdentifier identifier of chosen hit, as given by {@link #toHit}; null for
+   *     no check
+   * @param position position of record in result set
+   * @param resultSetId result set identifier
+   * @return async result with record; RecordNotFoundException failure if the record has
+   *     another identifier
+   */
+  static Future<JsonObject> checkHit(JsonObject marc, String hitIdentifier, long position,
+      String resultSetId) {
+
+    if (hitIdentifier == null) {
+      return Future.succeededFuture(marc);
+    }
+    String identifier = firstValue(marc, "001");
+    if (!hitIdentifier.equals(identifier)) {
+      return Future.failedFuture(new RecordNotFoundException("Record at position " + position
+          + " in result set " + resultSetId + " has identifier " + identifier + ", not "
+          + hitIdentifier));
+    }
+    return Future.succeededFuture(marc);
+  }
+
+  static CopyCatHit toHit(long position, JsonObject marc) {
+    CopyCatHit hit = new CopyCatHit().withPosition((int) position);
+    if (marc == null) {
+      return hit;
+    }
+    String title = firstValue(marc, "245a");
+    String subtitle = firstValue(marc, "245b");
+    if (title != null && subtitle != null) {
+      title = title + " : " + subtitle;
+    }
+    return hit
+        .withIdentifier(firstValue(marc, "001"))
+        .withTitle(title)
+        .withAuthor(firstValue(marc, "100a", "110a", "111a"))
+        .withPublisher(firstValue(marc, "260b", "264b"))
+        .withDate(firstValue(marc, "260c", "264c"))
+        .withIsbns(JsonMarc.getValues(marc, "020a").stream()
+            .map(CopycatImpl::trimPunctuation).toList());
+  }
+
+  @Validate
+  @Override
+  public void getCopycatSearch(String profileId, String externalIdentifier, String resultSetId,
+                               int offset, int limit, Map<String, String> okapiHeaders,
+                               Handler<AsyncResult<Response>> asyncResultHandler,
+                               Context vertxContext) {
+
+    String tenant = TenantTool.tenantId(okapiHeaders);
+    PgUtil.postgresClient(vertxContext, okapiHeaders).getById(PROFILE_TABLE, profileId)
+        .compose(res -> {
+          if (res == null) {
+            return Future.failedFuture(new IllegalArgumentException("No such profileId "
+                + profileId));
+          }
+          CopyCatProfile profile = res.mapTo(CopyCatProfile.class);
+          if (resultSetId != null) {
+            return RecordRetriever.getResultSet(profile, resultSetId, tenant, vertxContext);
+          }
+          if (externalIdentifier == null) {
+            return Future.failedFuture(new IllegalArgumentException(
+                "One of externalIdentifier or resultSetId must be given"));
+          }
+          return RecordRetriever.openResultSet(profile, externalIdentifier, tenant, vertxContext);
+        })
+        .compose(cursor -> RecordRetriever.getResultSetRecords(cursor, offset, limit, vertxContext)
+            .map(records -> {
+              List<CopyCatHit> hits = new ArrayList<>();
+              for (int i = 0; i < records.size(); i++) {
+                hits.add(toHit(offset + (long) i, records.get(i)));
+              }
+              return new CopyCatSearch()
+                  .withResultSetId(cursor.getId())
+                  .withHits(hits)
+                  .withTotalRecords((int) cursor.getHitCount());
+            }))
+        .onSuccess(search ->
+            asyncResultHandler.handle(
+                Future.succeededFuture(
+                    GetCopycatSearchResponse.respond200WithApplicationJson(search))))
+        .onFailure(cause -> {
+          Response response;
+          if (cause instanceof RecordNotFoundException) {
+            response = GetCopycatSearchResponse.respond404WithTextPlain(cause.getMessage());
+          } else if (cause instanceof RecordRetrieverException
+              || cause instanceof IllegalArgumentException) {
+            response = GetCopycatSearchResponse.respond400WithTextPlain(cause.getMessage());
+          } else {
+            log.error(cause.getMessage(), cause);
+            response = GetCopycatSearchResponse.respond500WithTextPlain(cause.getMessage());
+          }
+          asyncResultHandler.handle(Future.succeededFuture(response));
+        });
+  }
+
+  @Validate
+  @Override
+  public void getCopycatTargets(Map<String, String> okapiHeaders,
+                                Handler<AsyncResult<Response>> asyncResultHandler,
+                                Context vertxContext) {
+
+    PgUtil.postgresClient(vertxContext, okapiHeaders)
+        .get(PROFILE_TABLE, CopyCatProfile.class, new Criterion(), false)
+        .onSuccess(results -> {
+          // only report targets of this tenant's profiles
+          Set<String> urls = new TreeSet<>();
+          results.getResults().forEach(profile -> {
+            String url = RecordRetriever.targetUrl(profile);
+            if (url != null) {
+              urls.add(url);
+            }
+          });
+          List<CopyCatTarget> targets = new ArrayList<>();
+          for (String url : urls) {
+            CircuitBreaker.Status status = RecordRetriever.getCircuitBreaker().getStatus(url);
+            targets.add(new CopyCatTarget()
+                .withUrl(url)
+                .withState(status.getState().name())
+                .withFailures(status.getFailures())
+                .withRetryAfter((int) ((status.getRetryAfter() + 999) / 1000)));
+          }
+          asyncResultHandler.handle(
+              Future.succeededFuture(
+                  GetCopycatTargetsResponse.respond200WithApplicationJson(
+                      new CopyCatTargets().withTargets(targets).withTotalRecords(targets.size()))));
+        })
+        .onFailure(cause -> {
+          log.error(cause.getMessage(), cause);
+          asyncResultHandler.handle(
+              Future.succeededFuture(
+                  GetCopycatTargetsResponse.respond500WithTextPlain(cause.getMessage())));
+        });
+  }
+
+  static void invalidate(String profileId, Map<String, String> okapiHeaders,
+                         Context vertxContext) {
+    RecordRetriever.invalidate(profileId);
+    if (SharedRecordCache.isEnabled()) {
+      new SharedRecordCache(PgUtil.postgresClient(vertxContext, okapiHeaders),
+          TenantTool.tenantId(okapiHeaders))
+          .invalidate(profileId)
+          .onFailure(e -> log.warn("Invalidating shared record cache failed: {}",
+              e.getMessage(), e));
+    }
+  }
+
   @Validate
   @Override
   public void postCopycatProfiles(CopyCatProfile entity,
                                   Map<String, String> okapiHeaders,
                                   Handler<AsyncResult<Response>> asyncResultHandler,
                                   Context vertxContext) {
+    try {
+      ProfilePlan.validate(entity);
+    } catch (IllegalArgumentException e) {
+      asyncResultHandler.handle(
+          Future.succeededFuture(
+              PostCopycatProfilesResponse.respond400WithTextPlain(e.getMessage())));
+      return;
+    }
     validateAllowedJobProfileIds(entity);
 
     PgUtil.post(PROFILE_TABLE, entity, okapiHeaders, vertxContext,
@@ -233,6 +770,15 @@ public class CopycatImpl implements org.folio.rest.jaxrs.resource.Copycat {
                                      Handler<AsyncResult<Response>> asyncResultHandler,
                                      Context vertxContext) {
 
+    try {
+      ProfilePlan.validate(entity);
+    } catch (IllegalArgumentException e) {
+      asyncResultHandler.handle(
+          Future.succeededFuture(
+              PutCopycatProfilesByIdResponse.respond400WithTextPlain(e.getMessage())));
+      return;
+    }
+    invalidate(id, okapiHeaders, vertxContext);
     PgUtil.put(PROFILE_TABLE, entity, id, okapiHeaders, vertxContext,
         PutCopycatProfilesByIdResponse.class, asyncResultHandler);
   }
@@ -243,6 +789,7 @@ public class CopycatImpl implements org.folio.rest.jaxrs.resource.Copycat {
                                         Handler<AsyncResult<Response>> asyncResultHandler,
                                         Context vertxContext) {
 
+    invalidate(id, okapiHeaders, vertxContext);
     PgUtil.deleteById(PROFILE_TABLE, id, okapiHeaders, vertxContext,
         DeleteCopycatProfilesByIdResponse.class, asyncResultHandler);
   }
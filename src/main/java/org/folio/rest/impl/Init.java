@@ -5,8 +5,20 @@ import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.folio.copycat.Config;
+import org.folio.copycat.ImportJobStore;
+import org.folio.copycat.RecordImporter;
+import org.folio.copycat.RecordRetriever;
+import org.folio.copycat.SharedRecordCache;
+import org.folio.copycat.Warmup;
+import org.folio.rest.jaxrs.model.CopyCatProfile;
+import org.folio.rest.persist.PostgresClient;
 import org.folio.rest.resource.interfaces.InitAPI;
 import org.yaz4j.Connection;
 
@@ -19,6 +31,126 @@ public class Init implements InitAPI {
     log.info("Loading yaz4j");
     Connection con = new Connection("localhost:9999", 0);
     con.close();
+    // close pooled Z39.50 connections before the targets drop them
+    long interval = Config.getInt("COPYCAT_POOL_EVICT_INTERVAL", 30) * 1000L;
+    vertx.setPeriodic(interval, id -> {
+      RecordImporter.evictJobExecutions();
+      vertx.executeBlocking(() -> RecordRetriever.evictIdleConnections()
+          + RecordRetriever.evictResultSets(), false);
+    });
+    if (SharedRecordCache.isEnabled()) {
+      long purgeInterval = Config.getInt("COPYCAT_SHARED_CACHE_PURGE_INTERVAL", 300) * 1000L;
+      vertx.setPeriodic(purgeInterval, id -> purgeSharedCache(vertx));
+    }
+    long jobPurgeInterval = Config.getInt("COPYCAT_IMPORT_JOB_PURGE_INTERVAL", 3600) * 1000L;
+    vertx.setPeriodic(jobPurgeInterval, id -> purgeImportJobs(vertx));
+    if (Warmup.isEnabled()) {
+      // module is ready without waiting for this; first imports are just slower until done
+      warmUpTenants(vertx, context);
+    }
     handler.handle(Future.succeededFuture(true));
   }
+
+  /**
+   * Get schemas of tenants that have the module enabled.
+   *
+   * @param postgresClient client for module
+   * @param table table that the schemas must have
+   * @return async result with schema names
+   */
+  static Future<List<String>> tenantSchemas(PostgresClient postgresClient, String table) {
+    String suffix = "_" + PostgresClient.getModuleName();
+    return postgresClient.execute("SELECT schemaname FROM pg_catalog.pg_tables"
+            + " WHERE tablename = $1", Tuple.of(table))
+        .map(rows -> {
+          List<String> schemas = new ArrayList<>();
+          for (Row row : rows) {
+            if (row.getString(0).endsWith(suffix)) {
+              schemas.add(row.getString(0));
+            }
+          }
+          return schemas;
+        });
+  }
+
+  /**
+   * Warm up for the profiles of all tenants that have the module enabled.
+   *
+   * @param vertx Vert.x handle
+   * @param context Vert.x context
+   * @return async result; failure if tenants or profiles could not be read
+   */
+  static Future<Void> warmUpTenants(Vertx vertx, Context context) {
+    PostgresClient postgresClient = PostgresClient.getInstance(vertx);
+    return tenantSchemas(postgresClient, CopycatImpl.PROFILE_TABLE)
+        .compose(schemas -> {
+          List<Future<Void>> futures = new ArrayList<>();
+          for (String schema : schemas) {
+            futures.add(postgresClient.select("SELECT jsonb FROM \"" + schema + "\"."
+                    + CopycatImpl.PROFILE_TABLE)
+                .compose(rows -> {
+                  List<CopyCatProfile> profiles = new ArrayList<>();
+                  rows.forEach(row -> profiles.add(row.getJsonObject(0)
+                      .mapTo(CopyCatProfile.class)));
+                  return Warmup.warmUp(context, profiles);
+                }));
+          }
+          return Future.all(futures).<Void>mapEmpty();
+        })
+        .onFailure(e -> log.warn("Warm-up failed: {}", e.getMessage(), e));
+  }
+
+  /**
+   * Remove expired records from shared record caches of all tenants.
+   *
+   * @param vertx Vert.x handle
+   * @return async result with number of records removed
+   */
+  static Future<Integer> purgeSharedCache(Vertx vertx) {
+    PostgresClient postgresClient = PostgresClient.getInstance(vertx);
+    int batchSize = Config.getInt("COPYCAT_SHARED_CACHE_PURGE_BATCH", 1000);
+    return tenantSchemas(postgresClient, SharedRecordCache.TABLE)
+        .compose(schemas -> {
+          // one tenant at a time, to keep the load on the database low
+          Future<Integer> future = Future.succeededFuture(0);
+          for (String schema : schemas) {
+            future = future.compose(total ->
+                SharedRecordCache.purge(postgresClient, "\"" + schema + "\"", batchSize)
+                    .map(count -> total + count));
+          }
+          return future;
+        })
+        .onSuccess(total -> {
+          if (total > 0) {
+            log.info("Removed {} expired records from shared record cache", total);
+          }
+        })
+        .onFailure(e -> log.warn("Purging shared record cache failed: {}", e.getMessage(), e));
+  }
+
+  /**
+   * Remove expired import jobs of all tenants.
+   *
+   * @param vertx Vert.x handle
+   * @return async result with number of jobs removed
+   */
+  static Future<Integer> purgeImportJobs(Vertx vertx) {
+    PostgresClient postgresClient = PostgresClient.getInstance(vertx);
+    return tenantSchemas(postgresClient, ImportJobStore.TABLE)
+        .compose(schemas -> {
+          Future<Integer> future = Future.succeededFuture(0);
+          for (String schema : schemas) {
+            future = future.compose(total ->
+                ImportJobStore.purge(postgresClient, "\"" + schema + "\"")
+                    .map(count -> total + count));
+          }
+          return future;
+        })
+        .onSuccess(total -> {
+          if (total > 0) {
+            log.info("Removed {} expired import jobs", total);
+          }
+        })
+        .onFailure(e -> log.warn("Purging import jobs failed: {}", e.getMessage(), e));
+  }
 }
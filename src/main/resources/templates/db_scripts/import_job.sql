@@ -0,0 +1,2 @@
+CREATE INDEX IF NOT EXISTS import_job_expires_idx
+  ON ${myuniversity}_${mymodule}.import_job (((jsonb->>'expires')::bigint));
@@ -0,0 +1,5 @@
+CREATE INDEX IF NOT EXISTS record_cache_expires_idx
+  ON ${myuniversity}_${mymodule}.record_cache (((jsonb->>'expires')::bigint));
+
+CREATE INDEX IF NOT EXISTS record_cache_profileid_idx
+  ON ${myuniversity}_${mymodule}.record_cache ((jsonb->>'profileId'));
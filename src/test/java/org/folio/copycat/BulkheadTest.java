@@ -0,0 +1,58 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import org.junit.jupiter.api.Test;
+
+class BulkheadTest {
+
+  @Test
+  void testLimits() {
+    Bulkhead bulkhead = new Bulkhead(1, 1);
+    Promise<String> p1 = Promise.promise();
+    Promise<String> p2 = Promise.promise();
+    Future<String> f1 = bulkhead.submit("a", p1::future);
+    Future<String> f2 = bulkhead.submit("a", p2::future);
+    Future<String> f3 = bulkhead.submit("a", () -> Future.succeededFuture("3"));
+    assertThat(bulkhead.getActive("a")).isEqualTo(1);
+    assertThat(bulkhead.getQueued("a")).isEqualTo(1);
+    assertThat(f3.failed()).isTrue();
+    assertThat(f3.cause()).isInstanceOf(RecordRetrieverException.class)
+        .hasMessage("Too many concurrent requests for a. Try again later");
+
+    // other key is not affected
+    Future<String> f4 = bulkhead.submit("b", () -> Future.succeededFuture("4"));
+    assertThat(f4.result()).isEqualTo("4");
+
+    p1.complete("1");
+    assertThat(f1.result()).isEqualTo("1");
+    assertThat(f2.isComplete()).isFalse();
+    assertThat(bulkhead.getActive("a")).isEqualTo(1);
+    assertThat(bulkhead.getQueued("a")).isZero();
+
+    p2.fail("2");
+    assertThat(f2.cause()).hasMessage("2");
+    assertThat(bulkhead.getActive("a")).isZero();
+  }
+
+  @Test
+  void testTaskThrows() {
+    Bulkhead bulkhead = new Bulkhead(1, 0);
+    Future<String> f1 = bulkhead.submit("a", () -> {
+      throw new IllegalStateException("x");
+    });
+    assertThat(f1.cause()).isInstanceOf(IllegalStateException.class);
+    assertThat(bulkhead.getActive("a")).isZero();
+  }
+
+  @Test
+  void testNoLimit() {
+    Bulkhead bulkhead = new Bulkhead(0, 0);
+    Promise<String> p1 = Promise.promise();
+    bulkhead.submit("a", p1::future);
+    assertThat(bulkhead.submit("a", () -> Future.succeededFuture("2")).result()).isEqualTo("2");
+    assertThat(bulkhead.getActive("a")).isZero();
+  }
+}
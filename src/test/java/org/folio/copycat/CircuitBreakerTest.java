@@ -0,0 +1,58 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+  @Test
+  void testOpenClose() throws InterruptedException {
+    CircuitBreaker breaker = new CircuitBreaker(2, 100);
+    assertThat(breaker.tryAcquire("a")).isTrue();
+    assertThat(breaker.getStatus("a").getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    breaker.onFailure("a");
+    assertThat(breaker.isOpen("a")).isFalse();
+    assertThat(breaker.tryAcquire("a")).isTrue();
+    breaker.onFailure("a");
+    assertThat(breaker.isOpen("a")).isTrue();
+    assertThat(breaker.tryAcquire("a")).isFalse();
+    assertThat(breaker.tryAcquire("b")).isTrue();
+    CircuitBreaker.Status status = breaker.getStatus("a");
+    assertThat(status.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    assertThat(status.getFailures()).isEqualTo(2);
+    assertThat(status.getRetryAfter()).isPositive();
+
+    Thread.sleep(150);
+    assertThat(breaker.isOpen("a")).isFalse();
+    assertThat(breaker.tryAcquire("a")).isTrue(); // probe
+    assertThat(breaker.getStatus("a").getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    assertThat(breaker.tryAcquire("a")).isFalse(); // only one probe
+    breaker.onSuccess("a");
+    assertThat(breaker.getStatus("a").getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    assertThat(breaker.getStatus("a").getFailures()).isZero();
+    assertThat(breaker.tryAcquire("a")).isTrue();
+  }
+
+  @Test
+  void testProbeFails() throws InterruptedException {
+    CircuitBreaker breaker = new CircuitBreaker(1, 50);
+    breaker.onFailure("a");
+    assertThat(breaker.tryAcquire("a")).isFalse();
+    Thread.sleep(100);
+    assertThat(breaker.tryAcquire("a")).isTrue();
+    breaker.onFailure("a");
+    assertThat(breaker.getStatus("a").getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    assertThat(breaker.tryAcquire("a")).isFalse();
+    assertThat(breaker.getStatus()).extracting(CircuitBreaker.Status::getKey).containsExactly("a");
+  }
+
+  @Test
+  void testDisabled() {
+    CircuitBreaker breaker = new CircuitBreaker(0, 1000);
+    breaker.onFailure("a");
+    breaker.onFailure("a");
+    assertThat(breaker.isOpen("a")).isFalse();
+    assertThat(breaker.tryAcquire("a")).isTrue();
+  }
+}
@@ -0,0 +1,36 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.folio.okapi.testing.UtilityClassTester;
+import org.junit.jupiter.api.Test;
+
+class ConfigTest {
+
+  @Test
+  void constructor() {
+    UtilityClassTester.assertUtilityClass(Config.class);
+  }
+
+  @Test
+  void testGetInt() {
+    String name = "COPYCAT_CONFIG_TEST";
+    assertThat(Config.getInt(name, 3)).isEqualTo(3);
+    System.setProperty(name, " 5 ");
+    assertThat(Config.getInt(name, 3)).isEqualTo(5);
+    System.setProperty(name, "x");
+    assertThat(Config.getInt(name, 3)).isEqualTo(3);
+    System.clearProperty(name);
+  }
+
+  @Test
+  void testGetString() {
+    String name = "COPYCAT_CONFIG_TEST_STRING";
+    assertThat(Config.getString(name, "a")).isEqualTo("a");
+    System.setProperty(name, "b");
+    assertThat(Config.getString(name, "a")).isEqualTo("b");
+    System.setProperty(name, " ");
+    assertThat(Config.getString(name, "a")).isEqualTo("a");
+    System.clearProperty(name);
+  }
+}
@@ -0,0 +1,108 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+import org.yaz4j.Connection;
+
+class ConnectionPoolTest {
+
+  @Test
+  void testBorrowRelease() {
+    ConnectionPool pool = new ConnectionPool(2, 60000);
+    assertThat(pool.borrow("a")).isNull();
+
+    ConnectionPool.PooledConnection c1 = pool.wrap("a", new Connection("localhost", 210));
+    ConnectionPool.PooledConnection c2 = pool.wrap("a", new Connection("localhost", 210));
+    ConnectionPool.PooledConnection c3 = pool.wrap("a", new Connection("localhost", 210));
+    pool.release(c1);
+    pool.release(c2);
+    pool.release(c3); // pool full, so closed
+    assertThat(pool.getIdleCount("a")).isEqualTo(2);
+    assertThat(pool.getIdleCount("b")).isZero();
+    assertThat(pool.borrow("b")).isNull();
+
+    // most recently used first
+    assertThat(pool.borrow("a")).isSameAs(c2);
+    assertThat(pool.borrow("a")).isSameAs(c1);
+    assertThat(pool.borrow("a")).isNull();
+    pool.discard(c1);
+    pool.discard(c2);
+  }
+
+  @Test
+  void testDisabled() {
+    ConnectionPool pool = new ConnectionPool(0, 60000);
+    pool.release(pool.wrap("a", new Connection("localhost", 210)));
+    assertThat(pool.getIdleCount("a")).isZero();
+    assertThat(pool.borrow("a")).isNull();
+  }
+
+  @Test
+  void testIdleTimeout() {
+    ConnectionPool pool = new ConnectionPool(2, 0);
+    pool.release(pool.wrap("a", new Connection("localhost", 210)));
+    assertThat(pool.getIdleCount("a")).isEqualTo(1);
+    assertThat(pool.borrow("a")).isNull();
+    assertThat(pool.getIdleCount("a")).isZero();
+
+    pool.release(pool.wrap("a", new Connection("localhost", 210)));
+    pool.release(pool.wrap("b", new Connection("localhost", 210)));
+    assertThat(pool.evictIdle()).isEqualTo(2);
+    assertThat(pool.evictIdle()).isZero();
+  }
+
+  @Test
+  void testClear() {
+    ConnectionPool pool = new ConnectionPool(2, 60000);
+    pool.release(pool.wrap("a", new Connection("localhost", 210)));
+    pool.release(pool.wrap("b", new Connection("localhost", 210)));
+    assertThat(pool.evictIdle()).isZero();
+    pool.clear();
+    assertThat(pool.getIdleCount("a")).isZero();
+    assertThat(pool.getIdleCount("b")).isZero();
+  }
+
+  @Test
+  void testMaxTotal() {
+    ConnectionPool pool = new ConnectionPool(2, 60000, 2);
+    pool.reserve("a", 0);
+    ConnectionPool.PooledConnection c1 = pool.wrap("a", new Connection("localhost", 210));
+    pool.reserve("a", 0);
+    ConnectionPool.PooledConnection c2 = pool.wrap("a", new Connection("localhost", 210));
+    assertThat(pool.getOpenCount("a")).isEqualTo(2);
+    assertThatThrownBy(() -> pool.reserve("a", 10))
+        .isInstanceOf(RecordRetrieverException.class)
+        .hasMessage("All 2 connections to the target are in use");
+
+    // other targets are not limited by a
+    pool.reserve("b", 0);
+    pool.cancel("b");
+    assertThat(pool.getOpenCount("b")).isZero();
+
+    // idle connection is closed to make room
+    pool.release(c1);
+    pool.reserve("a", 0);
+    assertThat(pool.getIdleCount("a")).isZero();
+    assertThat(pool.getOpenCount("a")).isEqualTo(2);
+    pool.cancel("a");
+
+    pool.discard(c2);
+    assertThat(pool.getOpenCount("a")).isZero();
+    pool.reserve("a", 0);
+    assertThat(pool.getOpenCount("a")).isEqualTo(1);
+  }
+
+  @Test
+  void testMaxTotalWait() throws InterruptedException {
+    ConnectionPool pool = new ConnectionPool(0, 60000, 1);
+    pool.reserve("a", 0);
+    ConnectionPool.PooledConnection c1 = pool.wrap("a", new Connection("localhost", 210));
+    Thread thread = new Thread(() -> pool.release(c1)); // pool disabled, so closed
+    thread.start();
+    pool.reserve("a", 10000);
+    thread.join();
+    assertThat(pool.getOpenCount("a")).isEqualTo(1);
+  }
+}
@@ -0,0 +1,71 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class JobExecutionPoolTest {
+
+  @Test
+  void testDisabled() {
+    JobExecutionPool<String> pool = new JobExecutionPool<>(0, 1000, job -> { });
+    assertThat(pool.isEnabled()).isFalse();
+    assertThat(pool.reserve("a")).isZero();
+    assertThat(pool.take("a")).isNull();
+  }
+
+  @Test
+  void testReserveTake() {
+    List<String> expired = new ArrayList<>();
+    JobExecutionPool<String> pool = new JobExecutionPool<>(2, 60000, expired::add);
+    assertThat(pool.isEnabled()).isTrue();
+    assertThat(pool.reserve("a")).isEqualTo(2);
+    // pending jobs count
+    assertThat(pool.reserve("a")).isZero();
+    assertThat(pool.take("a")).isNull();
+
+    pool.add("a", "job1");
+    pool.cancel("a");
+    assertThat(pool.size("a")).isEqualTo(1);
+    assertThat(pool.reserve("a")).isEqualTo(1);
+    pool.add("a", "job2");
+    assertThat(pool.reserve("a")).isZero();
+
+    assertThat(pool.take("b")).isNull();
+    assertThat(pool.take("a")).isEqualTo("job1");
+    assertThat(pool.take("a")).isEqualTo("job2");
+    assertThat(pool.take("a")).isNull();
+    assertThat(pool.evictExpired()).isZero();
+    assertThat(expired).isEmpty();
+  }
+
+  @Test
+  void testExpire() {
+    List<String> expired = new ArrayList<>();
+    JobExecutionPool<String> pool = new JobExecutionPool<>(3, 0, expired::add);
+    pool.reserve("a");
+    pool.add("a", "job1");
+    pool.add("a", "job2");
+    assertThat(pool.take("a")).isNull();
+    assertThat(expired).containsExactly("job1", "job2");
+
+    pool.reserve("b");
+    pool.add("b", "job3");
+    assertThat(pool.evictExpired()).isEqualTo(1);
+    assertThat(expired).containsExactly("job1", "job2", "job3");
+    assertThat(pool.size("b")).isZero();
+  }
+
+  @Test
+  void testNotAfter() {
+    List<String> expired = new ArrayList<>();
+    JobExecutionPool<String> pool = new JobExecutionPool<>(3, 60000, expired::add);
+    pool.reserve("a");
+    pool.add("a", "job1", System.currentTimeMillis() - 1);
+    pool.add("a", "job2", System.currentTimeMillis() + 60000);
+    assertThat(pool.take("a")).isEqualTo("job2");
+    assertThat(expired).containsExactly("job1");
+  }
+}
@@ -0,0 +1,71 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares allocation and time of decoding a large JSON MARC record via String, via
+ * Buffer and directly from bytes. Run with:
+ * {@code mvn test -Dtest=JsonDecodeBenchmarkTest -Dbenchmark=true}.
+ */
+class JsonDecodeBenchmarkTest {
+  private static final Logger log = LogManager.getLogger(JsonDecodeBenchmarkTest.class);
+  private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 2000);
+
+  @BeforeAll
+  static void beforeAll() {
+    Assumptions.assumeTrue(Boolean.getBoolean("benchmark"));
+  }
+
+  static byte[] largeRecord(int fields) {
+    JsonArray fieldList = new JsonArray();
+    for (int i = 0; i < fields; i++) {
+      JsonArray subfields = new JsonArray()
+          .add(new JsonObject().put("a", "Field " + i + " æøå 東京"))
+          .add(new JsonObject().put("b", "Lorem ipsum dolor sit amet, consectetur adipiscing"));
+      fieldList.add(new JsonObject().put(String.format("%03d", 500 + i % 400),
+          new JsonObject().put("ind1", " ").put("ind2", "0").put("subfields", subfields)));
+    }
+    return new JsonObject()
+        .put("leader", "01234cam a2200349 a 4500")
+        .put("fields", fieldList)
+        .encode().getBytes(StandardCharsets.UTF_8);
+  }
+
+  static void measure(String name, byte[] buf, Function<byte[], JsonObject> decoder) {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().threadId();
+    for (int i = 0; i < ITERATIONS; i++) {
+      decoder.apply(buf); // warm-up
+    }
+    long allocated = threads.getThreadAllocatedBytes(threadId);
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      assertThat(decoder.apply(buf).getJsonArray("fields")).isNotEmpty();
+    }
+    long elapsed = System.nanoTime() - start;
+    allocated = threads.getThreadAllocatedBytes(threadId) - allocated;
+    log.info("{}: {} bytes record, {} bytes allocated/op, {} us/op", name, buf.length,
+        allocated / ITERATIONS, elapsed / 1000 / ITERATIONS);
+  }
+
+  @Test
+  void decode() {
+    byte[] buf = largeRecord(Integer.getInteger("benchmark.fields", 2000));
+    measure("string", buf, b -> new JsonObject(new String(b, StandardCharsets.UTF_8)));
+    measure("buffer", buf, b -> new JsonObject(Buffer.buffer(b)));
+    measure("bytes", buf, RecordRetriever::decodeJson);
+  }
+}
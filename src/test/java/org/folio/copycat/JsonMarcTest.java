@@ -106,4 +106,19 @@ public class JsonMarcTest {
         "{\"005\":{\"ind1\":\"1\",\"ind2\":\"0\",\"subfields\":[{\"a\":\"1234\"}]}}");
   }
 
+  @Test
+  void testGetValues() throws IOException {
+    String file = new String(getClass().getClassLoader().getResourceAsStream("marc1.json").readAllBytes());
+    JsonObject marc = new JsonObject(file);
+    assertThat(JsonMarc.getValues(marc, "003")).containsExactly("DLC");
+    assertThat(JsonMarc.getValues(marc, "010a")).containsExactly("   73209622 //r823");
+    assertThat(JsonMarc.getValues(marc, "010z")).isEmpty();
+    assertThat(JsonMarc.getValues(marc, "999")).isEmpty();
+    assertThat(JsonMarc.getValues(marc, null)).contains("DLC", "   73209622 //r823");
+    assertThat(JsonMarc.getValues(new JsonObject(), null)).isEmpty();
+
+    var exception = assertThrows(IllegalArgumentException.class,
+        () ->  JsonMarc.getValues(marc, "01"));
+    assertThat(exception.getMessage()).isEqualTo("fieldSpec must be 3 or 4 characters (3+subfield)");
+  }
 }
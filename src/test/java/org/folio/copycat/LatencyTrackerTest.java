@@ -0,0 +1,49 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyTrackerTest {
+
+  @Test
+  void testPercentile() {
+    LatencyTracker tracker = new LatencyTracker(100, 10);
+    assertThat(tracker.percentile("a", 95)).isEqualTo(-1);
+    for (int i = 1; i <= 9; i++) {
+      tracker.record("a", i * 10L);
+    }
+    assertThat(tracker.percentile("a", 95)).isEqualTo(-1);
+    tracker.record("a", 100);
+    assertThat(tracker.percentile("a", 50)).isEqualTo(50);
+    assertThat(tracker.percentile("a", 95)).isEqualTo(100);
+    assertThat(tracker.percentile("a", 0)).isEqualTo(10);
+    assertThat(tracker.percentile("b", 50)).isEqualTo(-1);
+    tracker.clear();
+    assertThat(tracker.percentile("a", 50)).isEqualTo(-1);
+  }
+
+  @Test
+  void testWindow() {
+    LatencyTracker tracker = new LatencyTracker(4, 2);
+    tracker.record("a", 5000);
+    for (int i = 0; i < 4; i++) {
+      tracker.record("a", 100);
+    }
+    // oldest response time is no longer considered
+    assertThat(tracker.percentile("a", 99)).isEqualTo(100);
+  }
+
+  @Test
+  void testTimeout() {
+    LatencyTracker tracker = new LatencyTracker(10, 2);
+    assertThat(tracker.timeout("a", 2, 15)).isEqualTo(15);
+    tracker.record("a", 100);
+    tracker.record("a", 300);
+    assertThat(tracker.timeout("a", 2, 15)).isEqualTo(2);
+    tracker.record("a", 1500);
+    assertThat(tracker.timeout("a", 2, 15)).isEqualTo(5);
+    tracker.record("a", 9000);
+    assertThat(tracker.timeout("a", 2, 15)).isEqualTo(15);
+  }
+}
@@ -0,0 +1,58 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.io.StringReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.folio.okapi.testing.UtilityClassTester;
+import org.junit.jupiter.api.Test;
+
+class MarcXmlTest {
+
+  static final String RECORD = "<record xmlns=\"http://www.loc.gov/MARC21/slim\">"
+      + "<leader>00714cam a2200205 a 4500</leader>"
+      + "<controlfield tag=\"001\">12345</controlfield>"
+      + "<datafield tag=\"245\" ind1=\"1\" ind2=\"0\">"
+      + "<subfield code=\"a\">K&#248;benhavn</subfield>"
+      + "<subfield code=\"c\">by me</subfield>"
+      + "</datafield>"
+      + "<datafield tag=\"020\" ind1=\" \" ind2=\"\">"
+      + "<subfield code=\"a\">0198526636</subfield>"
+      + "</datafield>"
+      + "</record>";
+
+  @Test
+  void constructor() {
+    UtilityClassTester.assertUtilityClass(MarcXml.class);
+  }
+
+  @Test
+  void testToJson() throws XMLStreamException {
+    XMLStreamReader reader = XMLInputFactory.newInstance()
+        .createXMLStreamReader(new StringReader(RECORD + "<after/>"));
+    reader.nextTag();
+    JsonObject marc = MarcXml.toJson(reader);
+    assertThat(reader.getEventType()).isEqualTo(XMLStreamConstants.END_ELEMENT);
+    assertThat(reader.getLocalName()).isEqualTo("record");
+    assertThat(marc).isEqualTo(new JsonObject()
+        .put("leader", "00714cam a2200205 a 4500")
+        .put("fields", new JsonArray()
+            .add(new JsonObject().put("001", "12345"))
+            .add(new JsonObject().put("245", new JsonObject()
+                .put("ind1", "1")
+                .put("ind2", "0")
+                .put("subfields", new JsonArray()
+                    .add(new JsonObject().put("a", "København"))
+                    .add(new JsonObject().put("c", "by me")))))
+            .add(new JsonObject().put("020", new JsonObject()
+                .put("ind1", " ")
+                .put("ind2", " ")
+                .put("subfields", new JsonArray()
+                    .add(new JsonObject().put("a", "0198526636")))))));
+  }
+}
@@ -0,0 +1,113 @@
+package org.folio.copycat;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetServer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Z39.50 target for tests: accepts Init and answers searches with no hits, after a
+ * delay or never.
+ *
+ * <p>Each PDU is expected to arrive in one piece, which holds for the small requests
+ * of ZOOM on a local connection.
+ */
+class MockTarget {
+  private static final int INIT_REQUEST = 0xB4;
+  private static final int SEARCH_REQUEST = 0xB6;
+
+  /** initResponse: protocol versions 1-3, search and present, result true. */
+  private static final Buffer INIT_RESPONSE = bytes(
+      0xB5, 0x15,
+      0x83, 0x02, 0x05, 0xE0,
+      0x84, 0x02, 0x06, 0xC0,
+      0x85, 0x03, 0x10, 0x00, 0x00,
+      0x86, 0x03, 0x10, 0x00, 0x00,
+      0x8C, 0x01, 0xFF);
+
+  /** searchResponse: no hits, no records, search status true. */
+  private static final Buffer SEARCH_RESPONSE = bytes(
+      0xB7, 0x0C,
+      0x97, 0x01, 0x00,
+      0x98, 0x01, 0x00,
+      0x99, 0x01, 0x01,
+      0x96, 0x01, 0xFF);
+
+  private final Vertx vertx;
+  private final AtomicInteger connections = new AtomicInteger();
+  private final AtomicInteger searches = new AtomicInteger();
+  private volatile long searchDelay;
+  private volatile boolean dropNextSearch;
+  private NetServer server;
+
+  MockTarget(Vertx vertx) {
+    this.vertx = vertx;
+  }
+
+  private static Buffer bytes(int... values) {
+    Buffer buffer = Buffer.buffer(values.length);
+    for (int value : values) {
+      buffer.appendByte((byte) value);
+    }
+    return buffer;
+  }
+
+  /**
+   * Set delay before searches are answered.
+   *
+   * @param millis milliseconds; negative for never
+   */
+  void setSearchDelay(long millis) {
+    searchDelay = millis;
+  }
+
+  /**
+   * Close the connection when the next search arrives, as a target that dropped an
+   * idle session would appear to do.
+   */
+  void dropNextSearch() {
+    dropNextSearch = true;
+  }
+
+  int getConnections() {
+    return connections.get();
+  }
+
+  int getSearches() {
+    return searches.get();
+  }
+
+  Future<Void> start(int port) {
+    return vertx.createNetServer()
+        .connectHandler(socket -> {
+          connections.incrementAndGet();
+          socket.handler(buf -> {
+            int tag = buf.getUnsignedByte(0);
+            if (tag == INIT_REQUEST) {
+              socket.write(INIT_RESPONSE);
+            } else if (tag == SEARCH_REQUEST) {
+              searches.incrementAndGet();
+              long delay = searchDelay;
+              if (dropNextSearch) {
+                dropNextSearch = false;
+                socket.close();
+              } else if (delay == 0) {
+                socket.write(SEARCH_RESPONSE);
+              } else if (delay > 0) {
+                vertx.setTimer(delay, x -> socket.write(SEARCH_RESPONSE));
+              }
+            }
+          });
+        })
+        .listen(port)
+        .map(s -> {
+          server = s;
+          return null;
+        });
+  }
+
+  Future<Void> close() {
+    return server == null ? Future.succeededFuture() : server.close();
+  }
+}
@@ -0,0 +1,46 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class NegativeCacheTest {
+
+  @Test
+  void testGetPut() {
+    NegativeCache cache = new NegativeCache(2);
+    RecordRetrieverException e1 = new RecordNotFoundException("1");
+    RecordRetrieverException e2 = new RecordNotFoundException("2");
+    RecordRetrieverException e3 = new RecordNotFoundException("3");
+    assertThat(cache.get("a")).isNull();
+    cache.put("a", "p1", e1, 60000);
+    cache.put("b", "p1", e2, 60000);
+    assertThat(cache.get("a")).isSameAs(e1);
+    cache.put("c", "p2", e3, 60000); // b is least recently used
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.get("b")).isNull();
+    assertThat(cache.get("c")).isSameAs(e3);
+
+    cache.invalidate("p1");
+    assertThat(cache.get("a")).isNull();
+    assertThat(cache.get("c")).isSameAs(e3);
+  }
+
+  @Test
+  void testExpiry() {
+    NegativeCache cache = new NegativeCache(2);
+    cache.put("a", "p1", new RecordNotFoundException("1"), 0);
+    assertThat(cache.size()).isZero();
+    cache.put("a", "p1", new RecordNotFoundException("1"), 1);
+    RecordCacheTest.await();
+    assertThat(cache.get("a")).isNull();
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  void testDisabled() {
+    NegativeCache cache = new NegativeCache(0);
+    cache.put("a", "p1", new RecordNotFoundException("1"), 60000);
+    assertThat(cache.get("a")).isNull();
+  }
+}
@@ -0,0 +1,104 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class PollPlannerTest {
+
+  @Test
+  void testDefaults() {
+    PollPlanner planner = new PollPlanner(10, 3, 200, 2000, 15000);
+    assertThat(planner.firstWait("a")).isEqualTo(200);
+    assertThat(planner.deadline("a")).isEqualTo(15000);
+    planner.record("a", 500);
+    planner.record("a", 500);
+    // too few completions
+    assertThat(planner.firstWait("a")).isEqualTo(200);
+  }
+
+  @Test
+  void testLearned() {
+    PollPlanner planner = new PollPlanner(10, 3, 200, 2000, 15000);
+    planner.record("a", 400);
+    planner.record("a", 500);
+    planner.record("a", 1000);
+    assertThat(planner.firstWait("a")).isEqualTo(250);
+    assertThat(planner.deadline("a")).isEqualTo(6000);
+    assertThat(planner.firstWait("b")).isEqualTo(200);
+
+    planner.record("b", 5);
+    planner.record("b", 5);
+    planner.record("b", 5);
+    assertThat(planner.firstWait("b")).isEqualTo(20);
+    assertThat(planner.deadline("b")).isEqualTo(6000);
+
+    for (int i = 0; i < 3; i++) {
+      planner.record("c", 10000);
+    }
+    assertThat(planner.firstWait("c")).isEqualTo(2000);
+    assertThat(planner.deadline("c")).isEqualTo(15000);
+  }
+
+  @Test
+  void testRecordFound() {
+    PollPlanner planner = new PollPlanner(10, 3, 200, 2000, 15000);
+    planner.record("a", 0, 400);
+    planner.record("a", 400, 800);
+    planner.record("a", 800, 1600);
+    assertThat(planner.firstWait("a")).isEqualTo(300);
+  }
+
+  @Test
+  void testFirstWaitGoesDown() {
+    PollPlanner planner = new PollPlanner(10, 3, 200, 2000, 15000);
+    for (int i = 0; i < 10; i++) {
+      planner.record("a", 4000);
+    }
+    assertThat(planner.firstWait("a")).isEqualTo(2000);
+    // imports now complete within 10 ms, so the first check finds them
+    long previous = planner.firstWait("a");
+    for (int i = 0; i < 10; i++) {
+      planner.record("a", 0, planner.firstWait("a"));
+    }
+    assertThat(planner.firstWait("a")).isLessThan(previous);
+    for (int i = 0; i < 50; i++) {
+      planner.record("a", 0, planner.firstWait("a"));
+    }
+    assertThat(planner.firstWait("a")).isEqualTo(20);
+  }
+
+  @Test
+  void testDeadlineGrows() {
+    PollPlanner planner = new PollPlanner(10, 3, 200, 2000, 15000);
+    for (int i = 0; i < 10; i++) {
+      planner.record("a", 100);
+    }
+    assertThat(planner.deadline("a")).isEqualTo(6000);
+    // imports got slower; polls that reach the deadline are recorded
+    for (int i = 0; i < 10; i++) {
+      planner.record("a", planner.deadline("a"));
+    }
+    assertThat(planner.deadline("a")).isEqualTo(15000);
+  }
+
+  @Test
+  void testNullTenant() {
+    PollPlanner planner = new PollPlanner(10, 3, 200, 2000, 15000);
+    for (int i = 0; i < 3; i++) {
+      planner.record(null, 10000);
+      planner.record(null, 0, 20000);
+    }
+    assertThat(planner.firstWait(null)).isEqualTo(200);
+    assertThat(planner.deadline(null)).isEqualTo(15000);
+  }
+
+  @Test
+  void testNextWait() {
+    PollPlanner planner = new PollPlanner(10, 3, 200, 2000, 15000);
+    for (int i = 0; i < 100; i++) {
+      assertThat(planner.nextWait(100)).isBetween(100L, 200L);
+      assertThat(planner.nextWait(1500)).isBetween(1000L, 2000L);
+    }
+  }
+}
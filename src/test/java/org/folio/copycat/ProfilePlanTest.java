@@ -0,0 +1,113 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.List;
+import java.util.UUID;
+import org.folio.rest.jaxrs.model.CopyCatProfile;
+import org.folio.rest.jaxrs.model.TargetOptions;
+import org.junit.jupiter.api.Test;
+
+class ProfilePlanTest {
+
+  @Test
+  void testQuery() {
+    ProfilePlan plan = ProfilePlan.of(new CopyCatProfile()
+        .withExternalIdQueryMap("@attrset bib-1 @or @attr 1=7 $identifier @attr 1=12 $identifier"));
+    assertThat(plan.query("123"))
+        .isEqualTo("@attrset bib-1 @or @attr 1=7 123 @attr 1=12 123");
+    assertThat(plan.batchQuery(List.of("1", "2")))
+        .isEqualTo("@attrset bib-1 @or @or @attr 1=7 1 @attr 1=12 1 @or @attr 1=7 2 @attr 1=12 2");
+  }
+
+  @Test
+  void testCachedById() {
+    CopyCatProfile profile = new CopyCatProfile()
+        .withId(UUID.randomUUID().toString())
+        .withUrl("localhost:210/db")
+        .withExternalIdQueryMap("$identifier")
+        .withTargetOptions(new TargetOptions().withAdditionalProperty("timeout", 5));
+    ProfilePlan plan = ProfilePlan.of(profile);
+    assertThat(ProfilePlan.of(profile)).isSameAs(plan);
+    assertThat(plan.getIntOption("timeout", 1)).isEqualTo(5);
+
+    profile.setTargetOptions(new TargetOptions().withAdditionalProperty("timeout", "7"));
+    ProfilePlan modified = ProfilePlan.of(profile);
+    assertThat(modified).isNotSameAs(plan);
+    assertThat(modified.getIntOption("timeout", 1)).isEqualTo(7);
+    assertThat(modified.getTargetKey()).isNotEqualTo(plan.getTargetKey());
+
+    ProfilePlan.remove(profile.getId());
+    assertThat(ProfilePlan.of(profile)).isNotSameAs(modified);
+  }
+
+  @Test
+  void testModuleOptions() {
+    CopyCatProfile profile = new CopyCatProfile()
+        .withUrl("localhost:210/db")
+        .withTargetOptions(new TargetOptions()
+            .withAdditionalProperty("timeout", 5)
+            .withAdditionalProperty(RecordRetriever.CACHE_TTL_PROPERTY, 60)
+            .withAdditionalProperty(RecordRetriever.HEDGE_PROPERTY, "1"));
+    ProfilePlan plan = ProfilePlan.of(profile);
+    assertThat(plan.getZoomOptions()).containsOnlyKeys("timeout");
+    assertThat(plan.getIntOption(RecordRetriever.CACHE_TTL_PROPERTY, 0)).isEqualTo(60);
+    assertThat(plan.getIntOption(RecordRetriever.HEDGE_PROPERTY, 0)).isEqualTo(1);
+
+    // other cache TTL, same connections
+    profile.setTargetOptions(new TargetOptions()
+        .withAdditionalProperty("timeout", 5)
+        .withAdditionalProperty(RecordRetriever.CACHE_TTL_PROPERTY, 0));
+    assertThat(ProfilePlan.of(profile).getTargetKey()).isEqualTo(plan.getTargetKey());
+  }
+
+  @Test
+  void testValidate() {
+    ProfilePlan.validate(new CopyCatProfile());
+    ProfilePlan.validate(new CopyCatProfile()
+        .withInternalIdEmbedPath("999ff$i")
+        .withTargetOptions(new TargetOptions()
+            .withAdditionalProperty("timeout", " 3")
+            .withAdditionalProperty("elementSetName", "F")));
+
+    CopyCatProfile badType = new CopyCatProfile()
+        .withTargetOptions(new TargetOptions().withAdditionalProperty("structure", true));
+    assertThatThrownBy(() -> ProfilePlan.validate(badType))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Illegal options type for key structure: class java.lang.Boolean");
+
+    CopyCatProfile badTtl = new CopyCatProfile()
+        .withTargetOptions(new TargetOptions().withAdditionalProperty("cacheTtl", "never"));
+    assertThatThrownBy(() -> ProfilePlan.validate(badTtl))
+        .hasMessage("Target option cacheTtl must be an integer: never");
+
+    CopyCatProfile badPath = new CopyCatProfile().withInternalIdEmbedPath("999ff!i");
+    assertThatThrownBy(() -> ProfilePlan.validate(badPath))
+        .hasMessage("Bad internalIdEmbedPath 999ff!i: Missing $ in marcPath");
+    // problem is reported when the path is used
+    JsonObject marc = new JsonObject().put("fields", new JsonArray());
+    ProfilePlan plan = ProfilePlan.of(badPath);
+    assertThatThrownBy(() -> plan.embed(marc, "id1"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Missing $ in marcPath");
+  }
+
+  @Test
+  void testEmbed() {
+    JsonObject marc = new JsonObject().put("fields", new JsonArray()
+        .add(new JsonObject().put("001", "1")));
+    ProfilePlan.of(new CopyCatProfile().withInternalIdEmbedPath("999ff$i")).embed(marc, "id1");
+    assertThat(JsonMarc.getValues(marc, "999i")).containsExactly("id1");
+  }
+
+  @Test
+  void testMarcEncoding() {
+    assertThat(ProfilePlan.of(new CopyCatProfile()).getMarcEncoding()).isEqualTo("marc-8");
+    assertThat(ProfilePlan.of(new CopyCatProfile().withTargetOptions(new TargetOptions()
+        .withAdditionalProperty(RecordRetriever.MARCENCODING_PROPERTY, "utf-8")))
+        .getMarcEncoding()).isEqualTo("utf-8");
+  }
+}
@@ -0,0 +1,80 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+class RecordCacheTest {
+
+  @Test
+  void testGetPut() {
+    RecordCache cache = new RecordCache(100);
+    assertThat(cache.get("a")).isNull();
+
+    JsonObject record = new JsonObject().put("leader", "x");
+    cache.put("a", "p1", record, 10, 60000);
+    record.put("leader", "y");
+
+    JsonObject got = cache.get("a");
+    assertThat(got.getString("leader")).isEqualTo("x");
+    got.put("leader", "z");
+    assertThat(cache.get("a").getString("leader")).isEqualTo("x");
+    assertThat(cache.getBytes()).isEqualTo(10);
+
+    cache.put("a", "p1", record, 20, 60000);
+    assertThat(cache.get("a").getString("leader")).isEqualTo("y");
+    assertThat(cache.getBytes()).isEqualTo(20);
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  void testLeastRecentlyUsedEvicted() {
+    RecordCache cache = new RecordCache(100);
+    JsonObject record = new JsonObject();
+    cache.put("a", "p1", record, 40, 60000);
+    cache.put("b", "p1", record, 40, 60000);
+    assertThat(cache.get("a")).isNotNull(); // b is now least recently used
+    cache.put("c", "p1", record, 40, 60000);
+    assertThat(cache.get("b")).isNull();
+    assertThat(cache.get("a")).isNotNull();
+    assertThat(cache.get("c")).isNotNull();
+    assertThat(cache.getBytes()).isEqualTo(80);
+
+    cache.put("d", "p1", record, 101, 60000); // too large to cache
+    assertThat(cache.get("d")).isNull();
+    assertThat(cache.size()).isEqualTo(2);
+  }
+
+  @Test
+  void testExpiry() {
+    RecordCache cache = new RecordCache(100);
+    cache.put("a", "p1", new JsonObject(), 10, 0);
+    assertThat(cache.size()).isZero();
+    cache.put("a", "p1", new JsonObject(), 10, 1);
+    await();
+    assertThat(cache.get("a")).isNull();
+    assertThat(cache.getBytes()).isZero();
+  }
+
+  @Test
+  void testInvalidate() {
+    RecordCache cache = new RecordCache(100);
+    cache.put("a", "p1", new JsonObject(), 10, 60000);
+    cache.put("b", "p2", new JsonObject(), 10, 60000);
+    cache.invalidate("p1");
+    assertThat(cache.get("a")).isNull();
+    assertThat(cache.get("b")).isNotNull();
+    assertThat(cache.getBytes()).isEqualTo(10);
+    cache.clear();
+    assertThat(cache.size()).isZero();
+    assertThat(cache.getBytes()).isZero();
+  }
+
+  static void await() {
+    long start = System.currentTimeMillis();
+    while (System.currentTimeMillis() - start < 5) {
+      Thread.onSpinWait();
+    }
+  }
+}
@@ -8,6 +8,8 @@ import io.vertx.ext.web.client.WebClientOptions;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -24,6 +26,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @ExtendWith(VertxExtension.class)
 class RecordImporterTest {
@@ -322,6 +325,35 @@ class RecordImporterTest {
     }));
   }
 
+  @Test
+  void testImporterWaitsForAllRecords(Vertx vertx, VertxTestContext context) {
+    Map<String, String> headers = new HashMap<>();
+
+    headers.put(XOkapiHeaders.URL, "http://localhost:" + port);
+    headers.put(XOkapiHeaders.TENANT, "testlib");
+    headers.put(XOkapiHeaders.USER_ID, UUID.randomUUID().toString());
+
+    RecordImporter importer = new RecordImporter(headers, vertx.getOrCreateContext());
+    importer.setStoragePollWait(1);
+
+    // first poll finds the instance of one record only
+    JsonObject obj = new JsonObject()
+      .put("sourceRecords",
+        new JsonArray()
+          .add(new JsonObject().put("externalIdsHolder",
+              new JsonObject().put("instanceId", "id1"))));
+    mock.setSourceStorageResponse(obj.encode());
+
+    Future<List<String>> future = importer.begin(UUID.randomUUID().toString())
+      .compose(x -> importer.post(List.of(marc1, marc1.copy(), marc1.copy()), true))
+      .compose(x -> importer.end());
+    future.onComplete(context.succeeding(x -> {
+      assertThat(x).hasSize(3);
+      assertThat(importer.getPollingSucceeded()).isTrue();
+      context.completeNow();
+    }));
+  }
+
   @Test
   void testImporterWithIterations(Vertx vertx, VertxTestContext context) {
     Map<String, String> headers = new HashMap<>();
@@ -511,6 +543,156 @@ class RecordImporterTest {
     }));
   }
 
+  @Test
+  void testSharedClient(Vertx vertx, VertxTestContext context) {
+    Map<String, String> headers = new HashMap<>();
+
+    headers.put(XOkapiHeaders.URL, "http://localhost:" + port);
+    headers.put(XOkapiHeaders.TENANT, "testlib");
+    headers.put(XOkapiHeaders.USER_ID, UUID.randomUUID().toString());
+
+    RecordImporter importer1 = new RecordImporter(headers, vertx.getOrCreateContext());
+    RecordImporter importer2 = new RecordImporter(headers, vertx.getOrCreateContext());
+    assertThat(importer2.getClient()).isSameAs(importer1.getClient());
+    assertThat(new RecordImporter(headers, vertx.getOrCreateContext(), new WebClientOptions())
+        .getClient()).isNotSameAs(importer1.getClient());
+
+    // client must still be usable after the first import has ended
+    importer1.begin(null)
+        .compose(x -> importer1.post(marc1))
+        .compose(x -> importer1.end())
+        .compose(x -> importer2.begin(null))
+        .compose(x -> importer2.post(marc1))
+        .compose(x -> importer2.end())
+        .onComplete(context.succeeding(res -> context.verify(() -> {
+          assertThat(res).hasSize(1);
+          context.completeNow();
+        })));
+  }
+
+  @Test
+  void testChunks(Vertx vertx, VertxTestContext context) {
+    Map<String, String> headers = new HashMap<>();
+
+    headers.put(XOkapiHeaders.URL, "http://localhost:" + port);
+    headers.put(XOkapiHeaders.TENANT, "testlib");
+    headers.put(XOkapiHeaders.USER_ID, UUID.randomUUID().toString());
+
+    RecordImporter importer = new RecordImporter(headers, vertx.getOrCreateContext());
+    importer.setChunkSize(2);
+    importer.setTotal(7);
+    List<JsonObject> records = Collections.nCopies(5, marc1);
+
+    importer.begin(null)
+        .compose(x -> {
+          mock.getChunks().clear();
+          return importer.post(records.subList(0, 2), false);
+        })
+        .compose(x -> importer.post(records, true))
+        .compose(x -> importer.end())
+        .onComplete(context.succeeding(res -> context.verify(() -> {
+          List<JsonObject> chunks = mock.getChunks();
+          // no empty last chunk
+          assertThat(chunks).hasSize(4);
+          assertThat(chunks).extracting(c -> c.getJsonArray("initialRecords").size())
+              .containsExactly(2, 2, 2, 1);
+          assertThat(chunks).extracting(c -> c.getJsonObject("recordsMetadata"))
+              .extracting(m -> m.getInteger("counter"), m -> m.getInteger("total"),
+                  m -> m.getBoolean("last"))
+              .containsExactly(tuple(2, 7, false), tuple(4, 7, false), tuple(6, 7, false),
+                  tuple(7, 7, true));
+          context.completeNow();
+        })));
+  }
+
+  @Test
+  void testImporterUpdateWaitsForJob(Vertx vertx, VertxTestContext context) {
+    Map<String, String> headers = new HashMap<>();
+
+    headers.put(XOkapiHeaders.URL, "http://localhost:" + port);
+    headers.put(XOkapiHeaders.TENANT, "testlib");
+    headers.put(XOkapiHeaders.USER_ID, UUID.randomUUID().toString());
+
+    RecordImporter importer = new RecordImporter(headers, vertx.getOrCreateContext());
+    importer.setJobPollWait(10);
+    mock.setJobStatus("COMMITTED", 3);
+
+    long start = System.currentTimeMillis();
+    importer.begin(null)
+      .compose(x -> importer.post(marc1))
+      .compose(x -> importer.end(Collections.singletonList("1234"), 10000L))
+      .onComplete(context.succeeding(x -> context.verify(() -> {
+        assertThat(x).containsExactly("1234");
+        assertThat(System.currentTimeMillis() - start).isLessThan(5000L);
+        context.completeNow();
+      })));
+  }
+
+  @Test
+  void testImporterUpdateJobFailed(Vertx vertx, VertxTestContext context) {
+    Map<String, String> headers = new HashMap<>();
+
+    headers.put(XOkapiHeaders.URL, "http://localhost:" + port);
+    headers.put(XOkapiHeaders.TENANT, "testlib");
+    headers.put(XOkapiHeaders.USER_ID, UUID.randomUUID().toString());
+
+    RecordImporter importer = new RecordImporter(headers, vertx.getOrCreateContext());
+    importer.setJobPollWait(10);
+    mock.setJobStatus("ERROR", 1);
+
+    importer.begin(null)
+      .compose(x -> importer.post(marc1))
+      .compose(x -> importer.end(Collections.singletonList("1234"), 10000L))
+      .onComplete(context.failing(cause -> context.verify(() -> {
+        mock.setJobStatus("COMMITTED", 0);
+        assertThat(cause.getMessage())
+            .endsWith("ended with status ERROR (RECORD_UPDATE_ERROR)");
+        context.completeNow();
+      })));
+  }
+
+  @Test
+  void testImporterUpdateDeadline(Vertx vertx, VertxTestContext context) {
+    Map<String, String> headers = new HashMap<>();
+
+    headers.put(XOkapiHeaders.URL, "http://localhost:" + port);
+    headers.put(XOkapiHeaders.TENANT, "testlib");
+    headers.put(XOkapiHeaders.USER_ID, UUID.randomUUID().toString());
+
+    RecordImporter importer = new RecordImporter(headers, vertx.getOrCreateContext());
+    importer.setJobPollWait(10);
+    mock.setJobStatus("COMMITTED", 1000);
+
+    importer.begin(null)
+      .compose(x -> importer.post(marc1))
+      .compose(x -> importer.end(Collections.singletonList("1234"), 50L))
+      .onComplete(context.succeeding(x -> context.verify(() -> {
+        mock.setJobStatus("COMMITTED", 0);
+        assertThat(x).containsExactly("1234");
+        context.completeNow();
+      })));
+  }
+
+  @Test
+  void testDiscard(Vertx vertx, VertxTestContext context) {
+    Map<String, String> headers = new HashMap<>();
+
+    headers.put(XOkapiHeaders.URL, "http://localhost:" + port);
+    headers.put(XOkapiHeaders.TENANT, "testlib");
+    headers.put(XOkapiHeaders.USER_ID, UUID.randomUUID().toString());
+
+    RecordImporter importer = new RecordImporter(headers, vertx.getOrCreateContext());
+    int deleted = mock.getDeletedJobs();
+    importer.begin(null)
+        .compose(x -> importer.discard())
+        // second discard finds no job, which is logged only
+        .compose(x -> importer.discard())
+        .onComplete(context.succeeding(x -> context.verify(() -> {
+          assertThat(mock.getDeletedJobs()).isEqualTo(deleted + 1);
+          context.completeNow();
+        })));
+  }
+
   @Test
   void testImporterTimeout(Vertx vertx, VertxTestContext context) {
     Map<String, String> headers = new HashMap<>();
@@ -532,4 +714,22 @@ class RecordImporterTest {
     })));
   }
 
+  static String token(JsonObject payload) {
+    Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    return encoder.encodeToString("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8))
+        + "." + encoder.encodeToString(payload.encode().getBytes(StandardCharsets.UTF_8))
+        + ".signature";
+  }
+
+  @Test
+  void testTokenExpiry() {
+    assertThat(RecordImporter.tokenExpiry(null)).isEqualTo(Long.MAX_VALUE);
+    assertThat(RecordImporter.tokenExpiry("opaque")).isEqualTo(Long.MAX_VALUE);
+    assertThat(RecordImporter.tokenExpiry("a.!!.c")).isEqualTo(Long.MAX_VALUE);
+    assertThat(RecordImporter.tokenExpiry(token(new JsonObject().put("sub", "user"))))
+        .isEqualTo(Long.MAX_VALUE);
+    assertThat(RecordImporter.tokenExpiry(token(new JsonObject().put("exp", 1700000000))))
+        .isEqualTo(1700000000000L);
+  }
+
 }
@@ -1,9 +1,16 @@
 package org.folio.copycat;
 
+import io.vertx.core.Context;
 import io.vertx.core.Future;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
 import org.folio.okapi.testing.UtilityClassTester;
 import org.folio.rest.jaxrs.model.CopyCatProfile;
 import org.folio.rest.jaxrs.model.TargetOptions;
@@ -24,6 +31,7 @@ public class RecordRetrieverTest {
   private static final String URL_WORLDCAT = "zcat.oclc.org/OLUCWorldCat";
   private static final String EXTERNAL_ID_WORLDCAT = "1188724030";
   private static final String EXTERNAL_ID_INDEXDATA = "780306m19009999ohu";
+  private static final int MOCK_PORT = 9236;
 
   private static boolean zServerAvailable = false;
   @Test
@@ -118,6 +126,375 @@ public class RecordRetrieverTest {
     assertThat(sutrs).contains(EXTERNAL_ID_INDEXDATA);
   }
 
+  @Test
+  void getLineMarcReusesConnection() {
+    Assumptions.assumeTrue(zServerAvailable);
+    CopyCatProfile copyCatProfile = new CopyCatProfile()
+        .withName("index data")
+        .withUrl(URL_INDEXDATA)
+        .withExternalIdQueryMap("$identifier")
+        .withTargetOptions(new TargetOptions()
+            .withAdditionalProperty("elementSetName", "F"));
+
+    String key = RecordRetriever.targetKey(copyCatProfile);
+    RecordRetriever.getRecordAsBytes(copyCatProfile, EXTERNAL_ID_INDEXDATA, "render");
+    assertThat(RecordRetriever.getConnectionPool().getIdleCount(key)).isEqualTo(1);
+    var rec = RecordRetriever.getRecordAsBytes(copyCatProfile, EXTERNAL_ID_INDEXDATA, "render");
+    assertThat(new String(rec)).contains("008 " + EXTERNAL_ID_INDEXDATA);
+    assertThat(RecordRetriever.getConnectionPool().getIdleCount(key)).isEqualTo(1);
+  }
+
+  @Test
+  void testIsDroppedSession() {
+    assertThat(RecordRetriever.isDroppedSession(10, 15)).isTrue();
+    assertThat(RecordRetriever.isDroppedSession(999, 15)).isTrue();
+    assertThat(RecordRetriever.isDroppedSession(1000, 15)).isFalse();
+    assertThat(RecordRetriever.isDroppedSession(499, 1)).isTrue();
+    assertThat(RecordRetriever.isDroppedSession(500, 1)).isFalse();
+  }
+
+  static CopyCatProfile mockProfile(String db) {
+    return new CopyCatProfile()
+        .withUrl("localhost:" + MOCK_PORT + "/" + db)
+        .withExternalIdQueryMap("$identifier")
+        .withTargetOptions(new TargetOptions().withAdditionalProperty("timeout", 1));
+  }
+
+  @Test
+  void reusedConnectionTimeoutNotRetried(Vertx vertx, VertxTestContext context) {
+    MockTarget target = new MockTarget(vertx);
+    CopyCatProfile profile = mockProfile("timeout");
+    target.start(MOCK_PORT)
+        .compose(x -> vertx.executeBlocking(() -> {
+          assertThat(RecordRetriever.prefill(profile)).isTrue();
+          target.setSearchDelay(-1);
+          assertThrows(RecordRetrieverException.class,
+              () -> RecordRetriever.getRecordAsBytes(profile, "1", "render"));
+          return null;
+        }))
+        .eventually(target::close)
+        .onComplete(context.succeeding(x -> context.verify(() -> {
+          assertThat(target.getConnections()).isEqualTo(1);
+          assertThat(target.getSearches()).isEqualTo(1);
+          context.completeNow();
+        })));
+  }
+
+  @Test
+  void reusedConnectionDroppedRetried(Vertx vertx, VertxTestContext context) {
+    MockTarget target = new MockTarget(vertx);
+    CopyCatProfile profile = mockProfile("dropped");
+    target.start(MOCK_PORT)
+        .compose(x -> vertx.executeBlocking(() -> {
+          assertThat(RecordRetriever.prefill(profile)).isTrue();
+          target.dropNextSearch();
+          assertThrows(RecordNotFoundException.class,
+              () -> RecordRetriever.getRecordAsBytes(profile, "1", "render"));
+          return null;
+        }))
+        .eventually(target::close)
+        .onComplete(context.succeeding(x -> context.verify(() -> {
+          assertThat(target.getConnections()).isEqualTo(2);
+          assertThat(target.getSearches()).isEqualTo(2);
+          context.completeNow();
+        })));
+  }
+
+  @Test
+  void timeoutGrowsWithLatency(Vertx vertx, VertxTestContext context) {
+    MockTarget target = new MockTarget(vertx);
+    CopyCatProfile profile = new CopyCatProfile()
+        .withUrl("localhost:" + MOCK_PORT + "/slower")
+        .withExternalIdQueryMap("$identifier");
+    for (int i = 0; i < 20; i++) {
+      RecordRetriever.getLatencyTracker().record(profile.getUrl(), 100);
+    }
+    target.start(MOCK_PORT)
+        .compose(x -> vertx.executeBlocking(() -> {
+          assertThat(RecordRetriever.getTimeout(profile)).isEqualTo("2");
+          target.setSearchDelay(3000);
+          // slower than the timeout, which must not stay that short
+          assertThrows(RecordRetrieverException.class,
+              () -> RecordRetriever.getRecordAsBytes(profile, "1", "render"));
+          assertThat(Integer.parseInt(RecordRetriever.getTimeout(profile))).isBetween(6, 15);
+          assertThrows(RecordNotFoundException.class,
+              () -> RecordRetriever.getRecordAsBytes(profile, "1", "render"));
+          return null;
+        }))
+        .eventually(target::close)
+        .onComplete(context.succeedingThenComplete());
+  }
+
+  @Test
+  void testRecordLatency() {
+    String url = "record-latency.example.org";
+    RecordRetriever.recordLatency(url, 50, false, 2);
+    for (int i = 0; i < 19; i++) {
+      RecordRetriever.recordLatency(url, 100, true, 2);
+    }
+    // connection refused is not a response time
+    assertThat(RecordRetriever.getLatencyTracker().percentile(url, 99)).isEqualTo(-1);
+    RecordRetriever.recordLatency(url, 2000, false, 2);
+    assertThat(RecordRetriever.getLatencyTracker().percentile(url, 99)).isEqualTo(2000);
+  }
+
+  @Test
+  void resultSetNotSearchedAgain(Vertx vertx, VertxTestContext context) {
+    CopyCatProfile profile = mockProfile("resultset").withId(UUID.randomUUID().toString());
+    String id = ResultSetCache.newId("1");
+    RecordRetriever.getResultSet(profile, id, "t1", false, vertx.getOrCreateContext())
+        .onComplete(context.failing(cause -> context.verify(() -> {
+          assertThat(cause).isInstanceOf(RecordNotFoundException.class)
+              .hasMessage("Result set " + id + " is no longer open");
+          context.completeNow();
+        })));
+  }
+
+  @Test
+  void resultSetSearchedAgain(Vertx vertx, VertxTestContext context) {
+    MockTarget target = new MockTarget(vertx);
+    CopyCatProfile profile = mockProfile("resultset").withId(UUID.randomUUID().toString());
+    String id = ResultSetCache.newId("1");
+    Context vertxContext = vertx.getOrCreateContext();
+    target.start(MOCK_PORT)
+        .compose(x -> RecordRetriever.getResultSet(profile, id, "t1", vertxContext))
+        .compose(cursor -> {
+          // not open here, as if another instance had searched
+          assertThat(cursor.getId()).isEqualTo(id);
+          assertThat(cursor.getHitCount()).isZero();
+          assertThat(target.getSearches()).isEqualTo(1);
+          return RecordRetriever.getResultSet(profile, id, "t1", vertxContext)
+              .map(cursor2 -> {
+                assertThat(cursor2).isSameAs(cursor);
+                assertThat(target.getSearches()).isEqualTo(1);
+                return null;
+              });
+        })
+        .compose(x -> RecordRetriever.getResultSet(profile, "unknown", "t1", vertxContext)
+            .transform(ar -> {
+              assertThat(ar.cause()).isInstanceOf(RecordNotFoundException.class)
+                  .hasMessage("No result set unknown for profile " + profile.getId());
+              return Future.<Void>succeededFuture();
+            }))
+        .eventually(() -> {
+          RecordRetriever.invalidate(profile.getId());
+          return target.close();
+        })
+        .onComplete(context.succeedingThenComplete());
+  }
+
+  @Test
+  void testGetTimeout() {
+    CopyCatProfile profile = new CopyCatProfile().withUrl("timeout.example.org");
+    assertThat(RecordRetriever.getTimeout(profile)).isEqualTo("15");
+    for (int i = 0; i < 20; i++) {
+      RecordRetriever.getLatencyTracker().record("timeout.example.org", 500);
+    }
+    assertThat(RecordRetriever.getTimeout(profile)).isEqualTo("2");
+    profile.setTargetOptions(new TargetOptions().withAdditionalProperty("timeout", "30"));
+    assertThat(RecordRetriever.getTimeout(profile)).isNull();
+  }
+
+  @Test
+  void testFirstInOrder() {
+    Promise<String> p1 = Promise.promise();
+    Promise<String> p2 = Promise.promise();
+    Promise<String> p3 = Promise.promise();
+    Future<String> f = RecordRetriever.firstInOrder(List.of(p1.future(), p2.future(), p3.future()));
+    p3.complete("3");
+    p2.complete("2");
+    assertThat(f.isComplete()).isFalse(); // waiting for profile with higher priority
+    p1.fail("1 failed");
+    assertThat(f.result()).isEqualTo("2");
+
+    Promise<String> p4 = Promise.promise();
+    f = RecordRetriever.firstInOrder(List.of(Future.failedFuture("a"), p4.future()));
+    p4.fail("b");
+    assertThat(f.cause()).hasMessage("a; b");
+  }
+
+  @Test
+  void testTargetKey() {
+    CopyCatProfile p1 = new CopyCatProfile()
+        .withUrl(URL_INDEXDATA)
+        .withAuthentication("a b")
+        .withTargetOptions(new TargetOptions()
+            .withAdditionalProperty("x", "1")
+            .withAdditionalProperty("y", 2));
+    CopyCatProfile p2 = new CopyCatProfile()
+        .withUrl(URL_INDEXDATA)
+        .withAuthentication("a b")
+        .withTargetOptions(new TargetOptions()
+            .withAdditionalProperty("y", 2)
+            .withAdditionalProperty("x", "1"));
+    assertThat(RecordRetriever.targetKey(p1)).isEqualTo(RecordRetriever.targetKey(p2));
+    p2.setAuthentication("a c");
+    assertThat(RecordRetriever.targetKey(p1)).isNotEqualTo(RecordRetriever.targetKey(p2));
+    p2.setAuthentication("a b");
+    p2.setUrl(URL_WORLDCAT);
+    assertThat(RecordRetriever.targetKey(p1)).isNotEqualTo(RecordRetriever.targetKey(p2));
+  }
+
+  @Test
+  void getJsonMarcBatchNoMatchFields() {
+    // no use attribute, so any field could match; nothing is searched, target is not there
+    CopyCatProfile copyCatProfile = new CopyCatProfile()
+        .withName("no match fields")
+        .withUrl("localhost:9999/db")
+        .withExternalIdQueryMap("$identifier");
+    assertThat(RecordRetriever.getRecordsAsJsonObjects(copyCatProfile,
+        List.of("2001", "2002"))).isEmpty();
+
+    copyCatProfile.setExternalIdQueryMap("@attr 1=4 $identifier");
+    assertThat(RecordRetriever.getRecordsAsJsonObjects(copyCatProfile,
+        List.of("2001", "2002"))).isEmpty();
+  }
+
+  @Test
+  void testConstructPqf() {
+    CopyCatProfile copyCatProfile = new CopyCatProfile()
+        .withExternalIdQueryMap("@attr 1=7 $identifier");
+    assertThat(RecordRetriever.constructPqf(copyCatProfile, List.of("a")))
+        .isEqualTo("@attr 1=7 a");
+    assertThat(RecordRetriever.constructPqf(copyCatProfile, List.of("a", "b", "c")))
+        .isEqualTo("@or @or @attr 1=7 a @attr 1=7 b @attr 1=7 c");
+
+    copyCatProfile.setExternalIdQueryMap(" @attrset bib-1 @attr 1=12 $identifier");
+    assertThat(RecordRetriever.constructPqf(copyCatProfile, List.of("a", "b")))
+        .isEqualTo("@attrset bib-1 @or @attr 1=12 a @attr 1=12 b");
+  }
+
+  @Test
+  void testNormalizeForMatch() {
+    assertThat(RecordRetriever.normalizeForMatch("(OCoLC)ocm01234567"))
+        .isEqualTo(RecordRetriever.normalizeForMatch("1234567"))
+        .isEqualTo(RecordRetriever.normalizeForMatch("on1234567"))
+        .isEqualTo("1234567");
+    assertThat(RecordRetriever.normalizeForMatch(" 0-19-852663-6 (pbk.)"))
+        .isEqualTo(RecordRetriever.normalizeForMatch("019852663-6"));
+    assertThat(RecordRetriever.normalizeForMatch("   73209622 //r823")).isEqualTo("73209622");
+    assertThat(RecordRetriever.normalizeForMatch("0")).isEqualTo("0");
+  }
+
+  @Test
+  void testMatchFields() {
+    CopyCatProfile copyCatProfile = new CopyCatProfile()
+        .withExternalIdQueryMap("@attr 1=1211 $identifier");
+    assertThat(RecordRetriever.matchFields(copyCatProfile)).containsExactly("001", "035a");
+    copyCatProfile.setExternalIdQueryMap("@attr 2=3 @attr bib-1 1=7 $identifier");
+    assertThat(RecordRetriever.matchFields(copyCatProfile)).containsExactly("020a", "020z");
+    copyCatProfile.setExternalIdQueryMap("@attr 1=4 $identifier");
+    assertThat(RecordRetriever.matchFields(copyCatProfile)).isEmpty();
+    copyCatProfile.setExternalIdQueryMap("$identifier");
+    assertThat(RecordRetriever.matchFields(copyCatProfile)).isEmpty();
+  }
+
+  @Test
+  void getJsonMarcCached(Vertx vertx, VertxTestContext context) {
+    Assumptions.assumeTrue(zServerAvailable);
+    CopyCatProfile copyCatProfile = new CopyCatProfile()
+        .withId(UUID.randomUUID().toString())
+        .withName("index data")
+        .withUrl(URL_INDEXDATA)
+        .withExternalIdQueryMap("$identifier");
+
+    String key = RecordRetriever.cacheKey(copyCatProfile, EXTERNAL_ID_INDEXDATA);
+    RecordRetriever.getRecordAsJsonObject(copyCatProfile, EXTERNAL_ID_INDEXDATA, vertx.getOrCreateContext())
+        .compose(rec1 -> {
+          assertThat(RecordRetriever.getRecordCache().get(key)).isEqualTo(rec1);
+          rec1.put("leader", "modified");
+          return RecordRetriever.getRecordAsJsonObject(copyCatProfile,
+              " " + EXTERNAL_ID_INDEXDATA.toUpperCase(), vertx.getOrCreateContext());
+        })
+        .onComplete(context.succeeding(rec2 -> context.verify(() -> {
+          assertThat(rec2.getString("leader")).isNotEqualTo("modified");
+          context.completeNow();
+        })));
+  }
+
+  @Test
+  void getJsonMarcNegativeCached(Vertx vertx, VertxTestContext context) {
+    Assumptions.assumeTrue(zServerAvailable);
+    CopyCatProfile copyCatProfile = new CopyCatProfile()
+        .withId(UUID.randomUUID().toString())
+        .withName("index data")
+        .withUrl(URL_INDEXDATA)
+        .withExternalIdQueryMap("@attr 1=1211 $identifier");
+
+    String key = RecordRetriever.cacheKey(copyCatProfile, EXTERNAL_ID_INDEXDATA);
+    RecordRetriever.getRecordAsJsonObject(copyCatProfile, EXTERNAL_ID_INDEXDATA, vertx.getOrCreateContext())
+        .recover(cause1 -> {
+          assertThat(RecordRetriever.getNegativeCache().get(key)).isSameAs(cause1);
+          return RecordRetriever.getRecordAsJsonObject(copyCatProfile, EXTERNAL_ID_INDEXDATA,
+              vertx.getOrCreateContext())
+              .recover(cause2 -> {
+                assertThat(cause2).isSameAs(cause1);
+                RecordRetriever.invalidate(copyCatProfile.getId());
+                assertThat(RecordRetriever.getNegativeCache().get(key)).isNull();
+                return Future.succeededFuture();
+              });
+        })
+        .onComplete(context.succeeding(x -> context.completeNow()));
+  }
+
+  @Test
+  void testNegativeTtl() {
+    assertThat(RecordRetriever.negativeTtl(new RecordNotFoundException("x"))).isPositive();
+    assertThat(RecordRetriever.negativeTtl(new RecordRetrieverException("x"))).isZero();
+    assertThat(RecordRetriever.negativeTtl(new IllegalStateException("x"))).isZero();
+  }
+
+  @Test
+  void testCacheKey() {
+    CopyCatProfile copyCatProfile = new CopyCatProfile()
+        .withUrl(URL_INDEXDATA)
+        .withExternalIdQueryMap("$identifier");
+    assertThat(RecordRetriever.cacheKey(copyCatProfile, "1")).isNull();
+    copyCatProfile.setId("p1");
+    assertThat(RecordRetriever.cacheKey(copyCatProfile, null)).isNull();
+    assertThat(RecordRetriever.cacheKey(copyCatProfile, "0-19 852663-6X"))
+        .isEqualTo(RecordRetriever.cacheKey(copyCatProfile, "019852663 6x"));
+    String key = RecordRetriever.cacheKey(copyCatProfile, "1");
+    copyCatProfile.setExternalIdQueryMap("@attr 1=7 $identifier");
+    assertThat(RecordRetriever.cacheKey(copyCatProfile, "1")).isNotEqualTo(key);
+  }
+
+  @Test
+  void testDecodeJson() {
+    byte[] buf = "{\"title\":\"K\u00f8benhavn \u2013 \u6771\u4eac\"}"
+        .getBytes(StandardCharsets.UTF_8);
+    assertThat(RecordRetriever.decodeJson(buf).getString("title"))
+        .isEqualTo("K\u00f8benhavn \u2013 \u6771\u4eac");
+    JsonObject marc = RecordRetriever.decodeJson("{\"fields\":[{\"001\":\"1\"}]}"
+        .getBytes(StandardCharsets.UTF_8));
+    assertThat(marc.getJsonArray("fields").getJsonObject(0).getString("001")).isEqualTo("1");
+    assertThrows(DecodeException.class,
+        () -> RecordRetriever.decodeJson("[1]".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  void testJsonType() {
+    CopyCatProfile profile = new CopyCatProfile();
+    assertThat(RecordRetriever.jsonType(profile)).isEqualTo("json;charset=marc-8,utf-8");
+    profile.setTargetOptions(new TargetOptions()
+        .withAdditionalProperty(RecordRetriever.MARCENCODING_PROPERTY, "iso-8859-1"));
+    assertThat(RecordRetriever.jsonType(profile)).isEqualTo("json;charset=iso-8859-1,utf-8");
+  }
+
+  @Test
+  void testGetIntOption() {
+    CopyCatProfile copyCatProfile = new CopyCatProfile();
+    assertThat(RecordRetriever.getIntOption(copyCatProfile, "a", 3)).isEqualTo(3);
+    copyCatProfile.setTargetOptions(new TargetOptions()
+        .withAdditionalProperty("a", 1)
+        .withAdditionalProperty("b", " 2")
+        .withAdditionalProperty("c", "x"));
+    assertThat(RecordRetriever.getIntOption(copyCatProfile, "a", 3)).isEqualTo(1);
+    assertThat(RecordRetriever.getIntOption(copyCatProfile, "b", 3)).isEqualTo(2);
+    assertThat(RecordRetriever.getIntOption(copyCatProfile, "c", 3)).isEqualTo(3);
+    assertThat(RecordRetriever.getIntOption(copyCatProfile, "d", 3)).isEqualTo(3);
+  }
+
   @Test
   void getBadOption() {
     CopyCatProfile copyCatProfile = new CopyCatProfile()
@@ -186,7 +563,7 @@ public class RecordRetrieverTest {
   static void testAuth(String auth, String user, String group, String password) {
     Connection conn = new Connection("localhost", 210);
 
-    RecordRetriever.setAuthOptions(conn, auth);
+    ProfilePlan.of(new CopyCatProfile().withAuthentication(auth)).configure(conn);
     assertThat(conn.option("user")).isEqualTo(user);
     assertThat(conn.option("group")).isEqualTo(group);
     assertThat(conn.option("password")).isEqualTo(password);
@@ -0,0 +1,96 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.folio.rest.jaxrs.model.CopyCatProfile;
+import org.junit.jupiter.api.Test;
+
+class ResultSetCacheTest {
+
+  static ResultSetCache.Cursor cursor(String tenant, String profileId) {
+    return new ResultSetCache.Cursor(ResultSetCache.newId("1"), tenant,
+        new CopyCatProfile().withId(profileId), null, null);
+  }
+
+  @Test
+  void testId() {
+    String id = ResultSetCache.newId("978-3-16 (pbk.)");
+    assertThat(id).doesNotContain(" ", "(", "/", "+", "=");
+    assertThat(ResultSetCache.getExternalId(id)).isEqualTo("978-3-16 (pbk.)");
+    assertThat(ResultSetCache.getExternalId("d6b3c9d4-0e6f-4d5c-9d55-2d6a8b2b3f60")).isNull();
+    assertThat(ResultSetCache.getExternalId("x.!")).isNull();
+  }
+
+  @Test
+  void testSameIdOtherTenant() {
+    ResultSetCache cache = new ResultSetCache(10, 60000);
+    ResultSetCache.Cursor cursor1 = cursor("t1", "p1");
+    ResultSetCache.Cursor cursor2 = new ResultSetCache.Cursor(cursor1.getId(), "t2",
+        new CopyCatProfile().withId("p1"), null, null);
+    cache.put(cursor1);
+    cache.put(cursor2);
+    assertThat(cache.get(cursor1.getId(), "t1")).isSameAs(cursor1);
+    assertThat(cache.get(cursor1.getId(), "t2")).isSameAs(cursor2);
+
+    ResultSetCache.Cursor cursor3 = new ResultSetCache.Cursor(cursor1.getId(), "t1",
+        new CopyCatProfile().withId("p1"), null, null);
+    cache.put(cursor3);
+    assertThat(cache.get(cursor1.getId(), "t1")).isSameAs(cursor3);
+    assertThat(cache.size()).isEqualTo(2);
+    assertThatThrownBy(() -> cursor1.getRecords(0, 1, "json"))
+        .isInstanceOf(RecordRetrieverException.class);
+  }
+
+  @Test
+  void testGet() {
+    ResultSetCache cache = new ResultSetCache(10, 60000);
+    ResultSetCache.Cursor cursor = cursor("t1", "p1");
+    cache.put(cursor);
+    assertThat(cache.get(cursor.getId(), "t1")).isSameAs(cursor);
+    assertThat(cache.get(cursor.getId(), "t2")).isNull();
+    assertThat(cache.get("other", "t1")).isNull();
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  void testLeastRecentlyUsedClosed() throws Exception {
+    ResultSetCache cache = new ResultSetCache(2, 60000);
+    ResultSetCache.Cursor cursor1 = cursor("t1", "p1");
+    ResultSetCache.Cursor cursor2 = cursor("t1", "p1");
+    ResultSetCache.Cursor cursor3 = cursor("t1", "p1");
+    cache.put(cursor1);
+    cache.put(cursor2);
+    assertThat(cache.get(cursor1.getId(), "t1")).isSameAs(cursor1);
+    cache.put(cursor3);
+    assertThat(cache.get(cursor2.getId(), "t1")).isNull();
+    assertThat(cache.get(cursor1.getId(), "t1")).isSameAs(cursor1);
+    assertThat(cache.get(cursor3.getId(), "t1")).isSameAs(cursor3);
+    assertThatThrownBy(() -> cursor2.getRecords(0, 1, "json"))
+        .isInstanceOf(RecordRetrieverException.class)
+        .hasMessage("Result set " + cursor2.getId() + " has expired");
+  }
+
+  @Test
+  void testExpired() {
+    ResultSetCache cache = new ResultSetCache(10, 0);
+    ResultSetCache.Cursor cursor = cursor("t1", "p1");
+    cache.put(cursor);
+    assertThat(cache.get(cursor.getId(), "t1")).isNull();
+    assertThat(cache.size()).isZero();
+    cache.put(cursor("t1", "p1"));
+    assertThat(cache.evictExpired()).isEqualTo(1);
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  void testRemoveProfile() {
+    ResultSetCache cache = new ResultSetCache(10, 60000);
+    cache.put(cursor("t1", "p1"));
+    cache.put(cursor("t1", "p2"));
+    cache.remove("p1");
+    assertThat(cache.size()).isEqualTo(1);
+    cache.clear();
+    assertThat(cache.size()).isZero();
+  }
+}
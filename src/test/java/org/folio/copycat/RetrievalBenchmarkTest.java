@@ -0,0 +1,142 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.net.NetServer;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.rest.jaxrs.model.CopyCatProfile;
+import org.folio.rest.jaxrs.model.TargetOptions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * Compares ways of running blocking retrieval against a slow local target.
+ *
+ * <p>The target accepts connections but never answers, so each retrieval waits for
+ * the ZOOM timeout. Run with: {@code mvn test -Dtest=RetrievalBenchmarkTest -Dbenchmark=true}.
+ */
+@ExtendWith(VertxExtension.class)
+class RetrievalBenchmarkTest {
+  private static final Logger log = LogManager.getLogger(RetrievalBenchmarkTest.class);
+  private static final int PORT = 9232;
+  private static final int REQUESTS = Integer.getInteger("benchmark.requests", 200);
+  private static NetServer server;
+
+  @BeforeAll
+  static void beforeAll(Vertx vertx, VertxTestContext context) {
+    Assumptions.assumeTrue(Boolean.getBoolean("benchmark"));
+    vertx.createNetServer()
+        .connectHandler(socket -> socket.handler(buf -> { }))
+        .listen(PORT)
+        .onSuccess(x -> server = x)
+        .onComplete(context.succeedingThenComplete());
+  }
+
+  @AfterAll
+  static void afterAll(VertxTestContext context) {
+    if (server == null) {
+      context.completeNow();
+      return;
+    }
+    server.close().onComplete(context.succeedingThenComplete());
+  }
+
+  static long getRss() {
+    try {
+      for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+        if (line.startsWith("VmRSS:")) {
+          return Long.parseLong(line.replaceAll("\\D", ""));
+        }
+      }
+    } catch (IOException e) {
+      log.warn("Can not read RSS: {}", e.getMessage());
+    }
+    return -1;
+  }
+
+  static CopyCatProfile slowProfile() {
+    return new CopyCatProfile()
+        .withUrl("localhost:" + PORT + "/db")
+        .withExternalIdQueryMap("$identifier")
+        .withTargetOptions(new TargetOptions().withAdditionalProperty("timeout", 1));
+  }
+
+  static Callable<String> slowRetrieval() {
+    CopyCatProfile profile = slowProfile();
+    return () -> {
+      try {
+        RecordRetriever.getRecordAsBytes(profile, "1", "render");
+      } catch (RecordRetrieverException e) {
+        // expected: the target times out
+      }
+      return Thread.currentThread().getName();
+    };
+  }
+
+  Future<Void> run(String name, Vertx vertx, Context vertxContext,
+      RetrievalExecutor.Mode mode) {
+
+    Callable<String> task = slowRetrieval();
+    ZoomEngine engine = new ZoomEngine(REQUESTS);
+    CopyCatProfile profile = slowProfile();
+    return run(name, () -> {
+      if (mode == null) {
+        return vertx.executeBlocking(task, false);
+      }
+      if (mode == RetrievalExecutor.Mode.ASYNC) {
+        return engine.search(profile, "1", "render", vertxContext)
+            .transform(x -> Future.succeededFuture(Thread.currentThread().getName()));
+      }
+      return RetrievalExecutor.execute(vertxContext, task, mode);
+    });
+  }
+
+  Future<Void> run(String name, Supplier<Future<String>> request) {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    threads.resetPeakThreadCount();
+    long rss = getRss();
+    long start = System.currentTimeMillis();
+    List<Future<String>> futures = new ArrayList<>();
+    for (int i = 0; i < REQUESTS; i++) {
+      futures.add(request.get());
+    }
+    return Future.all(futures).map(x -> {
+      long elapsed = System.currentTimeMillis() - start;
+      log.info("{}: {} requests in {} ms ({} req/s), peak threads {}, RSS {} kB -> {} kB",
+          name, REQUESTS, elapsed, REQUESTS * 1000L / Math.max(1, elapsed),
+          threads.getPeakThreadCount(), rss, getRss());
+      return null;
+    });
+  }
+
+  @Test
+  void compareModes(Vertx vertx, VertxTestContext context) {
+    Context vertxContext = vertx.getOrCreateContext();
+    run("executeBlocking", vertx, vertxContext, null)
+        .compose(x -> run("worker", vertx, vertxContext, RetrievalExecutor.Mode.WORKER))
+        .compose(x -> run("virtual", vertx, vertxContext, RetrievalExecutor.Mode.VIRTUAL))
+        .compose(x -> run("async", vertx, vertxContext, RetrievalExecutor.Mode.ASYNC))
+        .onComplete(context.succeeding(x -> context.verify(() -> {
+          assertThat(RetrievalExecutor.getVirtualExecutor().isShutdown()).isFalse();
+          context.completeNow();
+        })));
+  }
+}
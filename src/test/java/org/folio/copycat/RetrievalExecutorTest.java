@@ -0,0 +1,116 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.folio.okapi.testing.UtilityClassTester;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+class RetrievalExecutorTest {
+
+  @Test
+  void constructor() {
+    UtilityClassTester.assertUtilityClass(RetrievalExecutor.class);
+  }
+
+  @Test
+  void testExecute(Vertx vertx, VertxTestContext context) {
+    Context vertxContext = vertx.getOrCreateContext();
+    RetrievalExecutor.execute(vertxContext, "target", () -> Thread.currentThread().getName())
+        .onComplete(context.succeeding(name -> context.verify(() -> {
+          assertThat(name).startsWith(RetrievalExecutor.POOL_NAME);
+          assertThat(Vertx.currentContext()).isSameAs(vertxContext);
+          assertThat(RetrievalExecutor.getBulkhead().getActive("target")).isZero();
+          context.completeNow();
+        })));
+  }
+
+  @Test
+  void testExecuteFails(Vertx vertx, VertxTestContext context) {
+    RetrievalExecutor.execute(vertx.getOrCreateContext(), "target", () -> {
+      throw new RecordRetrieverException("failed");
+    }).onComplete(context.failing(cause -> context.verify(() -> {
+      assertThat(cause).hasMessage("failed");
+      context.completeNow();
+    })));
+  }
+
+  @Test
+  void testExecuteVirtual(Vertx vertx, VertxTestContext context) {
+    Context vertxContext = vertx.getOrCreateContext();
+    RetrievalExecutor.execute(vertxContext, () -> Thread.currentThread().isVirtual(),
+            RetrievalExecutor.Mode.VIRTUAL)
+        .onComplete(context.succeeding(isVirtual -> context.verify(() -> {
+          assertThat(isVirtual).isTrue();
+          assertThat(Vertx.currentContext()).isSameAs(vertxContext);
+          context.completeNow();
+        })));
+  }
+
+  @Test
+  void testExecuteVirtualFails(Vertx vertx, VertxTestContext context) {
+    RetrievalExecutor.execute(vertx.getOrCreateContext(), () -> {
+      throw new RecordRetrieverException("failed");
+    }, RetrievalExecutor.Mode.VIRTUAL).onComplete(context.failing(cause -> context.verify(() -> {
+      assertThat(cause).hasMessage("failed");
+      context.completeNow();
+    })));
+  }
+
+  @Test
+  void testExecuteVirtualError(Vertx vertx, VertxTestContext context) {
+    RetrievalExecutor.execute(vertx.getOrCreateContext(), () -> {
+      throw new UnsatisfiedLinkError("no yaz4j");
+    }, RetrievalExecutor.Mode.VIRTUAL).onComplete(context.failing(cause -> context.verify(() -> {
+      assertThat(cause).isInstanceOf(UnsatisfiedLinkError.class).hasMessage("no yaz4j");
+      context.completeNow();
+    })));
+  }
+
+  @Test
+  void testGetMode() {
+    assertThat(RetrievalExecutor.getMode("virtual")).isEqualTo(RetrievalExecutor.Mode.VIRTUAL);
+    assertThat(RetrievalExecutor.getMode("Worker")).isEqualTo(RetrievalExecutor.Mode.WORKER);
+    assertThat(RetrievalExecutor.getMode("async")).isEqualTo(RetrievalExecutor.Mode.ASYNC);
+    assertThat(RetrievalExecutor.getMode("other")).isEqualTo(RetrievalExecutor.Mode.WORKER);
+  }
+
+  @Test
+  void testExecuteHedged(Vertx vertx, VertxTestContext context) {
+    RetrievalExecutor.executeHedged(vertx.getOrCreateContext(), "hedged", 50, () -> {
+      Thread.sleep(1000);
+      return "first";
+    }, () -> "second").onComplete(context.succeeding(result -> context.verify(() -> {
+      assertThat(result).isEqualTo("second");
+      context.completeNow();
+    })));
+  }
+
+  @Test
+  void testExecuteHedgedFast(Vertx vertx, VertxTestContext context) {
+    RetrievalExecutor.executeHedged(vertx.getOrCreateContext(), "hedged", 1000,
+        () -> "first", () -> "second"
+    ).onComplete(context.succeeding(result -> context.verify(() -> {
+      assertThat(result).isEqualTo("first");
+      context.completeNow();
+    })));
+  }
+
+  @Test
+  void testExecuteHedgedFails(Vertx vertx, VertxTestContext context) {
+    RetrievalExecutor.executeHedged(vertx.getOrCreateContext(), "hedged", 10, () -> {
+      Thread.sleep(200);
+      throw new RecordRetrieverException("first failed");
+    }, () -> {
+      throw new RecordRetrieverException("second failed");
+    }).onComplete(context.failing(cause -> context.verify(() -> {
+      assertThat(cause).hasMessage("first failed");
+      context.completeNow();
+    })));
+  }
+}
@@ -0,0 +1,62 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+class SingleFlightTest {
+
+  @Test
+  void testShared(Vertx vertx, VertxTestContext context) {
+    SingleFlight<String> singleFlight = new SingleFlight<>();
+    AtomicInteger calls = new AtomicInteger();
+    Promise<String> promise = Promise.promise();
+    Context context1 = vertx.getOrCreateContext();
+    Context context2 = vertx.getOrCreateContext();
+    Future<String> f1 = singleFlight.execute(context1, "a", () -> {
+      calls.incrementAndGet();
+      return promise.future();
+    });
+    Future<String> f2 = singleFlight.execute(context2, "a", () -> {
+      calls.incrementAndGet();
+      return Future.succeededFuture("other");
+    });
+    Future<String> f3 = singleFlight.execute(context2, "b", () -> {
+      calls.incrementAndGet();
+      return Future.succeededFuture("b");
+    });
+    assertThat(singleFlight.size()).isEqualTo(2);
+    f2.onComplete(context.succeeding(x -> context.verify(() ->
+        assertThat(Vertx.currentContext()).isSameAs(context2))));
+    promise.complete("a");
+    Future.all(f1, f2, f3).onComplete(context.succeeding(x -> context.verify(() -> {
+      assertThat(f1.result()).isEqualTo("a");
+      assertThat(f2.result()).isEqualTo("a");
+      assertThat(f3.result()).isEqualTo("b");
+      assertThat(calls.get()).isEqualTo(2);
+      assertThat(singleFlight.size()).isZero();
+      context.completeNow();
+    })));
+  }
+
+  @Test
+  void testFailure(Vertx vertx, VertxTestContext context) {
+    SingleFlight<String> singleFlight = new SingleFlight<>();
+    singleFlight.execute(vertx.getOrCreateContext(), "a", () -> {
+      throw new RecordRetrieverException("failed");
+    }).onComplete(context.failing(cause -> context.verify(() -> {
+      assertThat(cause).hasMessage("failed");
+      assertThat(singleFlight.size()).isZero();
+      context.completeNow();
+    })));
+  }
+}
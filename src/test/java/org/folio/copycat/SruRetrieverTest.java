@@ -0,0 +1,172 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.List;
+import java.util.UUID;
+import org.folio.okapi.testing.UtilityClassTester;
+import org.folio.rest.jaxrs.model.CopyCatProfile;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+class SruRetrieverTest {
+  private static final int PORT = 9233;
+  private static final String SRU_URL = "http://localhost:" + PORT + "/db";
+  private static HttpServer server;
+  private static String lastQuery;
+
+  static final String RESPONSE_START = "<?xml version=\"1.0\"?>"
+      + "<zs:searchRetrieveResponse xmlns:zs=\"http://www.loc.gov/zing/srw/\">"
+      + "<zs:version>1.2</zs:version>";
+
+  static final String RESPONSE_END = "</zs:searchRetrieveResponse>";
+
+  static void handle(HttpServerRequest request) {
+    lastQuery = request.getParam("query");
+    String response;
+    if (!"/db".equals(request.path())) {
+      request.response().setStatusCode(404).end();
+      return;
+    }
+    if (lastQuery.contains("missing")) {
+      response = RESPONSE_START + "<zs:numberOfRecords>0</zs:numberOfRecords>" + RESPONSE_END;
+    } else if (lastQuery.startsWith("bad")) {
+      response = RESPONSE_START + "<zs:numberOfRecords>0</zs:numberOfRecords>"
+          + "<zs:diagnostics><diag:diagnostic xmlns:diag=\"http://www.loc.gov/zing/srw/diagnostic/\">"
+          + "<diag:uri>info:srw/diagnostic/1/16</diag:uri>"
+          + "<diag:details>bad</diag:details>"
+          + "<diag:message>Unsupported index</diag:message>"
+          + "</diag:diagnostic></zs:diagnostics>" + RESPONSE_END;
+    } else {
+      response = RESPONSE_START + "<zs:numberOfRecords>1</zs:numberOfRecords>"
+          + "<zs:records><zs:record><zs:recordSchema>marcxml</zs:recordSchema>"
+          + "<zs:recordPacking>xml</zs:recordPacking><zs:recordData>"
+          + MarcXmlTest.RECORD
+          + "</zs:recordData><zs:recordPosition>1</zs:recordPosition></zs:record></zs:records>"
+          + RESPONSE_END;
+    }
+    request.response().putHeader("Content-Type", "text/xml").end(response);
+  }
+
+  @BeforeAll
+  static void beforeAll(Vertx vertx, VertxTestContext context) {
+    vertx.createHttpServer()
+        .requestHandler(SruRetrieverTest::handle)
+        .listen(PORT)
+        .onSuccess(x -> server = x)
+        .onComplete(context.succeedingThenComplete());
+  }
+
+  @AfterAll
+  static void afterAll(VertxTestContext context) {
+    server.close().onComplete(context.succeedingThenComplete());
+  }
+
+  static CopyCatProfile profile(String queryMap) {
+    return new CopyCatProfile()
+        .withId(UUID.randomUUID().toString())
+        .withProtocol(CopyCatProfile.Protocol.SRU)
+        .withSruUrl(SRU_URL)
+        .withExternalIdQueryMap(queryMap);
+  }
+
+  @Test
+  void constructor() {
+    UtilityClassTester.assertUtilityClass(SruRetriever.class);
+  }
+
+  @Test
+  void testIsSru() {
+    assertThat(SruRetriever.isSru(new CopyCatProfile())).isFalse();
+    assertThat(SruRetriever.isSru(new CopyCatProfile()
+        .withProtocol(CopyCatProfile.Protocol.fromValue("z3950")))).isFalse();
+    assertThat(SruRetriever.isSru(new CopyCatProfile()
+        .withProtocol(CopyCatProfile.Protocol.SRU))).isTrue();
+    // a misspelled protocol is rejected when the profile is read, not searched over Z39.50
+    JsonObject misspelled = new JsonObject().put("name", "x").put("protocol", "srw");
+    assertThatThrownBy(() -> misspelled.mapTo(CopyCatProfile.class))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void testConstructQuery() {
+    assertThat(SruRetriever.constructQuery(profile("bath.isbn=$identifier"), "0-19 \"x\\"))
+        .isEqualTo("bath.isbn=\"0-19 \\\"x\\\\\"");
+  }
+
+  @Test
+  void testGetRecord(Vertx vertx, VertxTestContext context) {
+    Context vertxContext = vertx.getOrCreateContext();
+    RecordRetriever.getRecordAsJsonObject(profile("bath.isbn=$identifier"), "0198526636",
+        vertxContext).onComplete(context.succeeding(marc -> context.verify(() -> {
+          assertThat(lastQuery).isEqualTo("bath.isbn=\"0198526636\"");
+          assertThat(marc.getString("leader")).isEqualTo("00714cam a2200205 a 4500");
+          assertThat(JsonMarc.getValues(marc, "245a")).containsExactly("København");
+          assertThat(Vertx.currentContext()).isSameAs(vertxContext);
+          context.completeNow();
+        })));
+  }
+
+  @Test
+  void testGetRecords(Vertx vertx, VertxTestContext context) {
+    RecordRetriever.getRecordsAsJsonObjects(profile("bath.isbn=$identifier"),
+        List.of("0198526636", "missing"), vertx.getOrCreateContext())
+        .onComplete(context.succeeding(records -> context.verify(() -> {
+          assertThat(records).containsOnlyKeys("0198526636");
+          context.completeNow();
+        })));
+  }
+
+  @Test
+  void testNotFound(Vertx vertx, VertxTestContext context) {
+    SruRetriever.getRecordAsJsonObject(profile("bath.isbn=$identifier"), "missing",
+        vertx.getOrCreateContext()).onComplete(context.failing(cause -> context.verify(() -> {
+          assertThat(cause).isInstanceOf(RecordNotFoundException.class)
+              .hasMessage("No record found when searching " + SRU_URL
+                  + " for identifier missing");
+          context.completeNow();
+        })));
+  }
+
+  @Test
+  void testDiagnostic(Vertx vertx, VertxTestContext context) {
+    SruRetriever.getRecordAsJsonObject(profile("bad=$identifier"), "1",
+        vertx.getOrCreateContext()).onComplete(context.failing(cause -> context.verify(() -> {
+          assertThat(cause).hasMessageContaining("returned diagnostic: Unsupported index: bad");
+          context.completeNow();
+        })));
+  }
+
+  @Test
+  void testHttpError(Vertx vertx, VertxTestContext context) {
+    CopyCatProfile profile = profile("bath.isbn=$identifier")
+        .withSruUrl("http://localhost:" + PORT + "/other");
+    SruRetriever.getRecordAsJsonObject(profile, "1", vertx.getOrCreateContext())
+        .onComplete(context.failing(cause -> context.verify(() -> {
+          assertThat(cause).hasMessage("SRU error: server http://localhost:" + PORT
+              + "/other returned HTTP status 404");
+          context.completeNow();
+        })));
+  }
+
+  @Test
+  void testMissingSruUrl(Vertx vertx, VertxTestContext context) {
+    CopyCatProfile profile = profile("bath.isbn=$identifier").withSruUrl(null);
+    SruRetriever.getRecordAsJsonObject(profile, "1", vertx.getOrCreateContext())
+        .onComplete(context.failing(cause -> context.verify(() -> {
+          assertThat(cause).hasMessage("sruUrl missing in target profile");
+          context.completeNow();
+        })));
+  }
+}
@@ -0,0 +1,64 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.List;
+import org.folio.okapi.testing.UtilityClassTester;
+import org.folio.rest.jaxrs.model.CopyCatProfile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+class WarmupTest {
+
+  @Test
+  void constructor() {
+    UtilityClassTester.assertUtilityClass(Warmup.class);
+  }
+
+  @Test
+  void testIsEnabled() {
+    assertThat(Warmup.isEnabled()).isFalse();
+  }
+
+  @Test
+  void testPrimeJit() {
+    Warmup.primeJit(10);
+    assertThat(JsonMarc.getValues(Warmup.sampleRecord(), "020a"))
+        .containsExactly("Warm-up 020");
+  }
+
+  @Test
+  void testWarmUpNoProfiles(Vertx vertx, VertxTestContext context) {
+    Warmup.warmUp(vertx.getOrCreateContext(), List.of())
+        .onComplete(context.succeedingThenComplete());
+  }
+
+  @Test
+  void testWarmUpUnavailableTargets(Vertx vertx, VertxTestContext context) {
+    CopyCatProfile z3950 = new CopyCatProfile()
+        .withEnabled(true)
+        .withUrl("localhost:9235")
+        .withExternalIdQueryMap("$identifier");
+    CopyCatProfile sru = new CopyCatProfile()
+        .withEnabled(true)
+        .withProtocol(CopyCatProfile.Protocol.SRU)
+        .withSruUrl("http://localhost:9235/sru");
+    // failures are logged only
+    Warmup.warmUp(vertx.getOrCreateContext(), List.of(z3950, sru))
+        .onComplete(context.succeedingThenComplete());
+  }
+
+  @Test
+  void testWarmUpDisabledProfile(Vertx vertx, VertxTestContext context) {
+    CopyCatProfile profile = new CopyCatProfile()
+        .withEnabled(false)
+        .withUrl("localhost:9235")
+        .withExternalIdQueryMap("$identifier");
+    Warmup.warmUp(vertx.getOrCreateContext(), List.of(profile))
+        .onComplete(context.succeedingThenComplete());
+  }
+}
@@ -0,0 +1,32 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.Vertx;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.folio.okapi.testing.UtilityClassTester;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+class WebClientsTest {
+
+  @Test
+  void constructor() {
+    UtilityClassTester.assertUtilityClass(WebClients.class);
+  }
+
+  @Test
+  void testPerVertx(Vertx vertx, VertxTestContext context) {
+    Vertx other = Vertx.vertx();
+    WebClient client = RecordImporter.getWebClient(other);
+    assertThat(RecordImporter.getWebClient(other)).isSameAs(client);
+    assertThat(RecordImporter.getWebClient(vertx)).isNotSameAs(client);
+    assertThat(SruRetriever.getWebClient(other)).isNotSameAs(client);
+    // held by the Vert.x instance only
+    assertThat(other.sharedData().getLocalMap(WebClients.MAP_NAME).size()).isEqualTo(2);
+    other.close().onComplete(context.succeedingThenComplete());
+  }
+}
@@ -0,0 +1,139 @@
+package org.folio.copycat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.ArrayList;
+import java.util.List;
+import org.folio.rest.jaxrs.model.CopyCatProfile;
+import org.folio.rest.jaxrs.model.TargetOptions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+class ZoomEngineTest {
+  private static final String HOST_INDEXDATA = "z3950.indexdata.com";
+  private static final String URL_INDEXDATA = "z3950.indexdata.com/marc";
+  private static final String EXTERNAL_ID_INDEXDATA = "780306m19009999ohu";
+  private static final int FAST_PORT = 9237;
+  private static final int SLOW_PORT = 9238;
+  private static boolean zServerAvailable = false;
+
+  @BeforeAll
+  static void beforeAll(Vertx vertx, VertxTestContext context) {
+    vertx.createNetClient()
+        .connect(210, HOST_INDEXDATA)
+        .compose(x -> {
+          zServerAvailable = true;
+          return x.close();
+        }, e -> Future.succeededFuture())
+        .onComplete(context.succeedingThenComplete());
+  }
+
+  @Test
+  void testSearch(Vertx vertx, VertxTestContext context) {
+    Assumptions.assumeTrue(zServerAvailable);
+    ZoomEngine engine = new ZoomEngine(10);
+    CopyCatProfile profile = new CopyCatProfile()
+        .withUrl(URL_INDEXDATA)
+        .withExternalIdQueryMap("$identifier");
+    Context vertxContext = vertx.getOrCreateContext();
+    List<Future<byte[]>> futures = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      futures.add(engine.search(profile, EXTERNAL_ID_INDEXDATA, "render", vertxContext));
+    }
+    futures.add(engine.search(profile, "0", "render", vertxContext)
+        .recover(e -> {
+          assertThat(e).isInstanceOf(RecordNotFoundException.class);
+          return Future.succeededFuture(new byte[0]);
+        }));
+    Future.all(futures).onComplete(context.succeeding(x -> context.verify(() -> {
+      for (int i = 0; i < 5; i++) {
+        assertThat(new String(futures.get(i).result())).contains("008 " + EXTERNAL_ID_INDEXDATA);
+      }
+      assertThat(Vertx.currentContext()).isSameAs(vertxContext);
+      assertThat(engine.getQueued()).isZero();
+      context.completeNow();
+    })));
+  }
+
+  @Test
+  void testConnectionRefused(Vertx vertx, VertxTestContext context) {
+    ZoomEngine engine = new ZoomEngine(10);
+    CopyCatProfile profile = new CopyCatProfile()
+        .withUrl("localhost:9234/db")
+        .withExternalIdQueryMap("$identifier");
+    engine.search(profile, "1", "render", vertx.getOrCreateContext())
+        .onComplete(context.failing(cause -> context.verify(() -> {
+          assertThat(cause).hasMessageStartingWith("Z39.50 error: ");
+          context.completeNow();
+        })));
+  }
+
+  @Test
+  void testBadProfile(Vertx vertx, VertxTestContext context) {
+    ZoomEngine engine = new ZoomEngine(10);
+    CopyCatProfile profile = new CopyCatProfile()
+        .withUrl("localhost:9234/db")
+        .withExternalIdQueryMap("$identifier")
+        .withTargetOptions(new TargetOptions().withAdditionalProperty("bad", List.of()));
+    engine.search(profile, "1", "render", vertx.getOrCreateContext())
+        .onComplete(context.failing(cause -> context.verify(() -> {
+          assertThat(cause).hasMessageStartingWith("Illegal options type for key bad");
+          engine.search(new CopyCatProfile(), "1", "render", vertx.getOrCreateContext())
+              .onComplete(context.failing(cause2 -> context.verify(() -> {
+                assertThat(cause2).hasMessage("url missing in target profile");
+                context.completeNow();
+              })));
+        })));
+  }
+
+  static CopyCatProfile mockProfile(int port, int timeout) {
+    return new CopyCatProfile()
+        .withUrl("localhost:" + port + "/db")
+        .withExternalIdQueryMap("$identifier")
+        .withTargetOptions(new TargetOptions().withAdditionalProperty("timeout", timeout));
+  }
+
+  @Test
+  void testFastNotWaitingForSlow(Vertx vertx, VertxTestContext context) {
+    ZoomEngine engine = new ZoomEngine(10);
+    MockTarget fastTarget = new MockTarget(vertx);
+    MockTarget slowTarget = new MockTarget(vertx);
+    slowTarget.setSearchDelay(-1);
+    Context vertxContext = vertx.getOrCreateContext();
+    fastTarget.start(FAST_PORT)
+        .compose(x -> slowTarget.start(SLOW_PORT))
+        .compose(x -> {
+          // keeps the engine busy, so that the next two searches share a cycle
+          engine.search(mockProfile(SLOW_PORT, 1), "0", "render", vertxContext);
+          return vertx.executeBlocking(() -> {
+            while (engine.getQueued() > 0) {
+              Thread.sleep(10);
+            }
+            return null;
+          });
+        })
+        .compose(x -> {
+          Future<byte[]> slow = engine.search(mockProfile(SLOW_PORT, 3), "1", "render",
+              vertxContext);
+          return engine.search(mockProfile(FAST_PORT, 3), "1", "render", vertxContext)
+              .transform(ar -> {
+                assertThat(ar.cause()).isInstanceOf(RecordNotFoundException.class);
+                assertThat(slow.isComplete()).isFalse();
+                return slow.transform(ar2 -> {
+                  assertThat(ar2.cause()).hasMessageStartingWith("Z39.50 error: ");
+                  return Future.succeededFuture();
+                });
+              });
+        })
+        .eventually(() -> Future.join(fastTarget.close(), slowTarget.close()))
+        .onComplete(context.succeedingThenComplete());
+  }
+}
@@ -2,6 +2,7 @@ package org.folio.rest.impl;
 
 import io.vertx.core.Context;
 import io.vertx.core.Future;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -12,14 +13,25 @@ import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import javax.ws.rs.core.Response;
 import org.apache.commons.collections4.map.CaseInsensitiveMap;
+import org.folio.copycat.RecordNotFoundException;
+import org.folio.copycat.RecordRetriever;
+import org.folio.copycat.SharedRecordCache;
 import org.folio.okapi.common.XOkapiHeaders;
 import org.folio.postgres.testing.PostgresTesterContainer;
+import org.folio.rest.jaxrs.model.CopyCatBatchImports;
+import org.folio.rest.jaxrs.model.CopyCatBatchItem;
 import org.folio.rest.jaxrs.model.CopyCatCollection;
+import org.folio.rest.jaxrs.model.CopyCatHit;
+import org.folio.rest.jaxrs.model.CopyCatImportJob;
 import org.folio.rest.jaxrs.model.CopyCatImports;
 import org.folio.rest.jaxrs.model.CopyCatProfile;
+import org.folio.rest.jaxrs.model.CopyCatSearch;
+import org.folio.rest.jaxrs.model.CopyCatTargets;
 import org.folio.rest.jaxrs.model.Errors;
 import org.folio.rest.jaxrs.model.Record;
+import org.folio.rest.jaxrs.model.TargetOptions;
 import org.folio.rest.jaxrs.model.TenantAttributes;
 import org.folio.rest.jaxrs.resource.Copycat;
 import org.folio.rest.persist.PgUtil;
@@ -135,6 +147,106 @@ class CopycatTest {
     })), vertxContext);
   }
 
+  @Test
+  void testAddProfileBadPlan(Vertx vertx, VertxTestContext context) {
+    Copycat api = new CopycatImpl();
+
+    Map<String, String> headers = new CaseInsensitiveMap<>();
+    headers.put(XOkapiHeaders.TENANT, tenant);
+
+    CopyCatProfile badPath = new CopyCatProfile()
+        .withName("index data")
+        .withUrl(URL_INDEXDATA)
+        .withExternalIdQueryMap("$identifier")
+        .withInternalIdEmbedPath("999ff");
+    CopyCatProfile badOption = new CopyCatProfile()
+        .withName("index data")
+        .withUrl(URL_INDEXDATA)
+        .withExternalIdQueryMap("$identifier")
+        .withTargetOptions(new TargetOptions().withAdditionalProperty("timeout", "x"));
+    Context vertxContext = vertx.getOrCreateContext();
+    api.postCopycatProfiles(badPath, headers, context.succeeding(res1 -> context.verify(() -> {
+      assertThat(res1.getStatus()).isEqualTo(400);
+      assertThat(res1.getEntity()).isEqualTo("Bad internalIdEmbedPath 999ff:"
+          + " pattern must be exactly 7 characters (3+2+$+subfield)");
+      api.putCopycatProfilesById(UUID.randomUUID().toString(), badOption, headers,
+          context.succeeding(res2 -> context.verify(() -> {
+        assertThat(res2.getStatus()).isEqualTo(400);
+        assertThat(res2.getEntity()).isEqualTo("Target option timeout must be an integer: x");
+        context.completeNow();
+      })), vertxContext);
+    })), vertxContext);
+  }
+
+  @Test
+  void testGetTargets(Vertx vertx, VertxTestContext context) {
+    Copycat api = new CopycatImpl();
+
+    Map<String, String> headers = new CaseInsensitiveMap<>();
+    headers.put(XOkapiHeaders.TENANT, tenant);
+
+    CopyCatProfile copycatProfile = new CopyCatProfile()
+        .withName("targets")
+        .withUrl("targets.example.org:210/db")
+        .withExternalIdQueryMap("@attr 1=12 $identifier");
+    Context vertxContext = vertx.getOrCreateContext();
+    api.postCopycatProfiles(copycatProfile, headers, context.succeeding(res1 -> context.verify(() -> {
+      assertThat(res1.getStatus()).isEqualTo(201);
+      String id = ((CopyCatProfile) res1.getEntity()).getId();
+      api.getCopycatTargets(headers, context.succeeding(res2 -> context.verify(() -> {
+        assertThat(res2.getStatus()).isEqualTo(200);
+        CopyCatTargets targets = (CopyCatTargets) res2.getEntity();
+        assertThat(targets.getTargets()).anySatisfy(target -> {
+          assertThat(target.getUrl()).isEqualTo("targets.example.org:210/db");
+          assertThat(target.getState()).isEqualTo("CLOSED");
+          assertThat(target.getFailures()).isZero();
+        });
+        api.deleteCopycatProfilesById(id, headers, context.succeeding(res3 -> context.verify(() ->
+            context.completeNow()
+        )), vertxContext);
+      })), vertxContext);
+    })), vertxContext);
+  }
+
+  @Test
+  void testGetTargetsSru(Vertx vertx, VertxTestContext context) {
+    Copycat api = new CopycatImpl();
+
+    Map<String, String> headers = new CaseInsensitiveMap<>();
+    headers.put(XOkapiHeaders.TENANT, tenant);
+
+    String sruUrl = "http://targets.example.org/sru";
+    for (int i = 0; i < 5; i++) {
+      RecordRetriever.getCircuitBreaker().onFailure(sruUrl);
+    }
+    CopyCatProfile copycatProfile = new CopyCatProfile()
+        .withName("sru targets")
+        .withUrl("targets.example.org:210/other")
+        .withProtocol(CopyCatProfile.Protocol.SRU)
+        .withSruUrl(sruUrl)
+        .withExternalIdQueryMap("bath.isbn=$identifier");
+    Context vertxContext = vertx.getOrCreateContext();
+    api.postCopycatProfiles(copycatProfile, headers, context.succeeding(res1 -> context.verify(() -> {
+      assertThat(res1.getStatus()).isEqualTo(201);
+      String id = ((CopyCatProfile) res1.getEntity()).getId();
+      api.getCopycatTargets(headers, context.succeeding(res2 -> context.verify(() -> {
+        assertThat(res2.getStatus()).isEqualTo(200);
+        CopyCatTargets targets = (CopyCatTargets) res2.getEntity();
+        assertThat(targets.getTargets()).anySatisfy(target -> {
+          assertThat(target.getUrl()).isEqualTo(sruUrl);
+          assertThat(target.getState()).isEqualTo("OPEN");
+          assertThat(target.getFailures()).isEqualTo(5);
+        });
+        // the Z39.50 URL is not used by the profile
+        assertThat(targets.getTargets())
+            .noneMatch(target -> target.getUrl().equals("targets.example.org:210/other"));
+        api.deleteCopycatProfilesById(id, headers, context.succeeding(res3 -> context.verify(() ->
+            context.completeNow()
+        )), vertxContext);
+      })), vertxContext);
+    })), vertxContext);
+  }
+
   @Test
   void testAddProfileWithEmptyAllowedJobProfileIds(Vertx vertx, VertxTestContext context) {
     Copycat api = new CopycatImpl();
@@ -189,7 +301,7 @@ class CopycatTest {
     CopyCatImports copyCatImports = new CopyCatImports()
         .withProfileId(profileId)
         .withExternalIdentifier(EXTERNAL_ID_INDEXDATA);
-    api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+    api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
       assertThat(res.getStatus()).isEqualTo(400);
       Errors errors = (Errors) res.getEntity();
       assertThat(errors.getErrors().get(0).getMessage()).contains("No such profileId " + profileId);
@@ -221,7 +333,7 @@ class CopycatTest {
       CopyCatImports copyCatImports = new CopyCatImports()
           .withProfileId(targetProfileId)
           .withExternalIdentifier(EXTERNAL_ID_INDEXDATA); // gets 1 record
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(200);
         CopyCatImports importResposne = (CopyCatImports) res.getEntity();
         assertThat(importResposne.getInternalIdentifier()).isEqualTo(mock.getInstanceId());
@@ -233,6 +345,243 @@ class CopycatTest {
     })), vertxContext);
   }
 
+  @Test
+  void testImportAdditionalProfiles(Vertx vertx, VertxTestContext context) {
+    Assumptions.assumeTrue(zServerAvailable);
+    Copycat api = new CopycatImpl();
+
+    Map<String, String> headers = new CaseInsensitiveMap<>();
+    headers.put(XOkapiHeaders.TENANT, tenant);
+    headers.put(XOkapiHeaders.URL, "http://localhost:" + MOCK_PORT);
+    headers.put(XOkapiHeaders.USER_ID, UUID.randomUUID().toString());
+
+    Context vertxContext = vertx.getOrCreateContext();
+
+    // first profile can not deliver, so record from second profile is used
+    CopyCatProfile profile1 = new CopyCatProfile()
+        .withName("no url")
+        .withExternalIdQueryMap("$identifier")
+        .withCreateJobProfileId("defaultCreateJobProfileId");
+    CopyCatProfile profile2 = new CopyCatProfile()
+        .withName("index data")
+        .withUrl(URL_INDEXDATA)
+        .withExternalIdQueryMap("$identifier");
+    api.postCopycatProfiles(profile1, headers, context.succeeding(res1 -> context.verify(() -> {
+      String profileId1 = ((CopyCatProfile) res1.getEntity()).getId();
+      api.postCopycatProfiles(profile2, headers, context.succeeding(res2 -> context.verify(() -> {
+        String profileId2 = ((CopyCatProfile) res2.getEntity()).getId();
+        CopyCatImports copyCatImports = new CopyCatImports()
+            .withProfileId(profileId1)
+            .withAdditionalProfileIds(List.of(profileId2))
+            .withExternalIdentifier(EXTERNAL_ID_INDEXDATA);
+        api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+          assertThat(res.getStatus()).isEqualTo(200);
+          assertThat(profile1.getCreateJobProfileId()).isEqualTo(mock.getLastJobProfileJobId());
+          api.deleteCopycatProfilesById(profileId1, headers, context.succeeding(res3 -> context.verify(() ->
+              api.deleteCopycatProfilesById(profileId2, headers, context.succeeding(res4 -> context.verify(() ->
+                  context.completeNow()
+              )), vertxContext)
+          )), vertxContext);
+        })), vertxContext);
+      })), vertxContext);
+    })), vertxContext);
+  }
+
+  @Test
+  void testImportAdditionalProfileNoProfile(Vertx vertx, VertxTestContext context) {
+    Copycat api = new CopycatImpl();
+
+    Map<String, String> headers = new CaseInsensitiveMap<>();
+    headers.put(XOkapiHeaders.TENANT, tenant);
+    headers.put(XOkapiHeaders.URL, "http://localhost:" + MOCK_PORT);
+    headers.put(XOkapiHeaders.USER_ID, UUID.randomUUID().toString());
+
+    Context vertxContext = vertx.getOrCreateContext();
+
+    CopyCatProfile copyCatProfile = new CopyCatProfile()
+        .withName("no url")
+        .withExternalIdQueryMap("$identifier");
+    api.postCopycatProfiles(copyCatProfile, headers, context.succeeding(res1 -> context.verify(() -> {
+      String targetProfileId = ((CopyCatProfile) res1.getEntity()).getId();
+      String profileId = UUID.randomUUID().toString();
+      CopyCatImports copyCatImports = new CopyCatImports()
+          .withProfileId(targetProfileId)
+          .withAdditionalProfileIds(List.of(profileId))
+          .withExternalIdentifier(EXTERNAL_ID_INDEXDATA);
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+        assertThat(res.getStatus()).isEqualTo(400);
+        Errors errors = (Errors) res.getEntity();
+        assertThat(errors.getErrors().get(0).getMessage()).isEqualTo("No such profileId " + profileId);
+        api.deleteCopycatProfilesById(targetProfileId, headers, context.succeeding(res3 -> context.verify(() ->
+            context.completeNow()
+        )), vertxContext);
+      })), vertxContext);
+    })), vertxContext);
+  }
+
+  @Test
+  void testSearchAndImport(Vertx vertx, VertxTestContext context) {
+    Assumptions.assumeTrue(zServerAvailable);
+    Copycat api = new CopycatImpl();
+
+    Map<String, String> headers = new CaseInsensitiveMap<>();
+    headers.put(XOkapiHeaders.TENANT, tenant);
+    headers.put(XOkapiHeaders.URL, "http://localhost:" + MOCK_PORT);
+    headers.put(XOkapiHeaders.USER_ID, UUID.randomUUID().toString());
+
+    Context vertxContext = vertx.getOrCreateContext();
+
+    CopyCatProfile copyCatProfile = new CopyCatProfile()
+        .withName("index data")
+        .withUrl(URL_INDEXDATA)
+        .withExternalIdQueryMap("$identifier")
+        .withCreateJobProfileId("defaultCreateJobProfileId");
+    api.postCopycatProfiles(copyCatProfile, headers, context.succeeding(res1 -> context.verify(() -> {
+      String targetProfileId = ((CopyCatProfile) res1.getEntity()).getId();
+      api.getCopycatSearch(targetProfileId, EXTERNAL_ID_INDEXDATA, null, 0, 10, headers,
+          context.succeeding(res2 -> context.verify(() -> {
+        assertThat(res2.getStatus()).isEqualTo(200);
+        CopyCatSearch search = (CopyCatSearch) res2.getEntity();
+        assertThat(search.getTotalRecords()).isEqualTo(1);
+        assertThat(search.getHits()).hasSize(1);
+        assertThat(search.getHits().get(0).getPosition()).isZero();
+        assertThat(search.getHits().get(0).getTitle()).isNotNull();
+        // next page of same result set
+        api.getCopycatSearch(targetProfileId, null, search.getResultSetId(), 1, 10, headers,
+            context.succeeding(res3 -> context.verify(() -> {
+          assertThat(res3.getStatus()).isEqualTo(200);
+          assertThat(((CopyCatSearch) res3.getEntity()).getHits()).isEmpty();
+          CopyCatImports copyCatImports = new CopyCatImports()
+              .withProfileId(targetProfileId)
+              .withResultSetId(search.getResultSetId())
+              .withPosition(0);
+          api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res4 -> context.verify(() -> {
+            assertThat(res4.getStatus()).isEqualTo(200);
+            assertThat(((CopyCatImports) res4.getEntity()).getInternalIdentifier())
+                .isEqualTo(mock.getInstanceId());
+            api.deleteCopycatProfilesById(targetProfileId, headers, context.succeeding(res5 -> context.verify(() ->
+                context.completeNow()
+            )), vertxContext);
+          })), vertxContext);
+        })), vertxContext);
+      })), vertxContext);
+    })), vertxContext);
+  }
+
+  @Test
+  void testSearchErrors(Vertx vertx, VertxTestContext context) {
+    Copycat api = new CopycatImpl();
+
+    Map<String, String> headers = new CaseInsensitiveMap<>();
+    headers.put(XOkapiHeaders.TENANT, tenant);
+
+    Context vertxContext = vertx.getOrCreateContext();
+
+    CopyCatProfile copyCatProfile = new CopyCatProfile()
+        .withName("index data")
+        .withUrl(URL_INDEXDATA)
+        .withExternalIdQueryMap("$identifier");
+    String unknownId = UUID.randomUUID().toString();
+    api.getCopycatSearch(unknownId, "1", null, 0, 10, headers, context.succeeding(res1 -> context.verify(() -> {
+      assertThat(res1.getStatus()).isEqualTo(400);
+      assertThat(res1.getEntity()).isEqualTo("No such profileId " + unknownId);
+      api.postCopycatProfiles(copyCatProfile, headers, context.succeeding(res2 -> context.verify(() -> {
+        String targetProfileId = ((CopyCatProfile) res2.getEntity()).getId();
+        api.getCopycatSearch(targetProfileId, null, null, 0, 10, headers, context.succeeding(res3 -> context.verify(() -> {
+          assertThat(res3.getStatus()).isEqualTo(400);
+          assertThat(res3.getEntity()).isEqualTo("One of externalIdentifier or resultSetId must be given");
+          api.getCopycatSearch(targetProfileId, null, unknownId, 0, 10, headers, context.succeeding(res4 -> context.verify(() -> {
+            assertThat(res4.getStatus()).isEqualTo(404);
+            assertThat(res4.getEntity()).isEqualTo("No result set " + unknownId + " for profile "
+                + targetProfileId);
+            api.deleteCopycatProfilesById(targetProfileId, headers, context.succeeding(res5 -> context.verify(() ->
+                context.completeNow()
+            )), vertxContext);
+          })), vertxContext);
+        })), vertxContext);
+      })), vertxContext);
+    })), vertxContext);
+  }
+
+  @Test
+  void testSharedRecordCache(Vertx vertx, VertxTestContext context) {
+    Map<String, String> headers = new CaseInsensitiveMap<>();
+    headers.put(XOkapiHeaders.TENANT, tenant);
+    Context vertxContext = vertx.getOrCreateContext();
+    SharedRecordCache cache = new SharedRecordCache(PgUtil.postgresClient(vertxContext, headers),
+        tenant);
+    JsonObject record = new JsonObject().put("leader", "00714cam a2200205 a 4500");
+    String profileId = UUID.randomUUID().toString();
+    cache.put("k1", profileId, record, 60000)
+        .compose(x -> cache.put("k2", profileId, record, -1))
+        .compose(x -> cache.put("k3", UUID.randomUUID().toString(), record, -1))
+        .compose(x -> cache.get("k1"))
+        .compose(found -> {
+          assertThat(found).isEqualTo(record);
+          return cache.get("k2");
+        })
+        .compose(found -> {
+          assertThat(found).isNull();
+          return SharedRecordCache.purge(PostgresClient.getInstance(vertx),
+              PostgresClient.convertToPsqlStandard(tenant), 1);
+        })
+        .compose(count -> {
+          assertThat(count).isEqualTo(2);
+          return cache.invalidate(profileId);
+        })
+        .compose(count -> {
+          assertThat(count).isEqualTo(1);
+          return cache.get("k1");
+        })
+        .onComplete(context.succeeding(found -> context.verify(() -> {
+          assertThat(found).isNull();
+          context.completeNow();
+        })));
+  }
+
+  @Test
+  void testToHit() {
+    JsonObject marc = new JsonObject()
+        .put("fields", new JsonArray()
+            .add(new JsonObject().put("001", "123"))
+            .add(new JsonObject().put("020", new JsonObject()
+                .put("subfields", new JsonArray().add(new JsonObject().put("a", "0198526636 :")))))
+            .add(new JsonObject().put("100", new JsonObject()
+                .put("subfields", new JsonArray().add(new JsonObject().put("a", "Smith, John,")))))
+            .add(new JsonObject().put("245", new JsonObject()
+                .put("subfields", new JsonArray()
+                    .add(new JsonObject().put("a", "Title :"))
+                    .add(new JsonObject().put("b", "subtitle /")))))
+            .add(new JsonObject().put("264", new JsonObject()
+                .put("subfields", new JsonArray()
+                    .add(new JsonObject().put("b", "Publisher,"))
+                    .add(new JsonObject().put("c", "2001."))))));
+    assertThat(CopycatImpl.toHit(3, marc))
+        .usingRecursiveComparison()
+        .isEqualTo(new CopyCatHit()
+            .withPosition(3)
+            .withIdentifier("123")
+            .withTitle("Title : subtitle")
+            .withAuthor("Smith, John")
+            .withPublisher("Publisher")
+            .withDate("2001.")
+            .withIsbns(List.of("0198526636")));
+    assertThat(CopycatImpl.toHit(4, null))
+        .usingRecursiveComparison()
+        .isEqualTo(new CopyCatHit().withPosition(4));
+  }
+
+  @Test
+  void testCheckHit() {
+    JsonObject marc = new JsonObject().put("fields", new JsonArray()
+        .add(new JsonObject().put("001", "123 ")));
+    assertThat(CopycatImpl.checkHit(marc, null, 0, "rs").result()).isSameAs(marc);
+    assertThat(CopycatImpl.checkHit(marc, "123", 0, "rs").result()).isSameAs(marc);
+    Future<JsonObject> other = CopycatImpl.checkHit(marc, "456", 2, "rs");
+    assertThat(other.cause()).isInstanceOf(RecordNotFoundException.class)
+        .hasMessage("Record at position 2 in result set rs has identifier 123, not 456");
+  }
+
   @Test
   void testImportProfileWithSelectedJobProfileFromCreateJobProfileIds(Vertx vertx, VertxTestContext context) {
     Assumptions.assumeTrue(zServerAvailable);
@@ -259,7 +608,7 @@ class CopycatTest {
           .withProfileId(targetProfileId)
           .withExternalIdentifier(EXTERNAL_ID_INDEXDATA)
           .withSelectedJobProfileId("selectedCreateJobProfileId"); // gets 1 record
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(200);
         CopyCatImports importResposne = (CopyCatImports) res.getEntity();
         assertThat(importResposne.getInternalIdentifier()).isEqualTo(mock.getInstanceId());
@@ -302,7 +651,7 @@ class CopycatTest {
           .withInternalIdentifier("1234")
           .withExternalIdentifier(EXTERNAL_ID_INDEXDATA)
           .withSelectedJobProfileId("selectedUpdateJobProfileId"); // gets 1 record
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(200);
         CopyCatImports importsResponse = (CopyCatImports) res.getEntity();
         assertThat(importsResponse.getInternalIdentifier()).isEqualTo("1234");
@@ -339,7 +688,7 @@ class CopycatTest {
           .withProfileId(targetProfileId)
           .withExternalIdentifier(EXTERNAL_ID_INDEXDATA)
           .withSelectedJobProfileId("invalidJobProfileId"); // gets 1 record
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(400);
         Errors errors = (Errors) res.getEntity();
         assertThat(errors.getErrors().get(0).getMessage()).isEqualTo("Invalid job profile id");
@@ -371,7 +720,7 @@ class CopycatTest {
       CopyCatImports copyCatImports = new CopyCatImports()
           .withProfileId(targetProfileId)
           .withExternalIdentifier(EXTERNAL_ID_INDEXDATA);
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(400);
         Errors errors = (Errors) res.getEntity();
         assertThat(errors.getErrors().size()).isEqualTo(1);
@@ -405,7 +754,7 @@ class CopycatTest {
       CopyCatImports copyCatImports = new CopyCatImports()
           .withProfileId(targetProfileId)
           .withExternalIdentifier(EXTERNAL_ID_INDEXDATA);
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(400);
         Errors errors = (Errors) res.getEntity();
         assertThat(errors.getErrors().size()).isEqualTo(1);
@@ -440,7 +789,7 @@ class CopycatTest {
       CopyCatImports copyCatImports = new CopyCatImports()
           .withProfileId(targetProfileId)
           .withExternalIdentifier(EXTERNAL_ID_INDEXDATA); // gets 1 record
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(400);
         Errors errors = (Errors) res.getEntity();
         assertThat(errors.getErrors().get(0).getMessage()).contains("Connection refused");
@@ -472,7 +821,7 @@ class CopycatTest {
       CopyCatImports copyCatImports = new CopyCatImports()
           .withProfileId(targetProfileId)
           .withExternalIdentifier(EXTERNAL_ID_INDEXDATA); // gets 1 record
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(400);
         Errors errors = (Errors) res.getEntity();
         assertThat(errors.getErrors().get(0).getMessage()).isEqualTo("Missing " + XOkapiHeaders.USER_ID + " header");
@@ -503,7 +852,7 @@ class CopycatTest {
       CopyCatImports copyCatImports = new CopyCatImports()
           .withProfileId(targetProfileId)
           .withExternalIdentifier(EXTERNAL_ID_INDEXDATA); // gets 1 record
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(400);
         Errors errors = (Errors) res.getEntity();
         assertThat(errors.getErrors().get(0).getMessage()).isEqualTo("Missing " + XOkapiHeaders.URL + " header");
@@ -543,7 +892,7 @@ class CopycatTest {
           .withProfileId(targetProfileId)
           .withInternalIdentifier("1234")
           .withExternalIdentifier(EXTERNAL_ID_INDEXDATA); // gets 1 record
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(200);
         CopyCatImports importsResponse = (CopyCatImports) res.getEntity();
         assertThat(importsResponse.getInternalIdentifier()).isEqualTo("1234");
@@ -581,7 +930,7 @@ class CopycatTest {
       CopyCatImports copyCatImports = new CopyCatImports()
         .withProfileId(targetProfileId)
         .withExternalIdentifier(EXTERNAL_ID_INDEXDATA); // gets 1 record
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(200);
         CopyCatImports importsResponse = (CopyCatImports) res.getEntity();
         assertThat(importsResponse.getInternalIdentifier()).isNull(); // poll failed so no internalIdentifier
@@ -615,7 +964,7 @@ class CopycatTest {
           .withProfileId(targetProfileId)
           .withInternalIdentifier("1234")
           .withExternalIdentifier(EXTERNAL_ID_INDEXDATA); // gets 1 record
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(400);
         Errors errors = (Errors) res.getEntity();
         assertThat(errors.getErrors().get(0).getMessage()).isEqualTo("Missing internalIdEmbedPath in target profile");
@@ -626,6 +975,103 @@ class CopycatTest {
     })), vertxContext);
   }
 
+  @Test
+  void testImportBatch(Vertx vertx, VertxTestContext context) {
+    Assumptions.assumeTrue(zServerAvailable);
+    Copycat api = new CopycatImpl();
+
+    Map<String, String> headers = new CaseInsensitiveMap<>();
+    headers.put(XOkapiHeaders.TENANT, tenant);
+    headers.put(XOkapiHeaders.URL, "http://localhost:" + MOCK_PORT);
+    headers.put(XOkapiHeaders.USER_ID, UUID.randomUUID().toString());
+    Context vertxContext = vertx.getOrCreateContext();
+
+    CopyCatProfile copyCatProfile = new CopyCatProfile()
+        .withName("index data")
+        .withUrl(URL_INDEXDATA)
+        .withExternalIdQueryMap("$identifier")
+        .withCreateJobProfileId("defaultCreateJobProfileId");
+    api.postCopycatProfiles(copyCatProfile, headers, context.succeeding(res1 -> context.verify(() -> {
+      String targetProfileId = ((CopyCatProfile) res1.getEntity()).getId();
+      CopyCatBatchImports batch = new CopyCatBatchImports()
+          .withProfileId(targetProfileId)
+          .withItems(List.of(
+              new CopyCatBatchItem().withExternalIdentifier(EXTERNAL_ID_INDEXDATA),
+              new CopyCatBatchItem().withExternalIdentifier("1234")));
+      api.postCopycatImportsBatch(batch, headers, context.succeeding(res -> context.verify(() -> {
+        assertThat(res.getStatus()).isEqualTo(200);
+        CopyCatBatchImports response = (CopyCatBatchImports) res.getEntity();
+        assertThat(response.getTotalImported()).isEqualTo(1);
+        assertThat(response.getItems()).extracting(CopyCatBatchItem::getStatus)
+            .containsExactly(CopyCatBatchItem.Status.IMPORTED, CopyCatBatchItem.Status.FAILED);
+        assertThat(response.getItems().get(1).getMessage())
+            .isEqualTo("No record found when searching z3950.indexdata.com/marc for identifier 1234");
+        assertThat(mock.getLastJobProfileJobId()).isEqualTo("defaultCreateJobProfileId");
+        api.deleteCopycatProfilesById(targetProfileId, headers, context.succeeding(res3 ->
+            context.completeNow()
+        ), vertxContext);
+      })), vertxContext);
+    })), vertxContext);
+  }
+
+  @Test
+  void testImportBatchMixedItems(Vertx vertx, VertxTestContext context) {
+    Copycat api = new CopycatImpl();
+
+    Map<String, String> headers = new CaseInsensitiveMap<>();
+    headers.put(XOkapiHeaders.TENANT, tenant);
+    headers.put(XOkapiHeaders.URL, "http://localhost:" + MOCK_PORT);
+    headers.put(XOkapiHeaders.USER_ID, UUID.randomUUID().toString());
+    Context vertxContext = vertx.getOrCreateContext();
+
+    CopyCatProfile copyCatProfile = new CopyCatProfile()
+        .withName("index data")
+        .withUrl(URL_INDEXDATA)
+        .withExternalIdQueryMap("$identifier");
+    api.postCopycatProfiles(copyCatProfile, headers, context.succeeding(res1 -> context.verify(() -> {
+      String targetProfileId = ((CopyCatProfile) res1.getEntity()).getId();
+      CopyCatBatchImports batch = new CopyCatBatchImports()
+          .withProfileId(targetProfileId)
+          .withItems(List.of(
+              new CopyCatBatchItem().withExternalIdentifier("1"),
+              new CopyCatBatchItem().withExternalIdentifier("2")
+                  .withInternalIdentifier(UUID.randomUUID().toString())));
+      api.postCopycatImportsBatch(batch, headers, context.succeeding(res -> context.verify(() -> {
+        assertThat(res.getStatus()).isEqualTo(400);
+        Errors errors = (Errors) res.getEntity();
+        assertThat(errors.getErrors().get(0).getMessage())
+            .isEqualTo("Items must all have internalIdentifier or none");
+        api.deleteCopycatProfilesById(targetProfileId, headers, context.succeeding(res3 ->
+            context.completeNow()
+        ), vertxContext);
+      })), vertxContext);
+    })), vertxContext);
+  }
+
+  @Test
+  void testForEachBounded(Vertx vertx, VertxTestContext context) {
+    int[] pending = new int[1];
+    int[] maxPending = new int[1];
+    vertx.runOnContext(x ->
+        CopycatImpl.forEachBounded(List.of(1, 2, 3, 4, 5, 6, 7), 3, i -> {
+          if (i == 4) {
+            throw new IllegalArgumentException("bad " + i);
+          }
+          pending[0]++;
+          maxPending[0] = Math.max(maxPending[0], pending[0]);
+          return vertx.timer(5).map(y -> {
+            pending[0]--;
+            return i * 10;
+          });
+        }).onComplete(context.succeeding(results -> context.verify(() -> {
+          assertThat(maxPending[0]).isEqualTo(3);
+          assertThat(results).hasSize(7);
+          assertThat(results.get(3).cause()).hasMessage("bad 4");
+          assertThat(results.get(6).result()).isEqualTo(70);
+          context.completeNow();
+        }))));
+  }
+
   @Test
   void testImportProfileZeroHits(Vertx vertx, VertxTestContext context) {
     Assumptions.assumeTrue(zServerAvailable);
@@ -648,7 +1094,7 @@ class CopycatTest {
       CopyCatImports copyCatImports = new CopyCatImports()
           .withProfileId(targetProfileId)
           .withExternalIdentifier("1234"); // gets 0 record(s)
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(400);
         Errors errors = (Errors) res.getEntity();
         assertThat(errors.getErrors().size()).isEqualTo(1);
@@ -673,7 +1119,7 @@ class CopycatTest {
     CopyCatImports copyCatImports = new CopyCatImports()
         .withProfileId(profileId)
         .withExternalIdentifier("does not matter");
-    api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+    api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
       assertThat(res.getStatus()).isEqualTo(400);
       Errors errors = (Errors) res.getEntity();
       assertThat(errors.getErrors().size()).isEqualTo(1);
@@ -704,7 +1150,7 @@ class CopycatTest {
       CopyCatImports copyCatImports = new CopyCatImports()
           .withProfileId(targetProfileId)
           .withRecord(record);
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(200);
         api.deleteCopycatProfilesById(targetProfileId, headers, context.succeeding(res3 -> context.verify(() ->
             context.completeNow()
@@ -713,6 +1159,212 @@ class CopycatTest {
     })), vertxContext);
   }
 
+  static Future<CopyCatImportJob> pollImportJob(Copycat api, String id,
+      Map<String, String> headers, Vertx vertx, Context vertxContext) {
+
+    Promise<Response> promise = Promise.promise();
+    api.getCopycatImportsById(id, headers, promise, vertxContext);
+    return promise.future().compose(res -> {
+      assertThat(res.getStatus()).isEqualTo(200);
+      CopyCatImportJob job = (CopyCatImportJob) res.getEntity();
+      if (job.getCompletedAt() != null) {
+        return Future.succeededFuture(job);
+      }
+      return vertx.timer(50).compose(x -> pollImportJob(api, id, headers, vertx, vertxContext));
+    });
+  }
+
+  @Test
+  void testImportAsync(Vertx vertx, VertxTestContext context) throws IOException {
+    Copycat api = new CopycatImpl();
+
+    Map<String, String> headers = new CaseInsensitiveMap<>();
+    headers.put(XOkapiHeaders.TENANT, tenant);
+    headers.put(XOkapiHeaders.URL, "http://localhost:" + MOCK_PORT);
+    headers.put(XOkapiHeaders.USER_ID, UUID.randomUUID().toString());
+
+    Context vertxContext = vertx.getOrCreateContext();
+
+    String file = new String(getClass().getClassLoader().getResourceAsStream("marc1.json").readAllBytes());
+
+    CopyCatProfile copyCatProfile = new CopyCatProfile().withName("local");
+    api.postCopycatProfiles(copyCatProfile, headers, context.succeeding(res1 -> context.verify(() -> {
+      String targetProfileId = ((CopyCatProfile) res1.getEntity()).getId();
+      CopyCatImports copyCatImports = new CopyCatImports()
+          .withProfileId(targetProfileId)
+          .withRecord(new Record().withJson(file));
+      api.postCopycatImports(true, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+        assertThat(res.getStatus()).isEqualTo(202);
+        CopyCatImportJob job = (CopyCatImportJob) res.getEntity();
+        assertThat(job.getPhase()).isEqualTo(CopyCatImportJob.Phase.RETRIEVING);
+        assertThat(res.getHeaderString("Location")).isEqualTo("/copycat/imports/" + job.getId());
+        pollImportJob(api, job.getId(), headers, vertx, vertxContext)
+            .onComplete(context.succeeding(done -> context.verify(() -> {
+              assertThat(done.getPhase()).isEqualTo(CopyCatImportJob.Phase.COMPLETED);
+              assertThat(done.getInstanceIds()).containsExactly(mock.getInstanceId());
+              assertThat(done.getProfileId()).isEqualTo(targetProfileId);
+              context.completeNow();
+            })));
+      })), vertxContext);
+    })), vertxContext);
+  }
+
+  @Test
+  void testImportAsyncFailure(Vertx vertx, VertxTestContext context) {
+    Copycat api = new CopycatImpl();
+
+    Map<String, String> headers = new CaseInsensitiveMap<>();
+    headers.put(XOkapiHeaders.TENANT, tenant);
+    headers.put(XOkapiHeaders.URL, "http://localhost:" + MOCK_PORT);
+    headers.put(XOkapiHeaders.USER_ID, UUID.randomUUID().toString());
+
+    Context vertxContext = vertx.getOrCreateContext();
+
+    CopyCatProfile copyCatProfile = new CopyCatProfile().withName("local");
+    api.postCopycatProfiles(copyCatProfile, headers, context.succeeding(res1 -> context.verify(() -> {
+      String targetProfileId = ((CopyCatProfile) res1.getEntity()).getId();
+      CopyCatImports copyCatImports = new CopyCatImports()
+          .withProfileId(targetProfileId)
+          .withRecord(new Record());
+      api.postCopycatImports(true, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+        assertThat(res.getStatus()).isEqualTo(202);
+        CopyCatImportJob job = (CopyCatImportJob) res.getEntity();
+        pollImportJob(api, job.getId(), headers, vertx, vertxContext)
+            .onComplete(context.succeeding(done -> context.verify(() -> {
+              assertThat(done.getPhase()).isEqualTo(CopyCatImportJob.Phase.FAILED);
+              assertThat(done.getMessage())
+                  .isEqualTo("One of 'json' or 'marc' must be given in record");
+              context.completeNow();
+            })));
+      })), vertxContext);
+    })), vertxContext);
+  }
+
+  @Test
+  void testImportAsyncNoProfile(Vertx vertx, VertxTestContext context) {
+    Copycat api = new CopycatImpl();
+
+    Map<String, String> headers = new CaseInsensitiveMap<>();
+    headers.put(XOkapiHeaders.TENANT, tenant);
+    Context vertxContext = vertx.getOrCreateContext();
+
+    String profileId = UUID.randomUUID().toString();
+    CopyCatImports copyCatImports = new CopyCatImports()
+        .withProfileId(profileId)
+        .withExternalIdentifier("1234");
+    api.postCopycatImports(true, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      assertThat(res.getStatus()).isEqualTo(400);
+      api.getCopycatImportsById(UUID.randomUUID().toString(), headers,
+          context.succeeding(res2 -> context.verify(() -> {
+            assertThat(res2.getStatus()).isEqualTo(404);
+            context.completeNow();
+          })), vertxContext);
+    })), vertxContext);
+  }
+
+  @Test
+  void testImportFailureDiscardsJob(Vertx vertx, VertxTestContext context) {
+    Copycat api = new CopycatImpl();
+
+    Map<String, String> headers = new CaseInsensitiveMap<>();
+    headers.put(XOkapiHeaders.TENANT, tenant);
+    headers.put(XOkapiHeaders.URL, "http://localhost:" + MOCK_PORT);
+    headers.put(XOkapiHeaders.USER_ID, UUID.randomUUID().toString());
+
+    Context vertxContext = vertx.getOrCreateContext();
+
+    CopyCatProfile copyCatProfile = new CopyCatProfile().withName("local");
+    api.postCopycatProfiles(copyCatProfile, headers, context.succeeding(res1 -> context.verify(() -> {
+      String targetProfileId = ((CopyCatProfile) res1.getEntity()).getId();
+      CopyCatImports copyCatImports = new CopyCatImports()
+          .withProfileId(targetProfileId)
+          .withRecord(new Record());
+      int deleted = mock.getDeletedJobs();
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+        assertThat(res.getStatus()).isEqualTo(400);
+        Errors errors = (Errors) res.getEntity();
+        assertThat(errors.getErrors().get(0).getMessage())
+            .isEqualTo("One of 'json' or 'marc' must be given in record");
+        // job execution created while the record was decoded is removed
+        assertThat(mock.getDeletedJobs()).isEqualTo(deleted + 1);
+        api.deleteCopycatProfilesById(targetProfileId, headers, context.succeeding(res3 ->
+            context.completeNow()
+        ), vertxContext);
+      })), vertxContext);
+    })), vertxContext);
+  }
+
+  @Test
+  void testImportSetupFailureDiscardsJob(Vertx vertx, VertxTestContext context) throws IOException {
+    Copycat api = new CopycatImpl();
+
+    Map<String, String> headers = new CaseInsensitiveMap<>();
+    headers.put(XOkapiHeaders.TENANT, tenant);
+    headers.put(XOkapiHeaders.URL, "http://localhost:" + MOCK_PORT);
+    headers.put(XOkapiHeaders.USER_ID, UUID.randomUUID().toString());
+
+    Context vertxContext = vertx.getOrCreateContext();
+
+    String file = new String(getClass().getClassLoader().getResourceAsStream("marc1.json").readAllBytes());
+
+    CopyCatProfile copyCatProfile = new CopyCatProfile().withName("local");
+    api.postCopycatProfiles(copyCatProfile, headers, context.succeeding(res1 -> context.verify(() -> {
+      String targetProfileId = ((CopyCatProfile) res1.getEntity()).getId();
+      CopyCatImports copyCatImports = new CopyCatImports()
+          .withProfileId(targetProfileId)
+          .withRecord(new Record().withJson(file));
+      int deleted = mock.getDeletedJobs();
+      mock.setPutProfileStatus(500);
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+        mock.setPutProfileStatus(200);
+        assertThat(res.getStatus()).isEqualTo(400);
+        // job execution created before assigning the job profile failed is removed
+        assertThat(mock.getDeletedJobs()).isEqualTo(deleted + 1);
+        api.deleteCopycatProfilesById(targetProfileId, headers, context.succeeding(res3 ->
+            context.completeNow()
+        ), vertxContext);
+      })), vertxContext);
+    })), vertxContext);
+  }
+
+  @Test
+  void testImportKnownFailureNoJob(Vertx vertx, VertxTestContext context) {
+    Copycat api = new CopycatImpl();
+
+    Map<String, String> headers = new CaseInsensitiveMap<>();
+    headers.put(XOkapiHeaders.TENANT, tenant);
+    headers.put(XOkapiHeaders.URL, "http://localhost:" + MOCK_PORT);
+    headers.put(XOkapiHeaders.USER_ID, UUID.randomUUID().toString());
+
+    Context vertxContext = vertx.getOrCreateContext();
+
+    String url = "known.example.org:210/db";
+    for (int i = 0; i < 5; i++) {
+      RecordRetriever.getCircuitBreaker().onFailure(url);
+    }
+    CopyCatProfile copyCatProfile = new CopyCatProfile()
+        .withName("known failure")
+        .withUrl(url)
+        .withExternalIdQueryMap("@attr 1=7 $identifier");
+    api.postCopycatProfiles(copyCatProfile, headers, context.succeeding(res1 -> context.verify(() -> {
+      String targetProfileId = ((CopyCatProfile) res1.getEntity()).getId();
+      CopyCatImports copyCatImports = new CopyCatImports()
+          .withProfileId(targetProfileId)
+          .withExternalIdentifier("0192653814");
+      int created = mock.getCreatedJobs();
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+        assertThat(res.getStatus()).isEqualTo(400);
+        Errors errors = (Errors) res.getEntity();
+        assertThat(errors.getErrors().get(0).getMessage()).contains("is unavailable");
+        // circuit of target is open, so no job execution is created
+        assertThat(mock.getCreatedJobs()).isEqualTo(created);
+        api.deleteCopycatProfilesById(targetProfileId, headers, context.succeeding(res3 ->
+            context.completeNow()
+        ), vertxContext);
+      })), vertxContext);
+    })), vertxContext);
+  }
+
   @Test
   void testImportProfileRecordJsonBadContent(Vertx vertx, VertxTestContext context) {
     Copycat api = new CopycatImpl();
@@ -734,7 +1386,7 @@ class CopycatTest {
       CopyCatImports copyCatImports = new CopyCatImports()
           .withProfileId(targetProfileId)
           .withRecord(record);
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(400);
         Errors errors = (Errors) res.getEntity();
         assertThat(errors.getErrors().size()).isEqualTo(1);
@@ -769,7 +1421,7 @@ class CopycatTest {
       CopyCatImports copyCatImports = new CopyCatImports()
           .withProfileId(targetProfileId)
           .withRecord(record);
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(200);
         api.deleteCopycatProfilesById(targetProfileId, headers, context.succeeding(res3 -> context.verify(() ->
             context.completeNow()
@@ -799,7 +1451,7 @@ class CopycatTest {
       CopyCatImports copyCatImports = new CopyCatImports()
           .withProfileId(targetProfileId)
           .withRecord(record);
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(400);
         Errors errors = (Errors) res.getEntity();
         assertThat(errors.getErrors().size()).isEqualTo(1);
@@ -832,7 +1484,7 @@ class CopycatTest {
       CopyCatImports copyCatImports = new CopyCatImports()
           .withProfileId(targetProfileId)
           .withRecord(record);
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(400);
         Errors errors = (Errors) res.getEntity();
         assertThat(errors.getErrors().size()).isEqualTo(1);
@@ -867,7 +1519,7 @@ class CopycatTest {
       CopyCatImports copyCatImports = new CopyCatImports()
           .withProfileId(targetProfileId)
           .withRecord(record);
-      api.postCopycatImports(copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
+      api.postCopycatImports(false, copyCatImports, headers, context.succeeding(res -> context.verify(() -> {
         assertThat(res.getStatus()).isEqualTo(400);
         Errors errors = (Errors) res.getEntity();
         assertThat(errors.getErrors().size()).isEqualTo(1);
@@ -9,6 +9,10 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
@@ -28,8 +32,14 @@ public class ImporterMock {
   private int waitMs = 1;
   private int iteration;
   private String lastJobProfileId;
+  private String jobStatus = "COMMITTED";
+  private int jobStatusPolls;
+  private int deletedJobs;
+  private int createdJobs;
 
   Set<String> jobs = new TreeSet<>();
+  private final Map<String, Integer> postedRecords = new HashMap<>();
+  private final List<JsonObject> chunks = new ArrayList<>();
 
   public ImporterMock(Vertx vertx) {
     this.vertx = vertx;
@@ -67,10 +77,33 @@ public class ImporterMock {
     putProfileStatus = code;
   }
 
+  /**
+   * Set status that job executions get.
+   *
+   * @param status status such as COMMITTED, ERROR
+   * @param polls number of polls that report PROCESSING_IN_PROGRESS before status
+   */
+  public void setJobStatus(String status, int polls) {
+    jobStatus = status;
+    jobStatusPolls = polls;
+  }
+
+  public int getDeletedJobs() {
+    return deletedJobs;
+  }
+
+  public int getCreatedJobs() {
+    return createdJobs;
+  }
+
   public String getLastJobProfileJobId() {
     return lastJobProfileId;
   }
 
+  public List<JsonObject> getChunks() {
+    return chunks;
+  }
+
   public void createJob(RoutingContext ctx) {
     try {
       JsonObject requestBody = ctx.body().asJsonObject();
@@ -89,6 +122,7 @@ public class ImporterMock {
 
       responseBody.put("jobExecutions", jobExecutions);
       jobs.add(id);
+      createdJobs++;
       vertx.setTimer(waitMs, res -> {
         ctx.response().putHeader("Content-Type", "application/json");
         ctx.response().setStatusCode(createStatus);
@@ -114,6 +148,7 @@ public class ImporterMock {
       }
       if (HttpMethod.DELETE.equals(ctx.request().method())) {
         jobs.remove(id);
+        deletedJobs++;
         ctx.response().setStatusCode(204);
         ctx.response().end();
         return;
@@ -136,6 +171,27 @@ public class ImporterMock {
     ctx.response().end(requestBody.encode());
   }
 
+  public void getJob(RoutingContext ctx) {
+    String id = ctx.request().path().split("/")[3];
+    if (!jobs.contains(id)) {
+      ctx.response().setStatusCode(404);
+      ctx.response().end("Job not found " + id);
+      return;
+    }
+    JsonObject jobExecution = new JsonObject().put("id", id);
+    if (jobStatusPolls > 0) {
+      jobStatusPolls--;
+      jobExecution.put("status", "PROCESSING_IN_PROGRESS");
+    } else {
+      jobExecution.put("status", jobStatus);
+      if ("ERROR".equals(jobStatus)) {
+        jobExecution.put("errorStatus", "RECORD_UPDATE_ERROR");
+      }
+    }
+    ctx.response().putHeader("Content-Type", "application/json");
+    ctx.response().end(jobExecution.encode());
+  }
+
   public void importJob(RoutingContext ctx) {
     try {
       String path = ctx.request().path();
@@ -152,6 +208,8 @@ public class ImporterMock {
         ctx.response().end("Missing initialRecords");
         return;
       }
+      chunks.add(requestBody);
+      postedRecords.merge(id, requestBody.getJsonArray("initialRecords").size(), Integer::sum);
     } catch (Exception e) {
       log.error(e.getMessage(), e);
       ctx.response().setStatusCode(500);
@@ -181,21 +239,27 @@ public class ImporterMock {
       sourceRecordStorageResponse = null;
       return;
     }
-    JsonObject sourceRecord = new JsonObject()
-        .put("recordType", "MARC_BIB")
-        .put("additionalInfo",
-            new JsonObject().put("suppressDiscovery", false));
-    if (iteration == 0) {
-      sourceRecord.put("externalIdsHolder",
-          new JsonObject().put("instanceId", instanceId));
-    } else {
+    String limit = ctx.request().getParam("limit");
+    int count = Math.min(limit == null ? Integer.MAX_VALUE : Integer.parseInt(limit),
+        postedRecords.getOrDefault(id, 0));
+    boolean withInstance = iteration == 0;
+    if (!withInstance) {
       --iteration;
     }
-
+    JsonArray sourceRecords = new JsonArray();
+    for (int i = 0; i < Math.max(1, count); i++) {
+      JsonObject sourceRecord = new JsonObject()
+          .put("recordType", "MARC_BIB")
+          .put("additionalInfo",
+              new JsonObject().put("suppressDiscovery", false));
+      if (withInstance) {
+        sourceRecord.put("externalIdsHolder",
+            new JsonObject().put("instanceId", instanceId));
+      }
+      sourceRecords.add(sourceRecord);
+    }
     JsonObject response = new JsonObject()
-        .put("sourceRecords",
-            new JsonArray()
-                .add(sourceRecord));
+        .put("sourceRecords", sourceRecords);
     ctx.response().end(response.encodePrettily());
   }
 
@@ -208,6 +272,7 @@ public class ImporterMock {
     router.putWithRegex("/change-manager/jobExecutions/.*").handler(BodyHandler.create());
     router.putWithRegex("/change-manager/jobExecutions/.*").handler(this::putOrDeleteProfile);
     router.deleteWithRegex("/change-manager/jobExecutions/.*").handler(this::putOrDeleteProfile);
+    router.getWithRegex("/change-manager/jobExecutions/[^/]+").handler(this::getJob);
 
     router.getWithRegex("/source-storage/source-records.*").handler(BodyHandler.create());
     router.getWithRegex("/source-storage/source-records.*").handler(this::sourceStorage);